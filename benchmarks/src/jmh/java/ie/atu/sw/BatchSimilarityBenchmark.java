@@ -0,0 +1,79 @@
+package ie.atu.sw;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures exact search throughput in words per second, searching for a block
+ * of out-of-target words one at a time against searching for the whole block
+ * in one cache-blocked pass.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BatchSimilarityBenchmark {
+	/** Words per block, matching the processor's search block */
+	private static final int WORDS = 64;
+
+	@Param({ "50", "300" })
+	int dimension;
+
+	private Fixtures fixtures;
+	private GoogleEmbeddingsMap google;
+	private double[][] vectors;
+	private int[] rows;
+
+	@Setup
+	public void setUp() throws Exception {
+		fixtures = new Fixtures(20000, dimension);
+		WordEmbeddings glove = WordEmbeddings.open(fixtures.embeddings.toString());
+		google = new GoogleEmbeddingsMap(glove);
+		google.load(fixtures.targets.toString());
+		vectors = new double[WORDS][];
+		for (int i = 0; i < WORDS; i++) {
+			vectors[i] = glove.getEmbedding(Fixtures.word(Fixtures.TARGET_WORDS + i * 97));
+		}
+		rows = new int[WORDS];
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		fixtures.delete();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(WORDS)
+	public void perWord(Blackhole blackhole) {
+		for (double[] vector : vectors) {
+			blackhole.consume(google.findMostSimilarRow(vector));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(WORDS)
+	public int[] blocked() {
+		google.findMostSimilarRows(vectors, rows);
+		return rows;
+	}
+}
@@ -0,0 +1,131 @@
+package ie.atu.sw;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates synthetic embedding fixtures so the benchmarks run without the
+ * real GloVe download. Files are deterministic for a given seed, written to a
+ * temporary directory and deleted by the caller.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+final class Fixtures {
+	/** Number of words in the synthetic target list, matching Google-1000 */
+	static final int TARGET_WORDS = 1000;
+
+	/** Directory holding the generated files */
+	final Path directory;
+	/** Synthetic embeddings CSV */
+	final Path embeddings;
+	/** Synthetic target word list */
+	final Path targets;
+	/** Number of rows in the embeddings file */
+	final int rows;
+
+	/**
+	 * Generates an embeddings file with the given shape and a target list made of
+	 * its first TARGET_WORDS words.
+	 *
+	 * @param rows      number of words
+	 * @param dimension components per vector
+	 * @throws IOException if the files cannot be written
+	 */
+	Fixtures(int rows, int dimension) throws IOException {
+		this.rows = rows;
+		this.directory = Files.createTempDirectory("simplify-bench");
+		this.embeddings = directory.resolve("embeddings.txt");
+		this.targets = directory.resolve("targets.txt");
+
+		Random random = new Random(42);
+		try (BufferedWriter out = Files.newBufferedWriter(embeddings)) {
+			for (int row = 0; row < rows; row++) {
+				out.write(word(row));
+				for (int i = 0; i < dimension; i++) {
+					out.write(',');
+					out.write(String.format(Locale.ROOT, "%.5f", random.nextGaussian()));
+				}
+				out.newLine();
+			}
+		}
+		try (BufferedWriter out = Files.newBufferedWriter(targets)) {
+			for (int row = 0; row < Math.min(TARGET_WORDS, rows); row++) {
+				out.write(word(row));
+				out.newLine();
+			}
+		}
+	}
+
+	/**
+	 * Returns the word stored in a given row.
+	 *
+	 * @param row row number
+	 * @return synthetic word
+	 */
+	static String word(int row) {
+		return "w" + row;
+	}
+
+	/**
+	 * Builds a token stream where hitRatio of the tokens are target words and the
+	 * rest are other vocabulary words that need a similarity search. One token in
+	 * fifty is not in the vocabulary at all.
+	 *
+	 * @param count    number of tokens
+	 * @param hitRatio share of tokens that are target words
+	 * @return tokens
+	 */
+	String[] tokens(int count, double hitRatio) {
+		Random random = new Random(7);
+		int targetCount = Math.min(TARGET_WORDS, rows);
+		String[] tokens = new String[count];
+		for (int i = 0; i < count; i++) {
+			if (random.nextDouble() < hitRatio) {
+				tokens[i] = word(random.nextInt(targetCount));
+			} else if (random.nextInt(50) == 0) {
+				tokens[i] = "oov" + i;
+			} else {
+				tokens[i] = word(targetCount + random.nextInt(Math.max(rows - targetCount, 1)));
+			}
+		}
+		return tokens;
+	}
+
+	/**
+	 * Writes a token stream as a text file, twelve tokens per line.
+	 *
+	 * @param tokens tokens to write
+	 * @return path of the text file
+	 * @throws IOException if the file cannot be written
+	 */
+	Path text(String[] tokens) throws IOException {
+		Path text = Files.createTempFile(directory, "input", ".txt");
+		try (BufferedWriter out = Files.newBufferedWriter(text)) {
+			for (int i = 0; i < tokens.length; i++) {
+				out.write(tokens[i]);
+				out.write(i % 12 == 11 ? '\n' : ' ');
+			}
+		}
+		return text;
+	}
+
+	/**
+	 * Deletes the generated files.
+	 *
+	 * @throws IOException if a file cannot be deleted
+	 */
+	void delete() throws IOException {
+		try (var files = Files.list(directory)) {
+			for (Path file : files.toList()) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(directory);
+	}
+}
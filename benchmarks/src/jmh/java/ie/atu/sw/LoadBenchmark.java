@@ -0,0 +1,64 @@
+package ie.atu.sw;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures loading embeddings from CSV and from a binary snapshot.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmark {
+	@Param({ "50", "100", "300" })
+	int dimension;
+
+	@Param({ "50000" })
+	int rows;
+
+	private Fixtures fixtures;
+	private String snapshot;
+
+	@Setup
+	public void setUp() throws Exception {
+		fixtures = new Fixtures(rows, dimension);
+		snapshot = fixtures.directory.resolve("embeddings.bin").toString();
+		BinaryEmbeddings.convert(fixtures.embeddings.toString(), snapshot);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		fixtures.delete();
+	}
+
+	@Benchmark
+	public WordEmbeddings loadCsv() throws Exception {
+		WordEmbeddings embeddings = new GloVeEmbeddingsMap();
+		embeddings.load(fixtures.embeddings.toString());
+		return embeddings;
+	}
+
+	@Benchmark
+	public WordEmbeddings loadSnapshot() throws Exception {
+		return WordEmbeddings.open(snapshot);
+	}
+}
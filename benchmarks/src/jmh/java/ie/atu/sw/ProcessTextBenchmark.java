@@ -0,0 +1,76 @@
+package ie.atu.sw;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures end-to-end simplification of a generated text file.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProcessTextBenchmark {
+	@Param({ "50" })
+	int dimension;
+
+	@Param({ "200000" })
+	int tokens;
+
+	@Param({ "0.5", "0.9" })
+	double hitRatio;
+
+	@Param({ "false", "true" })
+	boolean vocabularyFirst;
+
+	@Param({ "forkjoin", "fixed", "virtual" })
+	String executor;
+
+	private Fixtures fixtures;
+	private ConcurrentTextProcessor processor;
+	private String input;
+	private String output;
+
+	@Setup
+	public void setUp() throws Exception {
+		fixtures = new Fixtures(20000, dimension);
+		WordEmbeddings glove = WordEmbeddings.open(fixtures.embeddings.toString());
+		GoogleEmbeddingsMap google = new GoogleEmbeddingsMap(glove);
+		google.load(fixtures.targets.toString());
+		processor = new ConcurrentTextProcessor(glove, google);
+		processor.setVocabularyFirst(vocabularyFirst);
+		processor.setExecutionStrategy(
+				ExecutionStrategies.named(executor, Runtime.getRuntime().availableProcessors()));
+		input = fixtures.text(fixtures.tokens(tokens, hitRatio)).toString();
+		output = fixtures.directory.resolve("output.txt").toString();
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		processor.getExecutionStrategy().close();
+		fixtures.delete();
+	}
+
+	@Benchmark
+	public void processText() throws Exception {
+		processor.processText(input, output);
+	}
+}
@@ -0,0 +1,70 @@
+package ie.atu.sw;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures simplifying single words with different shares of tokens that hit
+ * the target list directly.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProcessWordBenchmark {
+	/** Tokens per benchmark invocation */
+	private static final int TOKENS = 4096;
+
+	@Param({ "50", "300" })
+	int dimension;
+
+	@Param({ "0.0", "0.5", "0.9" })
+	double hitRatio;
+
+	private Fixtures fixtures;
+	private ConcurrentTextProcessor processor;
+	private String[] tokens;
+
+	@Setup
+	public void setUp() throws Exception {
+		fixtures = new Fixtures(20000, dimension);
+		WordEmbeddings glove = WordEmbeddings.open(fixtures.embeddings.toString());
+		GoogleEmbeddingsMap google = new GoogleEmbeddingsMap(glove);
+		google.load(fixtures.targets.toString());
+		processor = new ConcurrentTextProcessor(glove, google);
+		tokens = fixtures.tokens(TOKENS, hitRatio);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		fixtures.delete();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TOKENS)
+	public void processWord(Blackhole blackhole) {
+		for (String token : tokens) {
+			blackhole.consume(processor.processWord(token));
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package ie.atu.sw;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the similarity kernels on single vector pairs.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SimilarityBenchmark {
+	@Param({ "50", "100", "300" })
+	int dimension;
+
+	@Param({ "scalar", "vector" })
+	String kernelType;
+
+	private SimilarityKernel kernel;
+	private double[] a;
+	private double[] b;
+
+	@Setup
+	public void setUp() {
+		kernel = kernelType.equals("vector") ? new VectorSimilarityKernel() : new ScalarSimilarityKernel();
+		Random random = new Random(42);
+		a = random.doubles(dimension).toArray();
+		b = random.doubles(dimension).toArray();
+	}
+
+	@Benchmark
+	public double cosine() {
+		return kernel.cosine(a, b);
+	}
+
+	@Benchmark
+	public double dot() {
+		return kernel.dot(a, b, 0, dimension);
+	}
+}
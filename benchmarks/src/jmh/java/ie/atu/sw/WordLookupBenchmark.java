@@ -0,0 +1,78 @@
+package ie.atu.sw;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares word lookups in the open-addressing WordIndex with the minimal
+ * perfect hash stored in binary snapshots, over the same words.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WordLookupBenchmark {
+	/** Lookups per benchmark invocation */
+	private static final int LOOKUPS = 4096;
+
+	@Param({ "20000", "400000" })
+	int words;
+
+	private WordIndex wordIndex;
+	private PerfectHashIndex perfectHash;
+	private String[] tokens;
+
+	@Setup
+	public void setUp() {
+		String[] vocabulary = new String[words];
+		wordIndex = new WordIndex(words);
+		for (int id = 0; id < words; id++) {
+			vocabulary[id] = Fixtures.word(id);
+			wordIndex.add(vocabulary[id]);
+		}
+		perfectHash = PerfectHashIndex.build(vocabulary);
+
+		// One token in fifty is not in the vocabulary, as in Fixtures.tokens
+		Random random = new Random(7);
+		tokens = new String[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; i++) {
+			tokens[i] = random.nextInt(50) == 0 ? "oov" + i : Fixtures.word(random.nextInt(words));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void wordIndex(Blackhole blackhole) {
+		for (String token : tokens) {
+			blackhole.consume(wordIndex.indexOf(token));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void perfectHash(Blackhole blackhole) {
+		for (String token : tokens) {
+			blackhole.consume(perfectHash.indexOf(token));
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package ie.atu.sw;
+
+/**
+ * Chooses batch sizes from the measured cost of earlier batches. Workers
+ * report how many units a batch held and how long it took; the sizer keeps an
+ * exponentially weighted average of the cost per unit and sizes the next
+ * batch so that it takes about the target time.
+ *
+ * Batches that are too small spend their time on hand-off overhead, and ones
+ * that are too large leave workers idle at the end of a run. Aiming at a
+ * fixed duration keeps both in check as the cost per unit changes, such as
+ * when a stretch of input is mostly words that need a similarity search.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+final class AdaptiveBatchSizer {
+	/** Weight of the newest sample in the running average */
+	private static final double SMOOTHING = 0.2;
+
+	/** Time each batch should take */
+	private final long targetNanos;
+	/** Smallest batch returned */
+	private final int min;
+	/** Largest batch returned */
+	private final int max;
+	/** Average cost per unit, or 0 before the first sample */
+	private double nanosPerUnit;
+	/** Size of the next batch */
+	private volatile int size;
+
+	/**
+	 * Constructs a sizer.
+	 *
+	 * @param targetNanos time each batch should take
+	 * @param initial     size of batches until the first is measured
+	 * @param min         smallest batch
+	 * @param max         largest batch
+	 */
+	AdaptiveBatchSizer(long targetNanos, int initial, int min, int max) {
+		this.targetNanos = targetNanos;
+		this.min = min;
+		this.max = max;
+		this.size = Math.clamp(initial, min, max);
+	}
+
+	/**
+	 * Returns the size for the next batch.
+	 *
+	 * @return units per batch
+	 */
+	int next() {
+		return size;
+	}
+
+	/**
+	 * Records the cost of a finished batch and resizes the next ones.
+	 * Time Complexity: O(1)
+	 *
+	 * @param units units in the batch
+	 * @param nanos time the batch took
+	 */
+	synchronized void record(int units, long nanos) {
+		if (units <= 0) {
+			return;
+		}
+		double sample = (double) nanos / units;
+		nanosPerUnit = nanosPerUnit == 0 ? sample : nanosPerUnit + SMOOTHING * (sample - nanosPerUnit);
+		size = (int) Math.clamp(targetNanos / Math.max(nanosPerUnit, 1e-3), min, max);
+	}
+}
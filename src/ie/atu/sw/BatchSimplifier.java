@@ -0,0 +1,249 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Simplifies many files in one run with embeddings loaded once. Inputs are
+ * given as a directory, whose files are all processed, or as a glob such as
+ * docs/*.txt or docs/**.txt.
+ *
+ * Every file's batches run on one shared worker pool of the configured
+ * parallelism. Files are started largest first and several are open at once,
+ * so small files are processed alongside a large one rather than queueing
+ * behind it. A file that fails is reported without stopping the others.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public class BatchSimplifier {
+	/** Files open at once per worker thread, enough to keep the pool busy */
+	private static final int OPEN_FILES_PER_WORKER = 2;
+
+	/** Processor shared by all files */
+	private final ConcurrentTextProcessor processor;
+	/** Number of worker threads */
+	private final int parallelism;
+	/** Listener receiving progress in input bytes completed */
+	private final ProgressListener listener;
+
+	/**
+	 * Outcome of one file.
+	 *
+	 * @param input  input file
+	 * @param output output file
+	 * @param bytes  input size
+	 * @param nanos  time from opening to finishing the file
+	 * @param error  failure, or null if the file was simplified
+	 */
+	public record FileResult(Path input, Path output, long bytes, long nanos, Exception error) {
+	}
+
+	/**
+	 * Constructs a batch simplifier.
+	 *
+	 * @param processor   processor with embeddings loaded
+	 * @param parallelism number of worker threads
+	 * @param listener    listener receiving progress across all files
+	 */
+	public BatchSimplifier(ConcurrentTextProcessor processor, int parallelism, ProgressListener listener) {
+		this.processor = processor;
+		this.parallelism = Math.max(1, parallelism);
+		this.listener = listener;
+	}
+
+	/**
+	 * Simplifies every file matching a directory or glob into an output
+	 * directory, keeping each file's path relative to the input directory.
+	 *
+	 * Time Complexity: O(n / p) where n is the total input size and p the
+	 * parallelism
+	 *
+	 * @param pattern   input directory or glob
+	 * @param outputDir directory receiving the simplified files
+	 * @return one result per input file, largest input first
+	 * @throws Exception if no files match or the inputs cannot be listed
+	 */
+	public List<FileResult> run(String pattern, Path outputDir) throws Exception {
+		Path base = baseDirectory(pattern);
+		List<Path> inputs = matchFiles(base, pattern);
+		if (inputs.isEmpty()) {
+			throw new Exception("[ERROR] No input files match: " + pattern);
+		}
+		long[] sizes = new long[inputs.size()];
+		long totalBytes = 0;
+		for (int i = 0; i < sizes.length; i++) {
+			sizes[i] = Files.size(inputs.get(i));
+			totalBytes += sizes[i];
+		}
+
+		ProgressTracker progress = new ProgressTracker(listener, "Simplifying " + inputs.size() + " files", totalBytes);
+		Semaphore openFiles = new Semaphore(parallelism * OPEN_FILES_PER_WORKER);
+		ForkJoinPool workers = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null,
+				true);
+		List<Future<FileResult>> futures = new ArrayList<>(inputs.size());
+		try (var files = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < inputs.size(); i++) {
+				Path input = inputs.get(i);
+				Path output = outputDir.resolve(base.relativize(input).toString());
+				long bytes = sizes[i];
+				openFiles.acquire();
+				futures.add(files.submit(() -> {
+					try {
+						return simplify(input, output, bytes, workers);
+					} finally {
+						progress.advance(bytes);
+						openFiles.release();
+					}
+				}));
+			}
+		} finally {
+			workers.shutdown();
+		}
+		progress.finish();
+
+		List<FileResult> results = new ArrayList<>(futures.size());
+		for (Future<FileResult> future : futures) {
+			try {
+				results.add(future.get());
+			} catch (ExecutionException e) {
+				throw e.getCause() instanceof Exception cause ? cause : e;
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Simplifies one file, capturing any failure in the result.
+	 *
+	 * @param input   input file
+	 * @param output  output file
+	 * @param bytes   input size
+	 * @param workers shared worker pool
+	 * @return outcome of the file
+	 */
+	private FileResult simplify(Path input, Path output, long bytes, ExecutorService workers) {
+		long start = System.nanoTime();
+		try {
+			Path parent = output.toAbsolutePath().getParent();
+			if (parent != null) {
+				Files.createDirectories(parent);
+			}
+			processor.processText(input.toString(), output.toString(), workers);
+			return new FileResult(input, output, bytes, System.nanoTime() - start, null);
+		} catch (Exception e) {
+			return new FileResult(input, output, bytes, System.nanoTime() - start, e);
+		}
+	}
+
+	/**
+	 * Prints one line per file and an aggregate throughput line.
+	 *
+	 * @param results   results of a run
+	 * @param wallNanos wall-clock time of the whole run
+	 * @param tokens    tokens processed during the run
+	 * @param out       stream to print to
+	 */
+	public static void printReport(List<FileResult> results, long wallNanos, long tokens, PrintStream out) {
+		long totalBytes = 0;
+		int failed = 0;
+		for (FileResult result : results) {
+			if (result.error() == null) {
+				totalBytes += result.bytes();
+				out.printf("%-40s %10d bytes %9.1f ms %8.2f MB/s%n", result.input(), result.bytes(),
+						result.nanos() / 1e6, megabytesPerSecond(result.bytes(), result.nanos()));
+			} else {
+				failed++;
+				out.printf("%-40s FAILED: %s%n", result.input(), result.error().getMessage());
+			}
+		}
+		out.printf("%d files simplified, %d failed, %d bytes in %.2f s: %.2f MB/s, %.0f tokens/s%n",
+				results.size() - failed, failed, totalBytes, wallNanos / 1e9,
+				megabytesPerSecond(totalBytes, wallNanos), wallNanos == 0 ? 0 : tokens * 1e9 / wallNanos);
+	}
+
+	/**
+	 * Finds the directory an input pattern is relative to: the pattern itself
+	 * if it is a directory, otherwise the path before the first glob character.
+	 *
+	 * @param pattern input directory or glob
+	 * @return base directory
+	 */
+	static Path baseDirectory(String pattern) {
+		Path path = Path.of(pattern);
+		if (Files.isDirectory(path)) {
+			return path;
+		}
+		Path base = path.getParent();
+		while (base != null && isGlob(base.toString())) {
+			base = base.getParent();
+		}
+		return base == null ? Path.of("") : base;
+	}
+
+	/**
+	 * Lists the regular files matching a pattern, largest first.
+	 *
+	 * @param base    base directory of the pattern
+	 * @param pattern input directory or glob
+	 * @return matching files
+	 * @throws IOException if the directory cannot be walked
+	 */
+	private static List<Path> matchFiles(Path base, String pattern) throws IOException {
+		PathMatcher matcher = Files.isDirectory(Path.of(pattern)) ? path -> true
+				: base.getFileSystem().getPathMatcher("glob:" + base.relativize(Path.of(pattern)));
+		try (Stream<Path> walk = Files.walk(base)) {
+			return walk.filter(Files::isRegularFile).filter(path -> matcher.matches(base.relativize(path)))
+					.sorted(Comparator.comparingLong(BatchSimplifier::sizeOf).reversed()).toList();
+		}
+	}
+
+	/**
+	 * Checks whether a path contains glob syntax.
+	 *
+	 * @param path path to check
+	 * @return true if the path contains a glob character
+	 */
+	private static boolean isGlob(String path) {
+		return path.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '{');
+	}
+
+	/**
+	 * Returns the size of a file, or 0 if it cannot be read.
+	 *
+	 * @param path file to measure
+	 * @return size in bytes
+	 */
+	private static long sizeOf(Path path) {
+		try {
+			return Files.size(path);
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Computes throughput in megabytes per second.
+	 *
+	 * @param bytes bytes processed
+	 * @param nanos time taken
+	 * @return MB/s, or 0 if no time was recorded
+	 */
+	private static double megabytesPerSecond(long bytes, long nanos) {
+		return nanos == 0 ? 0 : bytes / 1e6 / (nanos / 1e9);
+	}
+}
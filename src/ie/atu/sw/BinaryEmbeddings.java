@@ -0,0 +1,413 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Implementation of the WordEmbeddings interface backed by a memory-mapped
+ * binary snapshot. Opening a snapshot maps the file read-only and parses
+ * nothing, so start-up is almost instant and several JVMs mapping the same
+ * file share one copy in the page cache. Opening checks only the header and
+ * the file size; the full checksum reads every page, so it is computed only
+ * when verification is switched on with setVerifyChecksums (--verify).
+ *
+ * Snapshot layout (little-endian):
+ * - Header: magic, version, dimension, count, hash position count, collision
+ * length, arena length, hash seed and a CRC32C checksum of everything after
+ * the header
+ * - Vectors: count * dimension packed float32 values, row-major
+ * - Offsets: count + 1 ints giving the start of each word in the arena
+ * - Pilots: one int per bucket of the minimal perfect hash
+ * - Ids: one int per hash position giving its word id or collision group
+ * - Remap: one int per spare hash position beyond the ids, giving the free
+ * position below them that its key was moved to
+ * - Collisions: groups of ids of words sharing a hash code
+ * - Arena: UTF-8 bytes of all words, back to back
+ *
+ * Words are looked up through the PerfectHashIndex stored in the file, which
+ * is used in place without being rebuilt. Version 1 snapshots, which held an
+ * open-addressing table instead, are rejected and must be written again.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public class BinaryEmbeddings implements WordEmbeddings {
+	/** Snapshot magic number ("GLVB") */
+	private static final int MAGIC = 0x474C5642;
+	/** Snapshot format version */
+	private static final int VERSION = 2;
+	/** Header size in bytes */
+	private static final int HEADER_SIZE = 7 * Integer.BYTES + 2 * Long.BYTES;
+	/** Position of the checksum in the header */
+	private static final int CHECKSUM_OFFSET = HEADER_SIZE - Long.BYTES;
+	/** Bytes checksummed between two progress updates */
+	private static final int CHECKSUM_STEP = 1 << 20;
+
+	/** Whether load checks the checksum of the whole file */
+	private static volatile boolean verifyChecksums;
+
+	/** Number of components per vector */
+	private int dimension;
+	/** Number of words in the snapshot */
+	private int count;
+	/** Packed vectors, row-major */
+	private FloatBuffer vectors;
+	/** Perfect hash index over the mapped words, or null before load */
+	private PerfectHashIndex wordIndex;
+	/** Reciprocal row norms, computed on the first top-k query */
+	private volatile float[] inverseNorms;
+	/** Size of the mapped file */
+	private long mappedBytes;
+	/** Load and footprint metrics */
+	private final EmbeddingsStats stats = new EmbeddingsStats();
+
+	/**
+	 * Checks whether a file starts with the snapshot magic number.
+	 *
+	 * Time Complexity: O(1)
+	 *
+	 * @param filePath path of the file to check
+	 * @return true if the file is a binary snapshot
+	 * @throws IOException if the file cannot be read
+	 */
+	public static boolean isSnapshot(String filePath) throws IOException {
+		try (InputStream in = Files.newInputStream(Path.of(filePath))) {
+			byte[] magic = in.readNBytes(Integer.BYTES);
+			return magic.length == Integer.BYTES
+					&& ByteBuffer.wrap(magic).order(ByteOrder.LITTLE_ENDIAN).getInt() == MAGIC;
+		}
+	}
+
+	/**
+	 * Makes every later load verify the checksum of the whole snapshot, which
+	 * reads the entire file instead of only its header.
+	 *
+	 * @param verify true to verify checksums on load
+	 */
+	public static void setVerifyChecksums(boolean verify) {
+		verifyChecksums = verify;
+	}
+
+	/**
+	 * Memory-maps a snapshot file and checks its header and size, plus its
+	 * checksum if verification is switched on.
+	 *
+	 * Time Complexity: O(1), or O(n) when verifying the checksum, with no
+	 * parsing or allocation per word
+	 *
+	 * @param filePath path to the snapshot file
+	 * @param listener listener receiving progress in bytes verified
+	 * @throws Exception if the file cannot be mapped or is not a valid snapshot
+	 */
+	@Override
+	public void load(String filePath, ProgressListener listener) throws Exception {
+		long start = System.nanoTime();
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new Exception("[ERROR] Snapshot too large to map: " + filePath);
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		if (buffer.limit() < 2 * Integer.BYTES || buffer.getInt(0) != MAGIC) {
+			throw new Exception("[ERROR] Not a binary embeddings snapshot: " + filePath);
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new Exception("[ERROR] Snapshot version " + buffer.getInt(4)
+					+ " is no longer supported, write it again from the CSV: " + filePath);
+		}
+		if (buffer.limit() < HEADER_SIZE) {
+			throw new Exception("[ERROR] Corrupt binary embeddings snapshot: " + filePath);
+		}
+		int dim = buffer.getInt(8);
+		int words = buffer.getInt(12);
+		int slots = buffer.getInt(16);
+		int collisions = buffer.getInt(20);
+		int arenaLength = buffer.getInt(24);
+		long seed = buffer.getLong(28);
+		long checksum = buffer.getLong(CHECKSUM_OFFSET);
+
+		long expected = size(dim, words, slots, collisions, arenaLength);
+		ProgressTracker progress = new ProgressTracker(listener, "Loading " + Path.of(filePath).getFileName(),
+				buffer.limit());
+		if (expected != buffer.limit() || verifyChecksums && checksum(buffer, progress) != checksum) {
+			throw new Exception("[ERROR] Corrupt binary embeddings snapshot: " + filePath);
+		}
+
+		int position = HEADER_SIZE;
+		this.vectors = slice(buffer, position, words * dim * Float.BYTES).asFloatBuffer();
+		position += words * dim * Float.BYTES;
+		this.wordIndex = PerfectHashIndex.read(buffer, position, seed, words, slots, collisions,
+				arenaLength);
+		this.dimension = dim;
+		this.count = words;
+		this.inverseNorms = null;
+		this.mappedBytes = buffer.limit();
+		progress.finish();
+		stats.recordLoad(System.nanoTime() - start, mappedBytes, getSize(), memoryBytes());
+	}
+
+	/**
+	 * Writes any loaded embeddings as a binary snapshot. The file is written
+	 * under a temporary name and moved into place once complete.
+	 *
+	 * Time Complexity: O(n * d) where n is the number of words and d the dimension
+	 *
+	 * @param source   loaded embeddings to write
+	 * @param filePath destination snapshot path
+	 * @throws Exception if the source is empty or writing fails
+	 */
+	public static void write(WordEmbeddings source, String filePath) throws Exception {
+		int words = source.getSize();
+		if (words == 0) {
+			throw new Exception("[ERROR] No embeddings to write");
+		}
+		int dim = source.getEmbedding(source.wordAt(0)).length;
+
+		String[] vocabulary = new String[words];
+		for (int id = 0; id < words; id++) {
+			vocabulary[id] = source.wordAt(id);
+		}
+		PerfectHashIndex index = PerfectHashIndex.build(vocabulary);
+		long total = size(dim, words, index.getSlotCount(), index.getCollisionLength(), index.getArenaLength());
+		if (total > Integer.MAX_VALUE) {
+			throw new Exception("[ERROR] Embeddings too large for a snapshot");
+		}
+
+		Path target = Path.of(filePath);
+		Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, total);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(dim).putInt(words).putInt(index.getSlotCount())
+					.putInt(index.getCollisionLength()).putInt(index.getArenaLength()).putLong(index.getSeed())
+					.putLong(0);
+
+			for (int id = 0; id < words; id++) {
+				for (double v : source.getEmbedding(vocabulary[id])) {
+					buffer.putFloat((float) v);
+				}
+			}
+			index.write(buffer);
+
+			buffer.putLong(CHECKSUM_OFFSET, checksum(buffer, new ProgressTracker(ProgressListener.NONE, "", 0)));
+			buffer.force();
+		}
+		Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Converts a GloVe CSV embeddings file into a binary snapshot.
+	 *
+	 * Time Complexity: O(n * d)
+	 *
+	 * @param csvPath      path of the CSV embeddings file
+	 * @param snapshotPath destination snapshot path
+	 * @throws Exception if reading or writing fails
+	 */
+	public static void convert(String csvPath, String snapshotPath) throws Exception {
+		WordEmbeddings csv = new GloVeEmbeddingsMap();
+		csv.load(csvPath);
+		write(csv, snapshotPath);
+	}
+
+	/**
+	 * Retrieves the embedding vector for a given word, widened from the mapped
+	 * float32 values.
+	 *
+	 * Time Complexity: O(d) where d is the dimension
+	 *
+	 * @param word the word to look up
+	 * @return the embedding vector for the word, or null if the word is not found
+	 */
+	@Override
+	public double[] getEmbedding(String word) {
+		int id = indexOf(word);
+		if (id < 0) {
+			return null;
+		}
+		double[] values = new double[dimension];
+		int base = id * dimension;
+		for (int i = 0; i < dimension; i++) {
+			values[i] = vectors.get(base + i);
+		}
+		return values;
+	}
+
+	/**
+	 * Checks if a word exists in the snapshot.
+	 *
+	 * Time Complexity: O(k) for a word of length k using the mapped perfect hash
+	 *
+	 * @param word the word to check
+	 * @return true if the word exists in the snapshot, false otherwise
+	 */
+	@Override
+	public boolean containsWord(String word) {
+		return indexOf(word) >= 0;
+	}
+
+	/**
+	 * Returns the id of a word through the mapped perfect hash, confirmed with
+	 * one comparison of UTF-8 bytes against the arena.
+	 *
+	 * Time Complexity: O(k) where k is the word length
+	 *
+	 * @param word the word to look up
+	 * @return the id of the word, or -1 if not found
+	 */
+	@Override
+	public int indexOf(String word) {
+		return wordIndex == null ? -1 : wordIndex.indexOf(word);
+	}
+
+	/**
+	 * Returns the word with a given id, decoded from the arena.
+	 *
+	 * Time Complexity: O(k) where k is the word length
+	 *
+	 * @param index word id
+	 * @return the word
+	 */
+	@Override
+	public String wordAt(int index) {
+		return wordIndex.wordAt(index);
+	}
+
+	/**
+	 * Finds the k most similar words to a vector with a partitioned fork/join scan
+	 * of the mapped vectors. Row norms are computed once, on the first query.
+	 *
+	 * Time Complexity: O(n * d / p) where p is the parallelism
+	 *
+	 * @param vector query vector
+	 * @param k      number of results
+	 * @return up to k words, most similar first
+	 */
+	@Override
+	public List<ScoredWord> topK(double[] vector, int k) {
+		double[] query = TopKQuery.unit(vector);
+		FloatBuffer rows = vectors;
+		float[] norms = inverseNorms();
+		int dim = dimension;
+		return TopKQuery.run(this, row -> {
+			double dot = 0.0;
+			for (int i = 0, offset = row * dim; i < dim; i++) {
+				dot += query[i] * rows.get(offset + i);
+			}
+			return dot * norms[row];
+		}, k);
+	}
+
+	/**
+	 * Returns the reciprocal row norms, computing them on first use.
+	 *
+	 * @return reciprocal norm per row
+	 */
+	private float[] inverseNorms() {
+		float[] norms = inverseNorms;
+		if (norms == null) {
+			norms = new float[count];
+			for (int row = 0; row < count; row++) {
+				double sum = 0.0;
+				for (int i = 0, offset = row * dimension; i < dimension; i++) {
+					double v = vectors.get(offset + i);
+					sum += v * v;
+				}
+				norms[row] = sum > 0 ? (float) (1.0 / Math.sqrt(sum)) : 0f;
+			}
+			inverseNorms = norms;
+			stats.updateFootprint(count, memoryBytes());
+		}
+		return norms;
+	}
+
+	/**
+	 * Returns the total number of words in the snapshot.
+	 *
+	 * Time Complexity: O(1)
+	 *
+	 * @return number of words in the snapshot
+	 */
+	@Override
+	public int getSize() {
+		return count;
+	}
+
+	/**
+	 * Estimates the memory held by the snapshot: the mapped file, which lives in
+	 * the page cache rather than the heap, plus the norms once computed.
+	 *
+	 * @return estimated footprint in bytes
+	 */
+	private long memoryBytes() {
+		float[] norms = inverseNorms;
+		return mappedBytes + (norms == null ? 0 : (long) norms.length * Float.BYTES);
+	}
+
+	@Override
+	public EmbeddingsStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Computes the total snapshot size in bytes.
+	 *
+	 * @param dim         vector dimension
+	 * @param words       word count
+	 * @param slots       hash position count
+	 * @param collisions  collision group length in ints
+	 * @param arenaLength arena length in bytes
+	 * @return file size in bytes
+	 */
+	private static long size(int dim, int words, int slots, int collisions, int arenaLength) {
+		return HEADER_SIZE + (long) words * dim * Float.BYTES
+				+ PerfectHashIndex.sectionBytes(words, slots, collisions, arenaLength);
+	}
+
+	/**
+	 * Computes the CRC32C of everything after the header, in steps so that
+	 * progress can be reported on large snapshots.
+	 *
+	 * @param buffer   whole snapshot buffer
+	 * @param progress tracker advanced by the bytes checked
+	 * @return checksum value
+	 */
+	private static long checksum(ByteBuffer buffer, ProgressTracker progress) {
+		CRC32C crc = new CRC32C();
+		progress.advance(HEADER_SIZE);
+		for (int position = HEADER_SIZE; position < buffer.limit(); position += CHECKSUM_STEP) {
+			int length = Math.min(CHECKSUM_STEP, buffer.limit() - position);
+			crc.update(buffer.slice(position, length));
+			progress.advance(length);
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Returns a little-endian view of part of a buffer.
+	 *
+	 * @param buffer   source buffer
+	 * @param position start position
+	 * @param length   length in bytes
+	 * @return the view
+	 */
+	private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+		return buffer.slice(position, length).order(ByteOrder.LITTLE_ENDIAN);
+	}
+}
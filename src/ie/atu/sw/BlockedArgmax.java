@@ -0,0 +1,103 @@
+package ie.atu.sw;
+
+import java.util.Arrays;
+
+/**
+ * Finds the most similar target row for a batch of query vectors in one
+ * cache-blocked pass over the target matrix.
+ *
+ * Scanning the targets once per query streams the whole matrix from memory
+ * for every word, so the scan is bound by memory bandwidth. Here the targets
+ * are cut into tiles small enough to stay in the L2 cache, and each tile is
+ * scored against every query in the batch before moving on, so the matrix is
+ * read from memory once per batch. Within a tile the kernel's register-blocked
+ * dot4x2 scores four queries against two targets at a time: each step of its
+ * inner loop loads six values and performs eight multiply-adds, turning the
+ * scan into compute-bound work.
+ *
+ * Each score is summed as the kernel's dot sums it, and ties go to the lowest
+ * row, so the rows found are those of the exact scan.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+final class BlockedArgmax {
+	/** Target tile size in bytes, sized to sit comfortably in L2 */
+	private static final int TILE_BYTES = 1 << 17;
+
+	private BlockedArgmax() {
+	}
+
+	/**
+	 * Finds the best live target row for every query.
+	 * Time Complexity: O(q * m * d) arithmetic with O(m * d) memory traffic
+	 * per batch, where q is the number of queries, m the number of targets and
+	 * d the dimension
+	 *
+	 * @param kernel   kernel computing the blocked dot products
+	 * @param queries  query vectors of length dim
+	 * @param matrix   row-major target matrix
+	 * @param live     whether each target row may be returned; its length is
+	 *                 the number of rows
+	 * @param dim      components per vector
+	 * @param bestRows receives the best row per query, or -1 if there are no
+	 *                 live rows
+	 */
+	static void run(SimilarityKernel kernel, double[][] queries, double[] matrix, boolean[] live, int dim,
+			int[] bestRows) {
+		int n = queries.length;
+		int rows = live.length;
+		double[] bestScores = new double[n];
+		Arrays.fill(bestScores, Double.NEGATIVE_INFINITY);
+		Arrays.fill(bestRows, 0, n, -1);
+		if (n == 0 || rows == 0) {
+			return;
+		}
+
+		double[] scores = new double[8];
+		int tile = Math.max(2, TILE_BYTES / Math.max(1, dim * Double.BYTES));
+		for (int tileStart = 0; tileStart < rows; tileStart += tile) {
+			int tileEnd = Math.min(rows, tileStart + tile);
+			// Short blocks at the edges repeat the last query or target; scoring
+			// a pair twice leaves its best row unchanged
+			for (int q0 = 0; q0 < n; q0 += 4) {
+				int q1 = Math.min(q0 + 1, n - 1);
+				int q2 = Math.min(q0 + 2, n - 1);
+				int q3 = Math.min(q0 + 3, n - 1);
+				for (int t0 = tileStart; t0 < tileEnd; t0 += 2) {
+					int t1 = Math.min(t0 + 1, tileEnd - 1);
+					kernel.dot4x2(queries[q0], queries[q1], queries[q2], queries[q3], matrix, t0 * dim, t1 * dim,
+							dim, scores);
+					offer(q0, t0, scores[0], live, bestRows, bestScores);
+					offer(q0, t1, scores[1], live, bestRows, bestScores);
+					offer(q1, t0, scores[2], live, bestRows, bestScores);
+					offer(q1, t1, scores[3], live, bestRows, bestScores);
+					offer(q2, t0, scores[4], live, bestRows, bestScores);
+					offer(q2, t1, scores[5], live, bestRows, bestScores);
+					offer(q3, t0, scores[6], live, bestRows, bestScores);
+					offer(q3, t1, scores[7], live, bestRows, bestScores);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Keeps a target as a query's best row if it is live and scores higher.
+	 * Targets are offered in ascending row order, so ties keep the lower row.
+	 *
+	 * @param query      query index
+	 * @param row        target row
+	 * @param score      similarity of the pair
+	 * @param live       liveness per target row
+	 * @param bestRows   best row per query
+	 * @param bestScores best score per query
+	 */
+	private static void offer(int query, int row, double score, boolean[] live, int[] bestRows,
+			double[] bestScores) {
+		if (score > bestScores[query] && live[row]) {
+			bestScores[query] = score;
+			bestRows[query] = row;
+		}
+	}
+}
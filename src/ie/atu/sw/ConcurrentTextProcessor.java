@@ -1,28 +1,95 @@
 package ie.atu.sw;
 
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntSupplier;
+import java.util.function.UnaryOperator;
 import java.util.ArrayList;
 import java.io.*;
 
 /**
  * Implements TextProcessor interface for concurrent text processing using word
  * embeddings. Processes text by comparing words against Google-1000 and finding
- * similar words using GloVe embeddings when necessary.
+ * similar words using GloVe embeddings when necessary. Words are matched in
+ * lowercase with surrounding punctuation excluded, so "The" and "house," are
+ * found as "the" and "house".
  *
  * @version 1.0.0
  * @author [Joseph Shortt]
  */
 
 public class ConcurrentTextProcessor implements TextProcessor {
-	/** Reference to GloVe embeddings */
-	private final WordEmbeddings gloveEmbeddings;
-	/** Reference to Google embeddings */
-	private final WordEmbeddings googleEmbeddings;
-	/** Batch size for concurrent processing */
-	private static final int BATCH_SIZE = 1000;
+	/**
+	 * Embeddings, targets and derived structures in use. Each run reads the
+	 * reference once, so a reload swapped in mid-run only affects later runs
+	 */
+	private final AtomicReference<EmbeddingsSnapshot> snapshot;
+	/**
+	 * Smallest and initial number of bytes per batch. Each batch resolves its
+	 * distinct words once, so smaller batches would repeat more searches
+	 */
+	private static final int BATCH_CHARS = 1 << 16;
+	/** Largest batch in bytes */
+	private static final int MAX_BATCH_CHARS = 1 << 20;
+	/** Time one batch should take, long enough to amortize its hand-off */
+	private static final long TARGET_BATCH_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+	/** Words gathered for one batched similarity search */
+	private static final int SEARCH_BLOCK = 64;
+	/** Largest part of the input mapped at once */
+	private static final int MAP_WINDOW = 1 << 28;
+	/** Maximum number of batches in flight between reader and writer */
+	private static final int MAX_PENDING_BATCHES = 64;
+	/** Marker placed on the pending queue after the last batch */
+	private static final Future<byte[]> END_OF_INPUT = CompletableFuture.completedFuture(null);
+	/** Whether to resolve the distinct vocabulary once before rewriting */
+	private volatile boolean vocabularyFirst;
+	/** Vocabulary of an input collected ahead of its first run, or null */
+	private volatile PreparedVocabulary preparedVocabulary;
+	/** Distinct words resolved by the last vocabulary-first run */
+	private volatile int distinctWordCount;
+	/** Tokens read by the last vocabulary-first run */
+	private volatile long tokenCount;
+	/** Throughput, outcome and latency metrics */
+	private final ProcessorStats stats = new ProcessorStats();
+	/** Listener receiving progress in input bytes processed */
+	private volatile ProgressListener progressListener = ProgressListener.NONE;
+	/** Threads running the CPU-bound stages */
+	private volatile ExecutionStrategy executionStrategy = ExecutionStrategies.forkJoin();
+
+	/**
+	 * Distinct words of an input file, collected before the file was first
+	 * processed, with the size and modification time they are valid for.
+	 *
+	 * @param path       absolute input path
+	 * @param size       file size when collected
+	 * @param modified   modification time when collected
+	 * @param vocabulary distinct normalized words
+	 * @param tokens     number of tokens in the file
+	 */
+	private record PreparedVocabulary(Path path, long size, FileTime modified, SpanCache vocabulary, long tokens) {
+	}
 
 	/**
 	 * Constructs processor with GloVe and Google embeddings.
@@ -32,13 +99,24 @@ public class ConcurrentTextProcessor implements TextProcessor {
 	 *
 	 */
 	public ConcurrentTextProcessor(WordEmbeddings gloveEmbeddings, WordEmbeddings googleEmbeddings) {
-		this.gloveEmbeddings = gloveEmbeddings;
-		this.googleEmbeddings = googleEmbeddings;
+		this.snapshot = new AtomicReference<>(
+				EmbeddingsSnapshot.of(gloveEmbeddings, (GoogleEmbeddingsMap) googleEmbeddings));
 	}
 
 	/**
-	 * Processes input text file and writes simplified text to output. Time
-	 * Complexity: O(n)
+	 * Processes input text file and writes simplified text to output. The file is
+	 * memory-mapped and streamed through a reader stage, a bounded queue of
+	 * in-flight batches, concurrent workers and an ordered writer, so memory use
+	 * stays flat no matter the input size. Workers tokenize the mapped bytes in
+	 * place and copy whitespace, punctuation and line breaks through unchanged,
+	 * so only words differ between input and output. Batches grow from
+	 * BATCH_CHARS while the measured cost per byte is low, so cheap stretches of
+	 * input are not dominated by hand-off overhead.
+	 *
+	 * In vocabulary-first mode the input is read twice: the first pass collects
+	 * the distinct words and resolves each one once, the second rewrites the
+	 * token stream from that dictionary. Either way the whole run uses the
+	 * snapshot of embeddings current when it starts. Time Complexity: O(n)
 	 *
 	 * @param inputPath  source file path
 	 * @param outputPath destination file path
@@ -47,170 +125,703 @@ public class ConcurrentTextProcessor implements TextProcessor {
 	 */
 	@Override
 	public void processText(String inputPath, String outputPath) throws Exception {
-		List<String> words = readAndTokenize(inputPath);
-		List<String> processedWords = processConcurrently(words);
-		writeResults(outputPath, processedWords);
+		processText(inputPath, outputPath, null);
 	}
 
 	/**
-	 * Reads and tokenizes input file into words. Time Complexity: O(n)
+	 * Processes input text file on a caller-supplied worker pool. Batches from
+	 * several files processed at once share the pool, so a small file is never
+	 * stuck behind a large one: each waits only for batches already queued.
+	 * The reader and writer stages still run on their own virtual threads.
+	 * Time Complexity: O(n)
 	 *
-	 * @param filePath input file path
-	 * @return list of words
-	 * @throws IOException if file reading fails
+	 * @param inputPath  source file path
+	 * @param outputPath destination file path
+	 * @param workers    pool running the worker stage, or null to use the
+	 *                   processor's execution strategy
+	 * @throws Exception if processing fails
 	 */
+	public void processText(String inputPath, String outputPath, ExecutorService workers) throws Exception {
+		long start = System.nanoTime();
+		EmbeddingsSnapshot embeddings = snapshot.get();
+		PreparedVocabulary prepared = preparedFor(inputPath);
+		Map<String, String> vocabulary = vocabularyFirst || prepared != null
+				? resolveVocabulary(embeddings, inputPath, prepared)
+				: null;
 
-	private List<String> readAndTokenize(String filePath) throws IOException {
-		List<String> words = new ArrayList<>();
-		try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-			String line;
-			while ((line = reader.readLine()) != null) {
-				String[] lineWords = line.split("\\s+");
-				for (String word : lineWords) {
-					if (!word.trim().isEmpty()) {
-						words.add(word.trim());
+		BlockingQueue<Future<byte[]>> pending = new ArrayBlockingQueue<>(MAX_PENDING_BATCHES);
+		stats.runStarted(pending);
+
+		try (var executor = Executors.newVirtualThreadPerTaskExecutor();
+				var channel = FileChannel.open(Path.of(inputPath), StandardOpenOption.READ);
+				var writer = new BufferedOutputStream(new FileOutputStream(outputPath), BATCH_CHARS)) {
+			ProgressTracker progress = new ProgressTracker(progressListener,
+					"Simplifying " + Path.of(inputPath).getFileName(), channel.size());
+			ExecutorService batches = workers != null ? workers : executionStrategy.executor();
+			AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(TARGET_BATCH_NANOS, BATCH_CHARS, BATCH_CHARS,
+					MAX_BATCH_CHARS);
+			Future<?> writerTask = executor.submit(() -> {
+				writeResults(writer, pending);
+				return null;
+			});
+
+			try {
+				forEachRange(channel, sizer::next, (text, from, to) -> enqueue(pending, batches.submit(() -> {
+					long batchStart = System.nanoTime();
+					Map<String, String> replacements = vocabulary;
+					if (replacements == null) {
+						List<String> words = new ArrayList<>(distinctWords(text, from, to));
+						replacements = new HashMap<>(words.size() * 2);
+						resolveRange(embeddings, words, 0, words.size(), replacements);
 					}
-				}
+					byte[] result = processRange(embeddings.glove(), text, from, to, replacements::get);
+					sizer.record(to - from, System.nanoTime() - batchStart);
+					progress.advance(to - from);
+					return result;
+				}), writerTask));
+				enqueue(pending, END_OF_INPUT, writerTask);
+				writerTask.get();
+				progress.finish();
+			} catch (Exception e) {
+				writerTask.cancel(true);
+				throw e;
 			}
+		} finally {
+			stats.runFinished(pending, System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Reader stage. Memory-maps the input in windows of up to MAP_WINDOW bytes
+	 * and cuts each window into ranges of roughly the size asked for at each
+	 * cut. Windows and ranges end just after a whitespace byte, so no token is
+	 * split between two ranges. The ranges are views of the mapped window and
+	 * are never copied. Time Complexity: O(n / b) mappings and callbacks where
+	 * b is the range size
+	 *
+	 * @param channel   input file
+	 * @param rangeSize size of the next range in bytes
+	 * @param action    called with each range in file order
+	 * @throws Exception if mapping fails or the action fails
+	 */
+
+	private static void forEachRange(FileChannel channel, IntSupplier rangeSize, RangeAction action)
+			throws Exception {
+		long size = channel.size();
+		long position = 0;
+		while (position < size) {
+			int length = (int) Math.min(size - position, MAP_WINDOW);
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+			int limit = position + length == size ? length : SpanTokenizer.lastBoundary(window, length);
+			int from = 0;
+			while (from < limit) {
+				int range = rangeSize.getAsInt();
+				int to = limit - from <= range ? limit : SpanTokenizer.nextBoundary(window, from + range, limit);
+				action.accept(window, from, to);
+				from = to;
+			}
+			position += limit;
+		}
+	}
+
+	/**
+	 * Receives one range of the input.
+	 */
+	@FunctionalInterface
+	private interface RangeAction {
+		void accept(ByteBuffer text, int from, int to) throws Exception;
+	}
+
+	/**
+	 * First pass of vocabulary-first mode. Collects the distinct words of the
+	 * input and resolves each one once in parallel. Time Complexity: O(n + v * m)
+	 * where v is the vocabulary size and m the number of targets
+	 *
+	 * @param embeddings snapshot resolving the words
+	 * @param inputPath  source file path
+	 * @param prepared   vocabulary collected ahead for this file, or null to
+	 *                   collect it now
+	 * @return replacement for every distinct input word
+	 * @throws IOException if file reading fails
+	 */
+
+	private Map<String, String> resolveVocabulary(EmbeddingsSnapshot embeddings, String inputPath,
+			PreparedVocabulary prepared) throws Exception {
+		SpanCache vocabulary = prepared != null ? prepared.vocabulary() : new SpanCache();
+		long tokens = prepared != null ? prepared.tokens() : collectVocabulary(inputPath, vocabulary);
+
+		List<String> words = new ArrayList<>();
+		for (byte[] key : vocabulary.keys()) {
+			words.add(SpanTokenizer.toWord(key));
+		}
+		Map<String, String> replacements = resolveAll(embeddings, words);
+		distinctWordCount = replacements.size();
+		tokenCount = tokens;
+		return replacements;
+	}
+
+	/**
+	 * Hands over the vocabulary of an input collected ahead of time, such as
+	 * while the embeddings were loading. Runs over the same unchanged file
+	 * then resolve its distinct words once from this vocabulary instead of
+	 * tokenizing the file again first, whatever the vocabulary-first setting.
+	 * The size and modification time must be read before the file was
+	 * tokenized, so that an edit made while tokenizing invalidates the
+	 * vocabulary.
+	 *
+	 * @param inputPath  input the vocabulary was collected from
+	 * @param size       file size read before tokenizing
+	 * @param modified   modification time read before tokenizing
+	 * @param vocabulary distinct normalized words of the input; not changed
+	 *                   afterwards
+	 * @param tokens     number of tokens in the input
+	 */
+
+	void prepareVocabulary(String inputPath, long size, FileTime modified, SpanCache vocabulary, long tokens) {
+		preparedVocabulary = new PreparedVocabulary(Path.of(inputPath).toAbsolutePath(), size, modified, vocabulary,
+				tokens);
+	}
+
+	/**
+	 * Returns the prepared vocabulary if it was collected from this file and
+	 * the file has not changed since.
+	 *
+	 * @param inputPath source file path
+	 * @return prepared vocabulary, or null
+	 * @throws IOException if the file's attributes cannot be read
+	 */
+
+	private PreparedVocabulary preparedFor(String inputPath) throws IOException {
+		PreparedVocabulary prepared = preparedVocabulary;
+		if (prepared == null) {
+			return null;
+		}
+		Path path = Path.of(inputPath).toAbsolutePath();
+		return prepared.path().equals(path) && Files.size(path) == prepared.size()
+				&& Files.getLastModifiedTime(path).equals(prepared.modified()) ? prepared : null;
+	}
+
+	/**
+	 * Adds the normalized form of every word in a file to a cache. Package-private
+	 * so that selective loading can find the words an input needs.
+	 * Time Complexity: O(n)
+	 *
+	 * @param inputPath  source file path
+	 * @param vocabulary cache collecting distinct words
+	 * @return number of tokens in the file
+	 * @throws Exception if the file cannot be read
+	 */
+
+	static long collectVocabulary(String inputPath, SpanCache vocabulary) throws Exception {
+		long[] tokens = new long[1];
+		try (FileChannel channel = FileChannel.open(Path.of(inputPath), StandardOpenOption.READ)) {
+			forEachRange(channel, () -> BATCH_CHARS,
+					(text, from, to) -> tokens[0] += collectWords(text, from, to, vocabulary));
+		}
+		return tokens[0];
+	}
+
+	/**
+	 * Adds the normalized form of every token in a range to a cache, copying
+	 * only words not seen before. Time Complexity: O(n)
+	 *
+	 * @param text       buffer holding the range
+	 * @param from       start of the range
+	 * @param to         end of the range
+	 * @param vocabulary cache collecting distinct words
+	 * @return number of tokens in the range
+	 */
+
+	private static int collectWords(ByteBuffer text, int from, int to, SpanCache vocabulary) {
+		int tokens = 0;
+		int pos = SpanTokenizer.tokenStart(text, from, to);
+		while (pos < to) {
+			int end = SpanTokenizer.tokenEnd(text, pos, to);
+			vocabulary.add(text, pos, end);
+			tokens++;
+			pos = SpanTokenizer.tokenStart(text, end, to);
+		}
+		return tokens;
+	}
+
+	/**
+	 * Collects the distinct normalized words of a text. Package-private so the
+	 * server can queue the words of a request for a shared similarity pass.
+	 * Time Complexity: O(n)
+	 *
+	 * @param text buffer holding the text
+	 * @param from start of the text
+	 * @param to   end of the text
+	 * @return distinct normalized words
+	 */
+
+	static Set<String> distinctWords(ByteBuffer text, int from, int to) {
+		SpanCache vocabulary = new SpanCache();
+		collectWords(text, from, to, vocabulary);
+		Set<String> words = new HashSet<>();
+		for (byte[] key : vocabulary.keys()) {
+			words.add(SpanTokenizer.toWord(key));
 		}
 		return words;
 	}
 
 	/**
-	 * Processes words concurrently in batches. Time Complexity: O(n)
+	 * Resolves a set of distinct words in one parallel pass on the execution
+	 * strategy, which works over blocks of SEARCH_BLOCK words. Package-private
+	 * so the server can resolve the words of many requests together.
+	 * Time Complexity: O(v * m / p) where v is the number of words, m the number
+	 * of targets and p the parallelism
 	 *
-	 * @param words list of words to process
-	 * @return processed words
-	 * @throws Exception if processing fails
+	 * @param words distinct words to resolve; a List is used in place
+	 * @return replacement for every word
 	 */
 
-	private List<String> processConcurrently(List<String> words) throws Exception {
-		List<String> results = new ArrayList<>(words.size());
-		List<List<String>> batches = createBatches(words, BATCH_SIZE);
+	Map<String, String> resolveAll(Collection<String> words) {
+		return resolveAll(snapshot.get(), words);
+	}
 
-		try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
-			List<Future<List<String>>> futures = new ArrayList<>();
+	/**
+	 * Resolves a set of distinct words against one snapshot.
+	 *
+	 * @param embeddings snapshot resolving the words
+	 * @param words      distinct words to resolve; a List is used in place
+	 * @return replacement for every word
+	 */
+
+	private Map<String, String> resolveAll(EmbeddingsSnapshot embeddings, Collection<String> words) {
+		List<String> list = words instanceof List<String> view ? view : new ArrayList<>(words);
+		Map<String, String> replacements = new ConcurrentHashMap<>(list.size() * 2);
+		int blocks = (list.size() + SEARCH_BLOCK - 1) / SEARCH_BLOCK;
+		executionStrategy.forEach(blocks, b -> resolveRange(embeddings, list, b * SEARCH_BLOCK,
+				Math.min(list.size(), (b + 1) * SEARCH_BLOCK), replacements));
+		return replacements;
+	}
+
+	/**
+	 * Resolves a range of distinct words as processWord would, but searches for
+	 * the words that need a similarity search SEARCH_BLOCK at a time, so a
+	 * search that scores a batch in one pass over the targets (the exact scan)
+	 * reads the target matrix once per block instead of once per word.
+	 * Time Complexity: O(v * m * d) where v is the number of words, m the number
+	 * of targets and d the dimension
+	 *
+	 * @param embeddings   snapshot resolving the words
+	 * @param words        distinct words
+	 * @param from         first word to resolve
+	 * @param to           end of the words to resolve
+	 * @param replacements receives the replacement for every word in the range
+	 */
 
-			for (List<String> batch : batches) {
-				futures.add(executor.submit(() -> processBatch(batch)));
+	private static void resolveRange(EmbeddingsSnapshot embeddings, List<String> words, int from, int to,
+			Map<String, String> replacements) {
+		GoogleEmbeddingsMap targets = embeddings.google();
+		ReplacementTable table = embeddings.replacementTable();
+		SimilaritySearch search = embeddings.search();
+		String[] pending = new String[SEARCH_BLOCK];
+		double[][] vectors = new double[SEARCH_BLOCK][];
+		int[] rows = new int[SEARCH_BLOCK];
+		int count = 0;
+		for (int i = from; i < to; i++) {
+			String word = words.get(i);
+			double[] vector;
+			if (table != null || targets.containsWord(word)
+					|| (vector = embeddings.glove().getEmbedding(word)) == null) {
+				replacements.put(word, processWord(embeddings, word));
+				continue;
 			}
+			pending[count] = word;
+			vectors[count++] = vector;
+			if (count == SEARCH_BLOCK) {
+				searchBlock(search, targets, pending, vectors, rows, count, replacements);
+				count = 0;
+			}
+		}
+		searchBlock(search, targets, pending, vectors, rows, count, replacements);
+	}
+
+	/**
+	 * Searches for a block of gathered vectors and records the most similar
+	 * target word for each.
+	 *
+	 * @param search       similarity search
+	 * @param targets      Google targets
+	 * @param words        words of the gathered vectors
+	 * @param vectors      gathered vectors
+	 * @param rows         scratch for the rows found
+	 * @param count        number of vectors gathered, possibly zero
+	 * @param replacements receives the replacement for every gathered word
+	 */
 
-			for (Future<List<String>> future : futures) {
-				results.addAll(future.get());
+	private static void searchBlock(SimilaritySearch search, GoogleEmbeddingsMap targets, String[] words,
+			double[][] vectors, int[] rows, int count, Map<String, String> replacements) {
+		if (count == 0) {
+			return;
+		}
+		double[][] block = count == vectors.length ? vectors : Arrays.copyOf(vectors, count);
+		search.findMostSimilarRows(block, rows);
+		for (int i = 0; i < count; i++) {
+			replacements.put(words[i], rows[i] < 0 ? "" : targets.wordAt(rows[i]));
+		}
+	}
+
+	/**
+	 * Puts a batch on the pending queue, waiting for space. Fails fast if the
+	 * writer has stopped, as nothing would ever drain the queue.
+	 *
+	 * @param pending    bounded queue of batches awaiting the writer
+	 * @param batch      future of the processed batch
+	 * @param writerTask the writer stage
+	 * @throws Exception if the writer failed or the wait was interrupted
+	 */
+
+	private void enqueue(BlockingQueue<Future<byte[]>> pending, Future<byte[]> batch, Future<?> writerTask)
+			throws Exception {
+		while (!pending.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+			if (writerTask.isDone()) {
+				writerTask.get();
+				throw new IOException("[ERROR] Writer stopped before end of input");
 			}
 		}
+	}
 
-		return results;
+	/**
+     * Rewrites a range of text. Separators are copied unchanged and each token
+     * is looked up by its normalized form: a token kept as it is is copied
+     * byte for byte, and a replaced token takes the original's capitalization.
+     * Each distinct word is resolved once per range through a SpanCache, so
+     * repeated tokens allocate nothing. Records how each token was resolved
+     * and how long the range took. Package-private so the server can render
+     * requests with shared replacements.
+     * Time Complexity: O(n)
+     *
+     * @param text buffer holding the range
+     * @param from start of the range
+     * @param to end of the range
+     * @param resolver maps each normalized word to its output word
+     * @return processed bytes for the range
+     */
+	
+	byte[] processRange(ByteBuffer text, int from, int to, UnaryOperator<String> resolver) {
+		return processRange(snapshot.get().glove(), text, from, to, resolver);
 	}
 
 	/**
-     * Creates batches of words for concurrent processing.
+     * Rewrites a range of text, telling tokens kept because they have no
+     * embedding from direct hits with a given set of GloVe embeddings.
      * Time Complexity: O(n)
      *
-     * @param items items to batch
-     * @param batchSize size of each batch
-     * @return list of batches
+     * @param glove GloVe embeddings the resolver was built from
+     * @param text buffer holding the range
+     * @param from start of the range
+     * @param to end of the range
+     * @param resolver maps each normalized word to its output word
+     * @return processed bytes for the range
      */
 	
-	private List<List<String>> createBatches(List<String> items, int batchSize) {
-		List<List<String>> batches = new ArrayList<>();
-		for (int i = 0; i < items.size(); i += batchSize) {
-			batches.add(new ArrayList<>(items.subList(i, Math.min(items.size(), i + batchSize))));
+	private byte[] processRange(WordEmbeddings glove, ByteBuffer text, int from, int to,
+			UnaryOperator<String> resolver) {
+		long start = System.nanoTime();
+		int[] counts = new int[3];
+		SpanCache cache = new SpanCache();
+		byte[] out = new byte[to - from + 64];
+		int length = 0;
+
+		int pos = from;
+		while (pos < to) {
+			int tokenStart = SpanTokenizer.tokenStart(text, pos, to);
+			out = ensureCapacity(out, length + tokenStart - pos);
+			text.get(pos, out, length, tokenStart - pos);
+			length += tokenStart - pos;
+			if (tokenStart == to) {
+				break;
+			}
+			int tokenEnd = SpanTokenizer.tokenEnd(text, tokenStart, to);
+
+			int slot = cache.find(text, tokenStart, tokenEnd, SpanTokenizer.hash(text, tokenStart, tokenEnd));
+			if (!cache.contains(slot)) {
+				byte[] normalized = SpanTokenizer.normalize(text, tokenStart, tokenEnd);
+				String word = SpanTokenizer.toWord(normalized);
+				String resolved = resolver.apply(word);
+				if (!resolved.equals(word)) {
+					cache.put(slot, normalized, resolved.getBytes(StandardCharsets.UTF_8), SpanCache.REPLACED);
+				} else {
+					cache.put(slot, normalized, null, glove.containsWord(word) ? SpanCache.DIRECT_HIT
+							: SpanCache.OUT_OF_VOCABULARY);
+				}
+				slot = cache.find(text, tokenStart, tokenEnd, SpanTokenizer.hash(text, tokenStart, tokenEnd));
+			}
+			counts[cache.kindAt(slot)]++;
+
+			byte[] replacement = cache.valueAt(slot);
+			if (replacement == null) {
+				out = ensureCapacity(out, length + tokenEnd - tokenStart);
+				text.get(tokenStart, out, length, tokenEnd - tokenStart);
+				length += tokenEnd - tokenStart;
+			} else {
+				out = ensureCapacity(out, length + replacement.length);
+				length = appendWithCase(replacement, text, tokenStart, tokenEnd, out, length);
+			}
+			pos = tokenEnd;
 		}
-		return batches;
+		stats.recordBatch(counts[SpanCache.DIRECT_HIT], counts[SpanCache.OUT_OF_VOCABULARY],
+				counts[SpanCache.REPLACED], System.nanoTime() - start);
+		return Arrays.copyOf(out, length);
 	}
 
 	/**
-     * Processes a batch of words using stream operations.
-     * Time Complexity: O(n)
+     * Writes a replacement with the capitalization of the token it replaces:
+     * all capitals if the token has two or more capitals and no lowercase
+     * letters, a capital first letter if the token has one, otherwise as given.
      *
-     * @param batch batch of words
-     * @return processed words
+     * @param replacement replacement bytes
+     * @param text buffer holding the original token
+     * @param start offset of the original token
+     * @param end offset just after the original token
+     * @param out output buffer with room for the replacement
+     * @param length bytes already in the output buffer
+     * @return new output length
      */
 	
-	private List<String> processBatch(List<String> batch) {
-		return batch.stream().map(this::processWord).toList();
+	private static int appendWithCase(byte[] replacement, ByteBuffer text, int start, int end, byte[] out,
+			int length) {
+		boolean firstUpper = isUpper(text.get(start));
+		int capitals = 0;
+		boolean lower = false;
+		for (int i = start; i < end; i++) {
+			byte b = text.get(i);
+			capitals += isUpper(b) ? 1 : 0;
+			lower |= b >= 'a' && b <= 'z';
+		}
+		boolean allUpper = capitals > 1 && !lower;
+		for (int i = 0; i < replacement.length; i++) {
+			byte b = replacement[i];
+			boolean upper = allUpper || (firstUpper && i == 0);
+			out[length + i] = upper && b >= 'a' && b <= 'z' ? (byte) (b - ('a' - 'A')) : b;
+		}
+		return length + replacement.length;
 	}
 
 	/**
-     * Processes individual word using embeddings.
+     * Checks whether a byte is an ASCII capital letter.
+     *
+     * @param b byte to check
+     * @return true for A to Z
+     */
+	
+	private static boolean isUpper(byte b) {
+		return b >= 'A' && b <= 'Z';
+	}
+
+	/**
+     * Grows an output buffer if needed.
+     *
+     * @param out current buffer
+     * @param length required length
+     * @return a buffer of at least the required length
+     */
+	
+	private static byte[] ensureCapacity(byte[] out, int length) {
+		return out.length >= length ? out : Arrays.copyOf(out, Math.max(length, out.length * 2));
+	}
+
+	/**
+     * Processes individual word using embeddings. Package-private so that the
+     * benchmarks can measure it directly.
      * Time Complexity: O(n)
      *
      * @param word word to process
      * @return processed word
-     */	private String processWord(String word) {
-		if (googleEmbeddings.containsWord(word)) {
+     */
+	String processWord(String word) {
+		return processWord(snapshot.get(), word);
+	}
+
+	/**
+     * Processes individual word using one snapshot of the embeddings.
+     * Time Complexity: O(n)
+     *
+     * @param embeddings snapshot resolving the word
+     * @param word word to process
+     * @return processed word
+     */
+	private static String processWord(EmbeddingsSnapshot embeddings, String word) {
+		if (embeddings.google().containsWord(word)) {
 			return word;
 		}
 
-		double[] wordVector = gloveEmbeddings.getEmbedding(word);
+		ReplacementTable table = embeddings.replacementTable();
+		if (table != null) {
+			String replacement = table.lookup(word);
+			return replacement == null ? word : replacement;
+		}
+
+		double[] wordVector = embeddings.glove().getEmbedding(word);
 		if (wordVector == null) {
 			return word;
 		}
 
-		return findMostSimilarWord(wordVector);
+		return findMostSimilarWord(embeddings, wordVector);
 	}
 
      /**
-      * Finds most similar word in Google embeddings.
-      * Time Complexity: O(n)
+      * Finds most similar word in Google embeddings using the snapshot's
+      * similarity search.
+      * Time Complexity: O(n * d)
       *
+      * @param embeddings snapshot holding the targets and search
       * @param wordVector vector to compare
       * @return most similar word
       */
      
-	private String findMostSimilarWord(double[] wordVector) {
-		String bestMatch = "";
-		double highestSimilarity = -1;
-
-		// This could be further optimized by pre-computing norms
-		for (var entry : ((GoogleEmbeddingsMap) googleEmbeddings).getWordMap().entrySet()) {
-			double similarity = cosineSimilarity(wordVector, entry.getValue());
-			if (similarity > highestSimilarity) {
-				highestSimilarity = similarity;
-				bestMatch = entry.getKey();
-			}
+	private static String findMostSimilarWord(EmbeddingsSnapshot embeddings, double[] wordVector) {
+		int row = embeddings.search().findMostSimilarRow(wordVector);
+		return row < 0 ? "" : embeddings.google().wordAt(row);
+	}
+
+	/**
+     * Writer stage. Takes processed batches in input order and writes each one as
+     * soon as it completes, until the end-of-input marker is reached.
+     * Time Complexity: O(n)
+     *
+     * @param writer output stream
+     * @param pending queue of batches in input order
+     * @throws Exception if a batch failed or writing fails
+     */
+	
+	private void writeResults(OutputStream writer, BlockingQueue<Future<byte[]>> pending) throws Exception {
+		Future<byte[]> batch;
+		while ((batch = pending.take()) != END_OF_INPUT) {
+			writer.write(batch.get());
 		}
+	}
 
-		return bestMatch;
+	/**
+     * Enables or disables vocabulary-first two-pass processing.
+     *
+     * @param vocabularyFirst true to resolve each distinct word once per run
+     */
+	
+	public void setVocabularyFirst(boolean vocabularyFirst) {
+		this.vocabularyFirst = vocabularyFirst;
 	}
 
 	/**
-     * Calculates cosine similarity between vectors.
-     * Time Complexity: O(n)
-     * I used AI in assisting with calculating the cosine of the two input vectors
-     * as I was add the square roots of the norms instead of multiplying
+     * Returns whether vocabulary-first processing is enabled.
      *
-     * @param v1 first vector
-     * @param v2 second vector
-     * @return similarity score
+     * @return true if each distinct word is resolved once per run
      */
-	private double cosineSimilarity(double[] v1, double[] v2) {
-		double dotProduct = 0.0;
-		double norm1 = 0.0;
-		double norm2 = 0.0;
+	
+	public boolean isVocabularyFirst() {
+		return vocabularyFirst;
+	}
 
-		for (int i = 0; i < v1.length; i++) {
-			dotProduct += v1[i] * v2[i];
-			norm1 += Math.pow(v1[i], 2);
-			norm2 += Math.pow(v2[i], 2);
-		}
+	/**
+     * Returns the number of distinct words resolved by the last
+     * vocabulary-first run.
+     *
+     * @return distinct word count
+     */
+	
+	public int getDistinctWordCount() {
+		return distinctWordCount;
+	}
 
-		return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
+	/**
+     * Returns the number of tokens read by the last vocabulary-first run.
+     *
+     * @return token count
+     */
+	
+	public long getTokenCount() {
+		return tokenCount;
 	}
 
 	/**
-     * Writes processed words to output file.
-     * Time Complexity: O(n)
+     * Returns the throughput, outcome and latency metrics of this processor.
      *
-     * @param outputPath output file path
-     * @param words processed words
-     * @throws IOException if writing fails
+     * @return processor metrics
      */
 	
-	private void writeResults(String outputPath, List<String> words) throws IOException {
-		try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputPath))) {
-			writer.write(String.join(" ", words));
-		}
+	public ProcessorStats getStats() {
+		return stats;
+	}
+
+	/**
+     * Sets the listener receiving progress of each processText run.
+     *
+     * @param progressListener listener to use, or ProgressListener.NONE
+     */
+	
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	/**
+     * Sets a precomputed replacement table. Words found in the table are
+     * replaced with a single lookup instead of a similarity search.
+     *
+     * @param replacementTable table to use, or null to search per word
+     */
+	
+	public void setReplacementTable(ReplacementTable replacementTable) {
+		snapshot.updateAndGet(current -> current.withReplacementTable(replacementTable));
+	}
+
+	/**
+     * Sets how the CPU-bound stages are spread over threads. The reader and
+     * writer stages of processText always run on virtual threads, as they
+     * mostly wait on I/O and on each other. The caller keeps ownership of the
+     * strategy and closes it.
+     *
+     * @param executionStrategy strategy to use
+     */
+	
+	public void setExecutionStrategy(ExecutionStrategy executionStrategy) {
+		this.executionStrategy = executionStrategy;
+	}
+
+	/**
+     * Returns the strategy running the CPU-bound stages.
+     *
+     * @return current execution strategy
+     */
+	
+	public ExecutionStrategy getExecutionStrategy() {
+		return executionStrategy;
+	}
+
+	/**
+     * Sets the nearest-neighbour search used for words outside Google-1000.
+     * Defaults to the exact scan of GoogleEmbeddingsMap.
+     *
+     * @param similaritySearch search to use
+     */
+	
+	public void setSimilaritySearch(SimilaritySearch similaritySearch) {
+		snapshot.updateAndGet(current -> current.withSearch(similaritySearch));
+	}
+
+	/**
+     * Returns the snapshot of embeddings new runs will use.
+     *
+     * @return current snapshot
+     */
+	
+	public EmbeddingsSnapshot getSnapshot() {
+		return snapshot.get();
+	}
+
+	/**
+     * Swaps in a new snapshot if the current one is still the expected one.
+     * Runs already in progress keep the snapshot they started with; later runs
+     * and requests use the new one.
+     *
+     * @param expected snapshot the replacement was built from
+     * @param next replacement snapshot
+     * @return true if swapped, false if the snapshot changed in the meantime
+     */
+	
+	public boolean swapSnapshot(EmbeddingsSnapshot expected, EmbeddingsSnapshot next) {
+		return snapshot.compareAndSet(expected, next);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package ie.atu.sw;
+
+/**
+ * ProgressListener displaying a progress bar in the console. The bar uses
+ * Unicode block characters to show the completion percentage, is redrawn in
+ * place on each update and is ended with a newline once the operation
+ * completes.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public class ConsoleProgressListener implements ProgressListener {
+	/** Width of the bar in characters */
+	private static final int SIZE = 50;
+
+	/**
+	 * Draws the bar for the current progress.
+	 * Time Complexity: O(n) where n is the size of the progress bar (fixed at 50)
+	 *
+	 * @param task  short description of the operation
+	 * @param done  units completed so far
+	 * @param total total units of the operation
+	 */
+	@Override
+	public void onProgress(String task, long done, long total) {
+		if (done > total) return;
+		char complete = '█';
+		char todo = '░';
+		int percent = total <= 0 ? 100 : (int) (100 * done / total);
+		int completeLen = SIZE * percent / 100;
+
+		StringBuilder sb = new StringBuilder();
+		sb.append('\r').append(task).append(" [");
+		for (int i = 0; i < SIZE; i++) {
+			sb.append((i < completeLen) ? complete : todo);
+		}
+		sb.append("] ").append(percent).append('%');
+
+		if (done == total) sb.append('\n');
+		System.out.print(sb);
+	}
+}
@@ -0,0 +1,407 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel parser for embeddings files in CSV format, where each line holds a
+ * word followed by its comma-separated vector components.
+ *
+ * The file is split into newline-aligned byte ranges that are memory-mapped
+ * and parsed on all cores. Numbers are parsed straight from the raw bytes into
+ * a packed float32 block per range, so the only object allocated per line is
+ * the word itself. Ranges are returned
+ * in file order so callers can merge them into a store with stable ids.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+final class CsvEmbeddingsParser {
+	/** Smallest byte range worth handing to a separate task */
+	private static final long MIN_RANGE_SIZE = 1 << 20;
+	/** Bytes parsed between two progress updates from a worker */
+	private static final int PROGRESS_STEP = 1 << 16;
+	/** Ranges per core, so faster cores pick up more work */
+	private static final int RANGES_PER_CORE = 8;
+	/** Largest mantissa that converts to double exactly */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+	/** Exact powers of ten usable for correctly rounded conversion */
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	/**
+	 * Words and vectors parsed from one byte range, in file order.
+	 *
+	 * @param words     parsed words
+	 * @param values    float32 vectors packed row-major, one row per word
+	 * @param dimension number of components per vector
+	 */
+	record Chunk(List<String> words, float[] values, int dimension) {
+	}
+
+	private CsvEmbeddingsParser() {
+	}
+
+	/**
+	 * Parses an embeddings file in parallel. The dimension is taken from the first
+	 * line and every other line must match it. Progress is reported in bytes
+	 * parsed against the file size.
+	 *
+	 * Time Complexity: O(n / p) where n is the file size and p the number of cores
+	 *
+	 * @param filePath path to the embeddings file
+	 * @param listener listener receiving progress
+	 * @return parsed ranges in file order
+	 * @throws Exception if the file cannot be read or contains invalid data
+	 */
+	static List<Chunk> parse(String filePath, ProgressListener listener) throws Exception {
+		return parse(filePath, listener, null);
+	}
+
+	/**
+	 * Parses only the lines of an embeddings file whose word is in a set. Other
+	 * lines are skipped once their word has been probed in place, without
+	 * allocating the word or parsing its numbers.
+	 *
+	 * Time Complexity: O(n / p) to scan, plus O(k * d) to parse the k kept lines
+	 *
+	 * @param filePath path to the embeddings file
+	 * @param listener listener receiving progress
+	 * @param wanted   lowercase words to keep, or null to keep every line
+	 * @return parsed ranges in file order
+	 * @throws Exception if the file cannot be read or contains invalid data
+	 */
+	static List<Chunk> parse(String filePath, ProgressListener listener, SpanCache wanted) throws Exception {
+		Path path = Path.of(filePath);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long[] bounds = splitRanges(channel);
+			int dimension = detectDimension(channel);
+			int ranges = bounds.length - 1;
+			ProgressTracker progress = new ProgressTracker(listener, "Loading " + path.getFileName(), channel.size());
+
+			List<Callable<Chunk>> tasks = new ArrayList<>(ranges);
+			for (int r = 0; r < ranges; r++) {
+				long start = bounds[r];
+				long end = bounds[r + 1];
+				tasks.add(() -> {
+					return parseRange(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start), dimension, progress,
+							wanted);
+				});
+			}
+
+			List<Chunk> chunks = new ArrayList<>(ranges);
+			for (Future<Chunk> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+				try {
+					chunks.add(future.get());
+				} catch (ExecutionException e) {
+					throw e.getCause() instanceof Exception cause ? cause : e;
+				}
+			}
+			progress.finish();
+			return chunks;
+		}
+	}
+
+	/**
+	 * Splits the file into ranges whose boundaries fall just after a newline.
+	 *
+	 * Time Complexity: O(r * k) where r is the number of ranges and k the line
+	 * length
+	 *
+	 * @param channel open file channel
+	 * @return range boundaries, first 0 and last the file size
+	 * @throws IOException if the file cannot be read
+	 */
+	private static long[] splitRanges(FileChannel channel) throws IOException {
+		long size = channel.size();
+		int target = Runtime.getRuntime().availableProcessors() * RANGES_PER_CORE;
+		long rangeSize = Math.max(MIN_RANGE_SIZE, size / target + 1);
+		rangeSize = Math.min(rangeSize, Integer.MAX_VALUE / 2);
+
+		List<Long> bounds = new ArrayList<>();
+		bounds.add(0L);
+		ByteBuffer probe = ByteBuffer.allocate(4096);
+		long position = rangeSize;
+		while (position < size) {
+			long boundary = nextLineStart(channel, position, probe);
+			if (boundary >= size) {
+				break;
+			}
+			bounds.add(boundary);
+			position = boundary + rangeSize;
+		}
+		bounds.add(size);
+		return bounds.stream().mapToLong(Long::longValue).toArray();
+	}
+
+	/**
+	 * Finds the start of the first line beginning after a position.
+	 *
+	 * @param channel  open file channel
+	 * @param position position to search from
+	 * @param probe    reusable read buffer
+	 * @return position just after the next newline, or the file size
+	 * @throws IOException if the file cannot be read
+	 */
+	private static long nextLineStart(FileChannel channel, long position, ByteBuffer probe) throws IOException {
+		while (true) {
+			probe.clear();
+			int read = channel.read(probe, position);
+			if (read <= 0) {
+				return channel.size();
+			}
+			for (int i = 0; i < read; i++) {
+				if (probe.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+	}
+
+	/**
+	 * Counts the vector components on the first line of the file.
+	 *
+	 * @param channel open file channel
+	 * @return number of components per vector
+	 * @throws Exception if the first line has no components
+	 */
+	private static int detectDimension(FileChannel channel) throws Exception {
+		long end = Math.min(channel.size(), nextLineStart(channel, 0, ByteBuffer.allocate(4096)));
+		MappedByteBuffer line = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+		int commas = 0;
+		for (int i = 0; i < line.limit(); i++) {
+			if (line.get(i) == ',') {
+				commas++;
+			}
+		}
+		if (commas == 0 && end > 0) {
+			throw new Exception("[ERROR] Invalid line format: no vector components on first line");
+		}
+		return commas;
+	}
+
+	/**
+	 * Parses every line of a newline-aligned range.
+	 *
+	 * Time Complexity: O(n) where n is the range size
+	 *
+	 * @param buffer    mapped range
+	 * @param dimension expected number of components per line
+	 * @param progress  tracker advanced every PROGRESS_STEP bytes
+	 * @param wanted    lowercase words to keep, or null to keep every line
+	 * @return parsed words and vectors
+	 * @throws Exception if a line is malformed
+	 */
+	private static Chunk parseRange(ByteBuffer buffer, int dimension, ProgressTracker progress, SpanCache wanted)
+			throws Exception {
+		List<String> words = new ArrayList<>();
+		float[] values = new float[dimension * 1024];
+		int limit = buffer.limit();
+		int pos = 0;
+		int reported = 0;
+		byte[] scratch = new byte[64];
+
+		while (pos < limit) {
+			if (pos - reported >= PROGRESS_STEP) {
+				progress.advance(pos - reported);
+				reported = pos;
+			}
+			int lineEnd = pos;
+			while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+				lineEnd++;
+			}
+			int contentEnd = lineEnd > pos && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+			if (contentEnd > pos) {
+				int comma = pos;
+				while (comma < contentEnd && buffer.get(comma) != ',') {
+					comma++;
+				}
+				if (comma == contentEnd) {
+					throw invalidLine(buffer, pos, contentEnd);
+				}
+				if (wanted != null && !isWanted(buffer, pos, comma, wanted)) {
+					pos = lineEnd + 1;
+					continue;
+				}
+				scratch = ensureCapacity(scratch, comma - pos);
+				buffer.get(pos, scratch, 0, comma - pos);
+				words.add(new String(scratch, 0, comma - pos, StandardCharsets.UTF_8));
+
+				int base = (words.size() - 1) * dimension;
+				if (base + dimension > values.length) {
+					values = Arrays.copyOf(values, Math.max(values.length * 2, base + dimension));
+				}
+				int field = comma + 1;
+				for (int i = 0; i < dimension; i++) {
+					int fieldEnd = field;
+					while (fieldEnd < contentEnd && buffer.get(fieldEnd) != ',') {
+						fieldEnd++;
+					}
+					if (field > contentEnd || (fieldEnd == contentEnd) != (i == dimension - 1)) {
+						throw invalidLine(buffer, pos, contentEnd);
+					}
+					values[base + i] = (float) parseDouble(buffer, field, fieldEnd);
+					field = fieldEnd + 1;
+				}
+			}
+			pos = lineEnd + 1;
+		}
+		progress.advance(limit - reported);
+		return new Chunk(words, values, dimension);
+	}
+
+	/**
+	 * Checks whether a word is in a set of lowercase words. The cache matches
+	 * ignoring case, so words with capitals are rejected first.
+	 *
+	 * @param buffer source bytes
+	 * @param start  first byte of the word
+	 * @param end    byte after the word
+	 * @param wanted lowercase words to keep
+	 * @return true if the word is wanted exactly
+	 */
+	private static boolean isWanted(ByteBuffer buffer, int start, int end, SpanCache wanted) {
+		for (int i = start; i < end; i++) {
+			byte b = buffer.get(i);
+			if (b >= 'A' && b <= 'Z') {
+				return false;
+			}
+		}
+		return wanted.contains(wanted.find(buffer, start, end, SpanTokenizer.hash(buffer, start, end)));
+	}
+
+	/**
+	 * Parses a decimal number from raw ASCII bytes. Numbers whose mantissa and
+	 * exponent fit the exact fast path are converted with one correctly rounded
+	 * operation; anything else falls back to Double.parseDouble, so results always
+	 * match it exactly.
+	 *
+	 * Time Complexity: O(k) where k is the number of characters
+	 *
+	 * @param buffer source bytes
+	 * @param start  first byte of the number
+	 * @param end    byte after the number
+	 * @return parsed value
+	 */
+	static double parseDouble(ByteBuffer buffer, int start, int end) {
+		int i = start;
+		boolean negative = false;
+		if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+			negative = buffer.get(i) == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int scale = 0;
+		boolean seenDigit = false;
+		boolean seenPoint = false;
+		for (; i < end; i++) {
+			byte b = buffer.get(i);
+			if (b >= '0' && b <= '9') {
+				seenDigit = true;
+				if (mantissa != 0 || b != '0') {
+					digits++;
+				}
+				if (digits > 18) {
+					return fallback(buffer, start, end);
+				}
+				mantissa = mantissa * 10 + (b - '0');
+				if (seenPoint) {
+					scale--;
+				}
+			} else if (b == '.' && !seenPoint) {
+				seenPoint = true;
+			} else {
+				break;
+			}
+		}
+		if (!seenDigit) {
+			return fallback(buffer, start, end);
+		}
+
+		if (i < end) {
+			byte b = buffer.get(i);
+			if (b != 'e' && b != 'E') {
+				return fallback(buffer, start, end);
+			}
+			i++;
+			boolean negativeExponent = false;
+			if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+				negativeExponent = buffer.get(i) == '-';
+				i++;
+			}
+			int exponent = 0;
+			if (i == end) {
+				return fallback(buffer, start, end);
+			}
+			for (; i < end; i++) {
+				b = buffer.get(i);
+				if (b < '0' || b > '9' || exponent > 1000) {
+					return fallback(buffer, start, end);
+				}
+				exponent = exponent * 10 + (b - '0');
+			}
+			scale += negativeExponent ? -exponent : exponent;
+		}
+
+		if (mantissa >= MAX_EXACT_MANTISSA || scale < -22 || scale > 22) {
+			return fallback(buffer, start, end);
+		}
+		double value = scale < 0 ? mantissa / POWERS_OF_TEN[-scale] : mantissa * POWERS_OF_TEN[scale];
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parses a number the slow way, used for inputs outside the exact fast path.
+	 *
+	 * @param buffer source bytes
+	 * @param start  first byte of the number
+	 * @param end    byte after the number
+	 * @return parsed value
+	 */
+	private static double fallback(ByteBuffer buffer, int start, int end) {
+		byte[] bytes = new byte[end - start];
+		buffer.get(start, bytes);
+		return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Builds the error thrown for a malformed line.
+	 *
+	 * @param buffer source bytes
+	 * @param start  first byte of the line
+	 * @param end    byte after the line
+	 * @return exception describing the line
+	 */
+	private static Exception invalidLine(ByteBuffer buffer, int start, int end) {
+		byte[] bytes = new byte[end - start];
+		buffer.get(start, bytes);
+		return new Exception("[ERROR] Invalid line format: " + new String(bytes, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Grows a scratch buffer if needed.
+	 *
+	 * @param scratch current buffer
+	 * @param length  required length
+	 * @return a buffer of at least the required length
+	 */
+	private static byte[] ensureCapacity(byte[] scratch, int length) {
+		return scratch.length >= length ? scratch : Arrays.copyOf(scratch, Math.max(length, scratch.length * 2));
+	}
+}
@@ -0,0 +1,168 @@
+package ie.atu.sw;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Reloads the embeddings of a running ConcurrentTextProcessor without
+ * stopping it. A reload builds a complete new EmbeddingsSnapshot on a
+ * background thread: the GloVe embeddings, the Google targets over them, a
+ * search of the same kind as the current one and, if one is in use, a new
+ * replacement table. The new snapshot is then swapped in with a single atomic
+ * step, so runs and requests never wait for a reload, and runs already in
+ * progress finish on the snapshot they started with.
+ *
+ * If the current snapshot changes while a reload is building (a different
+ * search or table was chosen), the derived structures are rebuilt for the
+ * newer choice before swapping. Incremental edits made to the old targets are
+ * not carried over; the new targets are read from the word list file.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public class EmbeddingsReloader {
+	/** Processor whose snapshot is replaced */
+	private final ConcurrentTextProcessor processor;
+	/** Listener receiving load progress */
+	private final ProgressListener progress;
+	/** GloVe file of the current snapshot */
+	private volatile String glovePath;
+	/** Google word list of the current snapshot */
+	private volatile String googlePath;
+	/** Input whose vocabulary limits a selective load, or null to load all */
+	private volatile String selectiveInput;
+	/** Reload in progress, or null */
+	private CompletableFuture<EmbeddingsSnapshot> running;
+
+	/**
+	 * Creates a reloader for a processor whose embeddings were loaded from
+	 * the given files.
+	 *
+	 * @param processor  processor whose snapshot is replaced
+	 * @param glovePath  GloVe file of the current snapshot
+	 * @param googlePath Google word list of the current snapshot
+	 * @param progress   listener receiving load progress
+	 */
+	public EmbeddingsReloader(ConcurrentTextProcessor processor, String glovePath, String googlePath,
+			ProgressListener progress) {
+		this.processor = processor;
+		this.glovePath = glovePath;
+		this.googlePath = googlePath;
+		this.progress = progress;
+	}
+
+	/**
+	 * Makes reloads keep only the vectors of an input's words and the Google
+	 * words, as with --selective.
+	 *
+	 * @param inputPath input limiting the load, or null to load every vector
+	 */
+	public void setSelectiveInput(String inputPath) {
+		this.selectiveInput = inputPath;
+	}
+
+	/**
+	 * Reloads the current files in the background.
+	 *
+	 * @return future completing with the new snapshot once it is in use
+	 */
+	public CompletableFuture<EmbeddingsSnapshot> reloadAsync() {
+		return reloadAsync(glovePath, googlePath);
+	}
+
+	/**
+	 * Reloads from the given files in the background. While a reload is
+	 * running, further calls return the reload already in progress.
+	 *
+	 * @param glovePath  GloVe file, CSV or binary snapshot
+	 * @param googlePath Google word list
+	 * @return future completing with the new snapshot once it is in use
+	 */
+	public synchronized CompletableFuture<EmbeddingsSnapshot> reloadAsync(String glovePath, String googlePath) {
+		if (running != null && !running.isDone()) {
+			return running;
+		}
+		CompletableFuture<EmbeddingsSnapshot> future = new CompletableFuture<>();
+		running = future;
+		Thread.ofPlatform().name("embeddings-reload").daemon().start(() -> {
+			try {
+				future.complete(reload(glovePath, googlePath));
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Reloads from the given files on the calling thread and swaps the new
+	 * snapshot in.
+	 *
+	 * Time Complexity: O(v * d) to load the vectors, plus the cost of
+	 * rebuilding the search and table in use
+	 *
+	 * @param glovePath  GloVe file, CSV or binary snapshot
+	 * @param googlePath Google word list
+	 * @return the new snapshot, now in use
+	 * @throws Exception if the files cannot be loaded
+	 */
+	public EmbeddingsSnapshot reload(String glovePath, String googlePath) throws Exception {
+		String input = selectiveInput;
+		WordEmbeddings glove = input != null
+				? WordEmbeddings.openSelective(glovePath, input, googlePath, progress)
+				: WordEmbeddings.open(glovePath, progress);
+		GoogleEmbeddingsMap google = new GoogleEmbeddingsMap(glove);
+		google.load(googlePath, progress);
+
+		while (true) {
+			EmbeddingsSnapshot current = processor.getSnapshot();
+			SimilaritySearch search = rebuildSearch(current.search(), google);
+			ReplacementTable table = current.replacementTable() == null ? null
+					: input != null ? ReplacementTable.compute(glove, google, progress)
+							: ReplacementTable.loadOrCompute(glovePath, glove, google, progress);
+			if (search instanceof TargetListener listener) {
+				google.addTargetListener(listener);
+			}
+			if (table != null) {
+				google.addTargetListener(table);
+			}
+
+			EmbeddingsSnapshot next = new EmbeddingsSnapshot(current.version() + 1, glove, google, search, table);
+			if (processor.swapSnapshot(current, next)) {
+				this.glovePath = glovePath;
+				this.googlePath = googlePath;
+				Metrics.register("Embeddings", "GloVe", glove.getStats());
+				Metrics.register("Embeddings", "Google1000", google.getStats());
+				return next;
+			}
+			if (search instanceof TargetListener listener) {
+				google.removeTargetListener(listener);
+			}
+			if (table != null) {
+				google.removeTargetListener(table);
+			}
+		}
+	}
+
+	/**
+	 * Builds a search of the same kind and settings as the current one over
+	 * new targets. Searches of unknown kinds fall back to the exact scan.
+	 *
+	 * @param current search in use
+	 * @param google  new targets
+	 * @return search over the new targets
+	 * @throws Exception if building fails
+	 */
+	private SimilaritySearch rebuildSearch(SimilaritySearch current, GoogleEmbeddingsMap google) throws Exception {
+		if (current instanceof QuantizedSimilaritySearch quantized) {
+			return new QuantizedSimilaritySearch(google, quantized.getVerifyInterval());
+		}
+		if (current instanceof PrunedSimilaritySearch) {
+			return new PrunedSimilaritySearch(google);
+		}
+		if (current instanceof HnswSimilaritySearch hnsw) {
+			return HnswSimilaritySearch.build(google, hnsw.getM(), hnsw.getEfConstruction(), progress);
+		}
+		return google;
+	}
+}
@@ -0,0 +1,59 @@
+package ie.atu.sw;
+
+/**
+ * One version of everything a ConcurrentTextProcessor resolves words with:
+ * the GloVe embeddings, the Google targets built from them and the structures
+ * derived from the targets. A processor holds its current snapshot in an
+ * atomic reference and each run reads it once, so a run started before a
+ * reload finishes on the version it started with.
+ *
+ * The snapshot itself never changes. Choosing a different search or table
+ * makes a new snapshot with the same version, and a reload makes one with the
+ * next version. The Google targets may still receive incremental updates,
+ * which their listeners apply in place.
+ *
+ * @param version          number of reloads before this snapshot, starting at 1
+ * @param glove            GloVe embeddings
+ * @param google           Google targets built from glove
+ * @param search           search used for words outside the targets
+ * @param replacementTable precomputed replacements, or null to search per word
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public record EmbeddingsSnapshot(long version, WordEmbeddings glove, GoogleEmbeddingsMap google,
+		SimilaritySearch search, ReplacementTable replacementTable) {
+
+	/**
+	 * Creates the first snapshot of a set of embeddings, using the exact scan
+	 * and no replacement table.
+	 *
+	 * @param glove  GloVe embeddings
+	 * @param google Google targets built from glove
+	 * @return snapshot at version 1
+	 */
+	public static EmbeddingsSnapshot of(WordEmbeddings glove, GoogleEmbeddingsMap google) {
+		return new EmbeddingsSnapshot(1, glove, google, google, null);
+	}
+
+	/**
+	 * Returns a copy of this snapshot using a different search.
+	 *
+	 * @param search search to use
+	 * @return snapshot at the same version
+	 */
+	public EmbeddingsSnapshot withSearch(SimilaritySearch search) {
+		return new EmbeddingsSnapshot(version, glove, google, search, replacementTable);
+	}
+
+	/**
+	 * Returns a copy of this snapshot using a different replacement table.
+	 *
+	 * @param replacementTable table to use, or null to search per word
+	 * @return snapshot at the same version
+	 */
+	public EmbeddingsSnapshot withReplacementTable(ReplacementTable replacementTable) {
+		return new EmbeddingsSnapshot(version, glove, google, search, replacementTable);
+	}
+}
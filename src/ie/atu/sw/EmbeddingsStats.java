@@ -0,0 +1,64 @@
+package ie.atu.sw;
+
+/**
+ * Load and footprint metrics for one embedding store, published over JMX.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public class EmbeddingsStats implements EmbeddingsStatsMBean {
+	/** Duration of the last load */
+	private volatile long loadNanos;
+	/** Input size of the last load */
+	private volatile long loadBytes;
+	/** Current word count of the store */
+	private volatile int wordCount;
+	/** Current memory estimate of the store */
+	private volatile long memoryBytes;
+
+	/**
+	 * Records a completed load and the store's resulting footprint.
+	 *
+	 * @param nanos       duration of the load
+	 * @param bytes       size of the input read
+	 * @param words       words in the store
+	 * @param memoryBytes estimated footprint of the store
+	 */
+	public void recordLoad(long nanos, long bytes, int words, long memoryBytes) {
+		this.loadNanos = nanos;
+		this.loadBytes = bytes;
+		updateFootprint(words, memoryBytes);
+	}
+
+	/**
+	 * Records a change in the store's size after loading.
+	 *
+	 * @param words       words in the store
+	 * @param memoryBytes estimated footprint of the store
+	 */
+	public void updateFootprint(int words, long memoryBytes) {
+		this.wordCount = words;
+		this.memoryBytes = memoryBytes;
+	}
+
+	@Override
+	public long getLoadTimeMillis() {
+		return loadNanos / 1_000_000;
+	}
+
+	@Override
+	public long getLoadBytesPerSecond() {
+		return loadNanos == 0 ? 0 : (long) (loadBytes * 1e9 / loadNanos);
+	}
+
+	@Override
+	public int getWordCount() {
+		return wordCount;
+	}
+
+	@Override
+	public long getMemoryBytes() {
+		return memoryBytes;
+	}
+}
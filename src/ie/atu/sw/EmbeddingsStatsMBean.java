@@ -0,0 +1,43 @@
+package ie.atu.sw;
+
+/**
+ * JMX view of an embedding store.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public interface EmbeddingsStatsMBean {
+
+	/**
+	 * Gets the wall-clock time of the last load.
+	 *
+	 * @return load time in milliseconds
+	 */
+
+	long getLoadTimeMillis();
+
+	/**
+	 * Gets the input bytes read per second during the last load.
+	 *
+	 * @return load throughput in bytes per second
+	 */
+
+	long getLoadBytesPerSecond();
+
+	/**
+	 * Gets the number of words in the store.
+	 *
+	 * @return word count
+	 */
+
+	int getWordCount();
+
+	/**
+	 * Gets the estimated memory held by the store's vectors and index.
+	 *
+	 * @return footprint in bytes
+	 */
+
+	long getMemoryBytes();
+}
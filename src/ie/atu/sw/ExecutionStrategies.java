@@ -0,0 +1,80 @@
+package ie.atu.sw;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Creates ExecutionStrategy instances by kind or by name.
+ *
+ * "forkjoin" suits the CPU-bound stages best: idle workers steal split-off
+ * ranges, so uneven work such as a run of out-of-vocabulary words is
+ * rebalanced. "fixed" uses a pool of platform threads with self-scheduled,
+ * adaptively sized chunks. "virtual" starts a virtual thread per task, which
+ * only pays off for stages that block on I/O.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public final class ExecutionStrategies {
+
+	private ExecutionStrategies() {
+	}
+
+	/**
+	 * Returns a fork/join strategy over the common pool.
+	 *
+	 * @return fork/join strategy, which needs no closing
+	 */
+	public static ExecutionStrategy forkJoin() {
+		return new ForkJoinStrategy(ForkJoinPool.commonPool(), false);
+	}
+
+	/**
+	 * Returns a fork/join strategy over a pool of its own.
+	 *
+	 * @param parallelism number of worker threads
+	 * @return fork/join strategy
+	 */
+	public static ExecutionStrategy forkJoin(int parallelism) {
+		return new ForkJoinStrategy(new ForkJoinPool(Math.max(1, parallelism)), true);
+	}
+
+	/**
+	 * Returns a strategy over a fixed pool of platform threads.
+	 *
+	 * @param parallelism number of threads
+	 * @return fixed pool strategy
+	 */
+	public static ExecutionStrategy fixedPool(int parallelism) {
+		int threads = Math.max(1, parallelism);
+		return new PooledStrategy("fixed", Executors.newFixedThreadPool(threads), threads);
+	}
+
+	/**
+	 * Returns a strategy starting a virtual thread per task.
+	 *
+	 * @param parallelism number of chunks run at once by forEach
+	 * @return virtual thread strategy
+	 */
+	public static ExecutionStrategy virtualThreads(int parallelism) {
+		return new PooledStrategy("virtual", Executors.newVirtualThreadPerTaskExecutor(), Math.max(1, parallelism));
+	}
+
+	/**
+	 * Returns a strategy by name.
+	 *
+	 * @param name        forkjoin, fixed or virtual
+	 * @param parallelism number of threads, or of concurrent chunks for virtual
+	 * @return the strategy
+	 * @throws Exception if the name is unknown
+	 */
+	public static ExecutionStrategy named(String name, int parallelism) throws Exception {
+		return switch (name) {
+		case "forkjoin" -> forkJoin(parallelism);
+		case "fixed" -> fixedPool(parallelism);
+		case "virtual" -> virtualThreads(parallelism);
+		default -> throw new Exception("[ERROR] Unknown execution strategy: " + name);
+		};
+	}
+}
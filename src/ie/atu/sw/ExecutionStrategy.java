@@ -0,0 +1,57 @@
+package ie.atu.sw;
+
+import java.util.concurrent.ExecutorService;
+import java.util.function.IntConsumer;
+
+/**
+ * Interface for how CPU-bound simplification work is spread over threads.
+ * The same work can run on a fork/join pool with work stealing, a fixed pool
+ * of platform threads or a virtual thread per task, so the choice can be
+ * measured rather than assumed. Implementations are obtained through
+ * ExecutionStrategies.
+ *
+ * Work is always described by index ranges over the caller's data, so no
+ * strategy copies the items it processes.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public interface ExecutionStrategy extends AutoCloseable {
+
+	/**
+	 * Gets the name used to choose this strategy.
+	 *
+	 * @return strategy name
+	 */
+
+	String name();
+
+	/**
+	 * Gets the executor that runs independent tasks, such as the ranges of a
+	 * file in the text pipeline.
+	 *
+	 * @return task executor
+	 */
+
+	ExecutorService executor();
+
+	/**
+	 * Runs an action for every index from 0 to size - 1 and waits for all of
+	 * them. The strategy decides how the indexes are grouped and may size the
+	 * groups from the measured cost of earlier ones.
+	 *
+	 * @param size   number of indexes
+	 * @param action action run once per index, possibly concurrently
+	 */
+
+	void forEach(int size, IntConsumer action);
+
+	/**
+	 * Shuts down any threads owned by the strategy. Shared pools are left
+	 * running.
+	 */
+
+	@Override
+	void close();
+}
@@ -0,0 +1,113 @@
+package ie.atu.sw;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * ExecutionStrategy on a work-stealing ForkJoinPool. forEach splits its index
+ * range recursively, but only while the pool is short of queued work: a task
+ * keeps halving its range and forking the upper half until the worker has a
+ * few surplus tasks queued, then runs the rest itself. Busy pools therefore
+ * get a few large tasks and idle workers keep finding ranges to steal, which
+ * adapts the split to uneven per-index cost without any tuning.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+final class ForkJoinStrategy implements ExecutionStrategy {
+	/** Indexes below which a range is never split */
+	private static final int MIN_RANGE = 16;
+	/** Queued tasks per worker beyond which ranges are run instead of split */
+	private static final int MAX_SURPLUS = 3;
+
+	/** Pool running the tasks */
+	private final ForkJoinPool pool;
+	/** Whether the pool belongs to this strategy and is shut down on close */
+	private final boolean owned;
+
+	/**
+	 * Constructs a strategy over a pool.
+	 *
+	 * @param pool  pool running the tasks
+	 * @param owned true to shut the pool down on close
+	 */
+	ForkJoinStrategy(ForkJoinPool pool, boolean owned) {
+		this.pool = pool;
+		this.owned = owned;
+	}
+
+	@Override
+	public String name() {
+		return "forkjoin";
+	}
+
+	@Override
+	public ExecutorService executor() {
+		return pool;
+	}
+
+	/**
+	 * Runs the action over the indexes with surplus-driven splitting.
+	 * Time Complexity: O(n / p) for uniform work
+	 *
+	 * @param size   number of indexes
+	 * @param action action run once per index
+	 */
+	@Override
+	public void forEach(int size, IntConsumer action) {
+		if (size > 0) {
+			pool.invoke(new RangeTask(action, 0, size, null));
+		}
+	}
+
+	@Override
+	public void close() {
+		if (owned) {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Task running an action over a range of indexes. Forked upper halves are
+	 * chained through next so the task can join them after its own part.
+	 */
+	@SuppressWarnings("serial") // fork/join tasks are never serialized
+	private static final class RangeTask extends RecursiveAction {
+		private final IntConsumer action;
+		private final int from;
+		private final int to;
+		private final RangeTask next;
+
+		RangeTask(IntConsumer action, int from, int to, RangeTask next) {
+			this.action = action;
+			this.from = from;
+			this.to = to;
+			this.next = next;
+		}
+
+		@Override
+		protected void compute() {
+			int hi = to;
+			RangeTask forked = null;
+			while (hi - from > MIN_RANGE && getSurplusQueuedTaskCount() <= MAX_SURPLUS) {
+				int mid = (from + hi) >>> 1;
+				forked = new RangeTask(action, mid, hi, forked);
+				forked.fork();
+				hi = mid;
+			}
+			for (int i = from; i < hi; i++) {
+				action.accept(i);
+			}
+			for (RangeTask task = forked; task != null; task = task.next) {
+				if (task.tryUnfork()) {
+					task.compute();
+				} else {
+					task.join();
+				}
+			}
+		}
+	}
+}
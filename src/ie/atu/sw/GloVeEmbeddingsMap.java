@@ -1,167 +1,290 @@
 package ie.atu.sw;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.InputStreamReader;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Implementation of the WordEmbeddings interface that handles GloVe (Global
  * Vectors for Word Representation) embeddings. This class provides
- * functionality to load, store, and retrieve word embeddings from a file using
- * a thread-safe concurrent hash map implementation.
- * 
- * The class handles 50-dimensional word vectors stored in CSV format, where
- * each line contains: - First column: The word - Following 50 columns: Vector
- * components
- * 
+ * functionality to load, store, and retrieve word embeddings from a file.
+ *
+ * All vectors are stored as float32 in one contiguous row-major slab, and words
+ * are resolved to rows through a minimal perfect hash over their UTF-8 bytes.
+ * Compared with one double array and one hash map node per word this more than
+ * halves the footprint, and the words themselves take one byte arena instead
+ * of a String each. The store is filled completely by load and is read-only
+ * afterwards, so it can be shared freely between threads.
+ *
+ * The class handles word vectors stored in CSV format, where each line
+ * contains: - First column: The word - Following columns: Vector components.
+ * The dimension is taken from the first line of the file.
+ *
  * @version 1.0.0
  * @author [Joseph Shortt]
  */
 
 public class GloVeEmbeddingsMap implements WordEmbeddings {
 
+	/** Float32 vectors stored row-major, one row of length dimension per word */
+	private float[] vectors = new float[0];
+
+	/** Reciprocal of each row's norm, for cosine scoring without a sqrt per row */
+	private float[] inverseNorms = new float[0];
+
+	/** Dense word ids in file order, used as rows into vectors */
+	private PerfectHashIndex wordIndex = PerfectHashIndex.build(new String[0]);
+
+	/** Number of components per vector */
+	private int dimension;
+
+	/** Load and footprint metrics */
+	private final EmbeddingsStats stats = new EmbeddingsStats();
+
 	/**
-	 * Thread-safe map storing word embeddings where keys are words and values are
-	 * their vector representations.
+	 * Loads word embeddings from a specified file path. The file is split into
+	 * newline-aligned byte ranges that are parsed in parallel, then merged into
+	 * the slab in file order.
+	 *
+	 * Time Complexity: O(n / p) for parsing where n is the file size and p the
+	 * number of cores, plus O(w * d) to merge w words of dimension d
+	 *
+	 * @param filePath path to the embeddings file
+	 * @param listener listener receiving progress in bytes parsed
+	 * @throws Exception if the file cannot be read or contains invalid data
 	 */
-	private final Map<String, double[]> wordMap = new ConcurrentHashMap<>();
+
+	@Override
+	public void load(String filePath, ProgressListener listener) throws Exception {
+		long start = System.nanoTime();
+		merge(CsvEmbeddingsParser.parse(filePath, listener));
+		stats.recordLoad(System.nanoTime() - start, Files.size(Path.of(filePath)), getSize(), memoryBytes());
+	}
 
 	/**
-	 * Loads word embeddings from a specified file path. Reads the file line by
-	 * line, parsing each line into a word and its corresponding embedding vector.
-	 * 
-	 * Time Complexity: O(n) where n is the number of lines in the embeddings file
+	 * Loads only the embeddings of the given words. Lines for other words are
+	 * skipped without parsing their vectors, so both load time and footprint
+	 * scale with the number of words kept rather than the file size.
+	 *
+	 * Time Complexity: O(n / p) to scan the file plus O(k * d) for the k words
+	 * kept
 	 *
 	 * @param filePath path to the embeddings file
+	 * @param words    lowercase words to keep
+	 * @param listener listener receiving progress in bytes scanned
 	 * @throws Exception if the file cannot be read or contains invalid data
 	 */
 
-	@Override
-	public void load(String filePath) throws Exception {
-		int totalLines = countLines(filePath);
-		try (var br = new BufferedReader(new InputStreamReader(new FileInputStream(filePath)))) {
-			parseEmbeddingsFile(br, totalLines);
-		}
+	void loadSelected(String filePath, SpanCache words, ProgressListener listener) throws Exception {
+		long start = System.nanoTime();
+		merge(CsvEmbeddingsParser.parse(filePath, listener, words));
+		stats.recordLoad(System.nanoTime() - start, Files.size(Path.of(filePath)), getSize(), memoryBytes());
 	}
 
 	/**
-	 * Retrieves the embedding vector for a given word.
-	 * 
-	 * Time Complexity: O(1) average case due to hash table lookup
+	 * Retrieves the embedding vector for a given word, widened from the stored
+	 * float32 values.
+	 *
+	 * Time Complexity: O(d) where d is the dimension
 	 *
 	 * @param word the word to look up
 	 * @return the embedding vector for the word, or null if the word is not found
 	 */
-	
+
 	@Override
 	public double[] getEmbedding(String word) {
-		return wordMap.get(word);
+		int row = wordIndex.indexOf(word);
+		if (row < 0) {
+			return null;
+		}
+		double[] values = new double[dimension];
+		for (int i = 0, offset = row * dimension; i < dimension; i++) {
+			values[i] = vectors[offset + i];
+		}
+		return values;
 	}
 
 	/**
 	 * Checks if a word exists in the embeddings.
-	 * 
-	 * Time Complexity: O(1) average case using hash table lookup
+	 *
+	 * Time Complexity: O(k) for a word of length k using the perfect hash
 	 *
 	 * @param word the word to check
 	 * @return true if the word exists in the embeddings, false otherwise
 	 */
-	
+
 	@Override
 	public boolean containsWord(String word) {
-		return wordMap.containsKey(word);
+		return wordIndex.indexOf(word) >= 0;
 	}
 
 	/**
-	 * Parses the embeddings file line by line, converting each line into a word and
-	 * its vector representation. Updates the progress bar during processing.
-	 * 
-	 * Time Complexity: O(n) where n is the number of lines in the file
-	 *
-	 * @param br         BufferedReader for reading the file
-	 * @param totalLines total number of lines in the file for progress tracking
-	 * @throws Exception if there's an error parsing the file
+	 * Merges parsed ranges into the slab and index in file order, so word ids are
+	 * the same however the file was split. A word repeated in the file keeps its
+	 * first id and takes the last vector, as a map would. The words are then
+	 * moved into a perfect hash index and the temporary index is dropped.
+	 *
+	 * Time Complexity: O(n * d) where n is the number of parsed words, plus
+	 * O(n log n) expected to build the perfect hash
+	 *
+	 * @param chunks parsed ranges in file order
 	 */
 
-	private void parseEmbeddingsFile(BufferedReader br, int totalLines) throws Exception {
-		int currentLine = 0;
-		String next;
-		while ((next = br.readLine()) != null) {
-			String[] parts = splitLine(next);
-			String word = parts[0];
-			double[] values = parseEmbedding(parts);
-			wordMap.put(word, values);
-			Runner.printProgress(++currentLine, totalLines);
+	private void merge(List<CsvEmbeddingsParser.Chunk> chunks) {
+		int total = 0;
+		for (CsvEmbeddingsParser.Chunk chunk : chunks) {
+			total += chunk.words().size();
+		}
+		int dim = chunks.isEmpty() ? 0 : chunks.get(0).dimension();
+
+		float[] slab = new float[total * dim];
+		WordIndex index = new WordIndex(total);
+		for (CsvEmbeddingsParser.Chunk chunk : chunks) {
+			for (int i = 0; i < chunk.words().size(); i++) {
+				int row = index.add(chunk.words().get(i));
+				System.arraycopy(chunk.values(), i * dim, slab, row * dim, dim);
+			}
+		}
+		if (index.size() < total) {
+			slab = Arrays.copyOf(slab, index.size() * dim);
 		}
+		String[] words = new String[index.size()];
+		for (int id = 0; id < words.length; id++) {
+			words[id] = index.wordAt(id);
+		}
+
+		this.dimension = dim;
+		this.vectors = slab;
+		this.inverseNorms = inverseNorms(slab, words.length, dim);
+		this.wordIndex = PerfectHashIndex.build(words);
 	}
 
 	/**
-	 * Splits a line from the embeddings file into components. Expects each line to
-	 * have exactly 51 comma-separated values (word + 50 vector components).
-	 * 
-	 * Time Complexity: O(1) as it performs a fixed split operation
-	 *
-	 * @param line the line to split
-	 * @return array of strings containing the word and vector components
-	 * @throws Exception if the line format is invalid
+	 * Computes the reciprocal norm of every row of a slab.
+	 *
+	 * Time Complexity: O(n * d)
+	 *
+	 * @param slab row-major vectors
+	 * @param rows number of rows
+	 * @param dim  components per row
+	 * @return reciprocal norm per row, 0 for zero rows
 	 */
-	
-	private String[] splitLine(String line) throws Exception {
-		String[] parts = line.split(",", 51);
-		if (parts.length < 51) {
-			throw new Exception("[ERROR] Invalid line format: " + line);
+
+	static float[] inverseNorms(float[] slab, int rows, int dim) {
+		float[] norms = new float[rows];
+		for (int row = 0, offset = 0; row < rows; row++, offset += dim) {
+			double sum = 0.0;
+			for (int i = 0; i < dim; i++) {
+				sum += (double) slab[offset + i] * slab[offset + i];
+			}
+			norms[row] = sum > 0 ? (float) (1.0 / Math.sqrt(sum)) : 0f;
 		}
-		return parts;
+		return norms;
 	}
 
 	/**
-     * Converts the string array of vector components into a double array.
-     * 
-     * Time Complexity: O(n) where n is the length of the array (fixed at 50)
-     *
-     * @param parts array containing the word and vector components
-     * @return double array of the vector components
-     */
-	
-	private double[] parseEmbedding(String[] parts) {
-		double[] values = new double[50];
-		for (int i = 1; i < parts.length; i++) {
-			values[i - 1] = Double.parseDouble(parts[i]);
-		}
-		return values;
+	 * Finds the k most similar words to a vector with a partitioned fork/join scan
+	 * of the slab.
+	 *
+	 * Time Complexity: O(n * d / p) where p is the parallelism
+	 *
+	 * @param vector query vector
+	 * @param k      number of results
+	 * @return up to k words, most similar first
+	 */
+
+	@Override
+	public List<ScoredWord> topK(double[] vector, int k) {
+		double[] query = TopKQuery.unit(vector);
+		float[] slab = vectors;
+		float[] norms = inverseNorms;
+		int dim = dimension;
+		return TopKQuery.run(this, row -> {
+			double dot = 0.0;
+			for (int i = 0, offset = row * dim; i < dim; i++) {
+				dot += query[i] * slab[offset + i];
+			}
+			return dot * norms[row];
+		}, k);
 	}
 
 	/**
-     * Counts the total number of lines in the embeddings file.
-     * 
-     * Time Complexity: O(n) where n is the number of lines in the file
-     *
-     * @param filePath path to the embeddings file
-     * @return total number of lines in the file
-     * @throws Exception if there's an error reading the file
-     */
-	private int countLines(String filePath) throws Exception {
-		int count = 0;
-		try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(filePath)))) {
-			while (br.readLine() != null) {
-				count++;
-			}
-		}
-		return count;
+	 * Returns the id of a word in file order.
+	 *
+	 * Time Complexity: O(k) for a word of length k using the perfect hash
+	 *
+	 * @param word the word to look up
+	 * @return the id of the word, or -1 if not found
+	 */
+
+	@Override
+	public int indexOf(String word) {
+		return wordIndex.indexOf(word);
+	}
+
+	/**
+	 * Returns the word with a given id.
+	 *
+	 * Time Complexity: O(k) to decode a word of length k
+	 *
+	 * @param index word id
+	 * @return the word
+	 */
+
+	@Override
+	public String wordAt(int index) {
+		return wordIndex.wordAt(index);
+	}
+
+	/**
+	 * Returns the float32 slab. Package-private method for optimization purposes.
+	 *
+	 * @return vectors row-major, getDimension() components per word id
+	 */
+
+	float[] getVectors() {
+		return vectors;
+	}
+
+	/**
+	 * Returns the number of components per vector.
+	 *
+	 * @return vector dimension
+	 */
+
+	int getDimension() {
+		return dimension;
+	}
+
+	/**
+	 * Estimates the heap held by the slab, norms and index.
+	 *
+	 * Time Complexity: O(n)
+	 *
+	 * @return estimated footprint in bytes
+	 */
+
+	private long memoryBytes() {
+		return (long) vectors.length * Float.BYTES + (long) inverseNorms.length * Float.BYTES
+				+ wordIndex.memoryBytes();
+	}
+
+	@Override
+	public EmbeddingsStats getStats() {
+		return stats;
 	}
 
     /**
-     * Returns the total number of words in the embeddings map.
-     * 
-     * Time Complexity: O(1) as it uses internal map counter
+     * Returns the total number of words in the embeddings.
      *
-     * @return number of words in the embeddings map
+     * Time Complexity: O(1) as it uses the index counter
+     *
+     * @return number of words in the embeddings
      */
-	
+
 	@Override
 	public int getSize() {
-		return wordMap.size();
+		return wordIndex.size();
 	}
-}
\ No newline at end of file
+}
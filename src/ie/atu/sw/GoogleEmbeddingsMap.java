@@ -3,8 +3,22 @@ package ie.atu.sw;
 import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
 
 /**
  * Implementation of the WordEmbeddings interface that manages Google's word
@@ -13,22 +27,55 @@ import java.util.concurrent.ConcurrentHashMap;
  * representations.
  * 
  * The class implements loose coupling through dependency injection of the GloVe
- * embeddings and provides thread-safe operations using ConcurrentHashMap.
+ * embeddings. The word map, index and matrix are published together as one
+ * immutable state, so every query sees the same set of targets.
+ * Target words can be added and removed at runtime; rows never move, and
+ * registered TargetListeners patch the structures built over them.
  * 
  * @version 1.0.0
  * @author [Joseph Shortt]
  */
 
-public class GoogleEmbeddingsMap implements WordEmbeddings {
+public class GoogleEmbeddingsMap implements WordEmbeddings, SimilaritySearch {
 	/**
-	 * Thread-safe map storing word embeddings where keys are words and values are
-	 * their vector representations
+	 * Target words and rows as seen by readers. Changes build a new instance
+	 * and publish it with a single write, so a reader always sees a word map,
+	 * index, matrix and liveness flags that belong together.
 	 */
-	private final Map<String, double[]> wordMap = new ConcurrentHashMap<>();
+	private volatile Targets targets = new Targets(Map.of(), new WordIndex(0), new double[0], new boolean[0], 0);
+
+	/**
+	 * Components in order of decreasing variance across the targets, fixed when
+	 * the targets are loaded
+	 */
+	private volatile int[] dimensionOrder = new int[0];
 
 	/** Reference to the GloVe embeddings implementation */
 	private final WordEmbeddings gloveEmbeddings;
 
+	/** Kernel used for similarity scans */
+	private final SimilarityKernel kernel;
+
+	/** Load and footprint metrics */
+	private final EmbeddingsStats stats = new EmbeddingsStats();
+
+	/** Structures derived from the targets, told about every change */
+	private final List<TargetListener> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * One published state of the targets.
+	 *
+	 * @param wordMap   unmodifiable map of each target word to its raw vector
+	 * @param index     target word ids, which are also their rows
+	 * @param matrix    unit-normalized target vectors stored contiguously in
+	 *                  row-major order, dimension components per row
+	 * @param live      whether each row holds a current target; the length is
+	 *                  the row count
+	 * @param dimension number of components per vector
+	 */
+	private record Targets(Map<String, double[]> wordMap, WordIndex index, double[] matrix, boolean[] live, int dimension) {
+	}
+
 	
 	 /**
      * Constructs a new GoogleEmbeddingsMap with a reference to GloVe embeddings.
@@ -38,30 +85,364 @@ public class GoogleEmbeddingsMap implements WordEmbeddings {
      */
 	
 	public GoogleEmbeddingsMap(WordEmbeddings gloveEmbeddings) {
+		this(gloveEmbeddings, SimilarityKernels.preferred());
+	}
+
+	/**
+     * Constructs a new GoogleEmbeddingsMap with a specific similarity kernel.
+     * 
+     * @param gloveEmbeddings the GloVe embeddings implementation to use for vector lookup
+     * @param kernel the kernel used for similarity scans
+     */
+	
+	public GoogleEmbeddingsMap(WordEmbeddings gloveEmbeddings, SimilarityKernel kernel) {
 		this.gloveEmbeddings = gloveEmbeddings;
+		this.kernel = kernel;
 	}
 
 	 
 	  /**
      * Loads words from a file and retrieves their corresponding embeddings from GloVe.
-     * Only words that exist in GloVe embeddings are stored in the map.
+     * Only words that exist in GloVe embeddings are stored in the map. Once all
+     * words are read the normalized target matrix is built.
      * 
      * Time Complexity: O(n) where n is the number of words in the input file
      * 
      * @param filePath path to the file containing Google words
+     * @param listener listener receiving progress in bytes read
      * @throws Exception if there's an error reading the file
      */
 	@Override
-	public void load(String filePath) throws Exception {
+	public void load(String filePath, ProgressListener listener) throws Exception {
+		long start = System.nanoTime();
+		Path path = Path.of(filePath);
+		ProgressTracker progress = new ProgressTracker(listener, "Loading " + path.getFileName(), Files.size(path));
+		Map<String, double[]> loaded = new LinkedHashMap<>();
 		try (var br = new BufferedReader(new InputStreamReader(new FileInputStream(filePath)))) {
 			String word;
 			while ((word = br.readLine()) != null) {
+				progress.advance(word.length() + 1);
 				double[] embedding = gloveEmbeddings.getEmbedding(word);
 				if (embedding != null) {
-					wordMap.put(word, embedding);
+					loaded.putIfAbsent(word, embedding);
 				}
 			}
 		}
+		buildNormalizedMatrix(loaded);
+		progress.finish();
+		stats.recordLoad(System.nanoTime() - start, Files.size(path), getSize(), memoryBytes());
+	}
+
+	/**
+	 * Copies the loaded vectors into one contiguous row-major block, scaling each
+	 * row to unit length so that cosine similarity becomes a plain dot product,
+	 * and publishes them as the targets.
+	 * 
+	 * Time Complexity: O(n * d) where n is the number of words and d the dimension
+	 * 
+	 * @param loaded vector of each word, in load order
+	 */
+	private void buildNormalizedMatrix(Map<String, double[]> loaded) {
+		int dim = loaded.isEmpty() ? 0 : loaded.values().iterator().next().length;
+		double[] matrix = new double[loaded.size() * dim];
+		boolean[] live = new boolean[loaded.size()];
+		WordIndex index = new WordIndex(loaded.size());
+		int row = 0;
+		for (Map.Entry<String, double[]> entry : loaded.entrySet()) {
+			normalizeInto(entry.getValue(), matrix, row * dim);
+			live[row++] = true;
+			index.add(entry.getKey());
+		}
+		this.dimensionOrder = varianceOrder(matrix, loaded.size(), dim);
+		this.targets = new Targets(Collections.unmodifiableMap(loaded), index, matrix, live, dim);
+	}
+
+	/**
+	 * Orders the components of a matrix by decreasing variance across its rows,
+	 * so that a dot product summed in this order gathers most of its magnitude
+	 * in the first few components.
+	 * 
+	 * Time Complexity: O(n * d + d log d)
+	 * 
+	 * @param matrix row-major matrix
+	 * @param rows   number of rows
+	 * @param dim    components per row
+	 * @return component indexes, highest variance first
+	 */
+	private static int[] varianceOrder(double[] matrix, int rows, int dim) {
+		double[] sum = new double[dim];
+		double[] sumOfSquares = new double[dim];
+		for (int row = 0, offset = 0; row < rows; row++, offset += dim) {
+			for (int i = 0; i < dim; i++) {
+				double v = matrix[offset + i];
+				sum[i] += v;
+				sumOfSquares[i] += v * v;
+			}
+		}
+		double[] variance = new double[dim];
+		for (int i = 0; i < dim; i++) {
+			double mean = rows > 0 ? sum[i] / rows : 0.0;
+			variance[i] = rows > 0 ? sumOfSquares[i] / rows - mean * mean : 0.0;
+		}
+		return IntStream.range(0, dim).boxed()
+				.sorted(Comparator.comparingDouble((Integer i) -> variance[i]).reversed())
+				.mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Writes a vector scaled to unit length into a matrix row. A zero vector is
+	 * written as zeros.
+	 * 
+	 * Time Complexity: O(d) where d is the dimension
+	 * 
+	 * @param vector vector to normalize
+	 * @param matrix destination matrix
+	 * @param offset index of the row's first component
+	 */
+	private static void normalizeInto(double[] vector, double[] matrix, int offset) {
+		double norm = 0.0;
+		for (double v : vector) {
+			norm += v * v;
+		}
+		norm = Math.sqrt(norm);
+		for (int i = 0; i < vector.length; i++) {
+			matrix[offset + i] = norm > 0 ? vector[i] / norm : 0.0;
+		}
+	}
+
+	/**
+	 * Adds a target word at runtime. The word's GloVe vector is normalized into
+	 * a row freed by an earlier update, or a new row if none is free, and every
+	 * TargetListener is told so it can patch its own structures.
+	 * 
+	 * Time Complexity: O(m * d) to publish a copy of the matrix, plus the work
+	 * of the listeners
+	 * 
+	 * @param word the word to add
+	 * @return true if the word was added, false if it was already a target or
+	 *         has no GloVe embedding
+	 */
+	public boolean addWord(String word) {
+		return update(List.of(word), List.of()) > 0;
+	}
+
+	/**
+	 * Removes a target word at runtime and tells every TargetListener.
+	 * 
+	 * Time Complexity: O(m * d) to publish a copy of the matrix, plus the work
+	 * of the listeners
+	 * 
+	 * @param word the word to remove
+	 * @return true if the word was removed, false if it was not a target
+	 */
+	public boolean removeWord(String word) {
+		return update(List.of(), List.of(word)) > 0;
+	}
+
+	/**
+	 * Applies a set of target changes as one update. Removals are applied
+	 * first, then additions fill rows freed by earlier updates before new rows
+	 * are appended, and the result is published to readers in one step.
+	 * Listeners are then told about each removed and each added row. A row
+	 * freed by this update is not handed out until a later one, after every
+	 * listener has dropped it, so a listener that has not caught up yet never
+	 * holds a row that now stores a different word. Updates are serialized.
+	 * 
+	 * Time Complexity: O(m * d + k * d) where m is the number of targets and k
+	 * the number of changes, plus the work of the listeners
+	 * 
+	 * @param additions words to add; words already present or without a GloVe
+	 *                  embedding are skipped
+	 * @param removals  words to remove; words not present are skipped
+	 * @return number of words added and removed
+	 */
+	public synchronized int update(Collection<String> additions, Collection<String> removals) {
+		Targets current = targets;
+		WordIndex index = current.index().copy();
+		boolean[] live = current.live().clone();
+
+		List<Integer> removedRows = new ArrayList<>();
+		for (String word : removals) {
+			int row = index.remove(word);
+			if (row >= 0) {
+				live[row] = false;
+				removedRows.add(row);
+			}
+		}
+
+		Map<String, double[]> added = new LinkedHashMap<>();
+		for (String word : additions) {
+			double[] embedding = index.indexOf(word) < 0 ? gloveEmbeddings.getEmbedding(word) : null;
+			if (embedding != null) {
+				added.put(word, embedding);
+			}
+		}
+		if (removedRows.isEmpty() && added.isEmpty()) {
+			return 0;
+		}
+
+		int dim = current.dimension() > 0 || added.isEmpty() ? current.dimension()
+				: added.values().iterator().next().length;
+		boolean[] wasLive = current.live();
+		int free = 0;
+		for (boolean isLive : wasLive) {
+			free += isLive ? 0 : 1;
+		}
+		int rows = live.length + Math.max(0, added.size() - free);
+		double[] matrix = Arrays.copyOf(current.matrix(), rows * dim);
+		live = Arrays.copyOf(live, rows);
+
+		List<Integer> addedRows = new ArrayList<>();
+		int row = 0;
+		for (Map.Entry<String, double[]> entry : added.entrySet()) {
+			while (live[row] || row < wasLive.length && wasLive[row]) {
+				row++;
+			}
+			normalizeInto(entry.getValue(), matrix, row * dim);
+			live[row] = true;
+			if (row < index.size()) {
+				index.assign(entry.getKey(), row);
+			} else {
+				index.add(entry.getKey());
+			}
+			addedRows.add(row);
+		}
+
+		Map<String, double[]> wordMap = new HashMap<>(current.wordMap());
+		for (int removed : removedRows) {
+			wordMap.remove(current.index().wordAt(removed));
+		}
+		wordMap.putAll(added);
+		this.targets = new Targets(Collections.unmodifiableMap(wordMap), index, matrix, live, dim);
+
+		for (TargetListener listener : listeners) {
+			removedRows.forEach(listener::targetRemoved);
+			addedRows.forEach(listener::targetAdded);
+		}
+		stats.updateFootprint(getSize(), memoryBytes());
+		return removedRows.size() + addedRows.size();
+	}
+
+	/**
+	 * Registers a structure derived from the targets to be told about changes.
+	 * 
+	 * @param listener listener to add
+	 */
+	public void addTargetListener(TargetListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Stops telling a structure about changes to the targets.
+	 * 
+	 * @param listener listener to remove
+	 */
+	public void removeTargetListener(TargetListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Returns the current target words in row order.
+	 * 
+	 * Time Complexity: O(m)
+	 * 
+	 * @return target words
+	 */
+	public List<String> getWords() {
+		Targets current = targets;
+		List<String> words = new ArrayList<>();
+		for (int row = 0; row < current.live().length; row++) {
+			if (current.live()[row]) {
+				words.add(current.index().wordAt(row));
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * Finds the target row most similar to a vector by scanning the normalized
+	 * matrix, skipping removed rows. The query norm is the same for every
+	 * target, so the highest dot product is also the highest cosine similarity.
+	 * 
+	 * Time Complexity: O(n * d) where n is the number of words and d the dimension
+	 * 
+	 * @param vector vector to compare
+	 * @return most similar row, or -1 if there are no targets
+	 */
+	@Override
+	public int findMostSimilarRow(double[] vector) {
+		Targets current = targets;
+		double[] matrix = current.matrix();
+		boolean[] live = current.live();
+		int dim = current.dimension();
+
+		int bestRow = -1;
+		double highestSimilarity = Double.NEGATIVE_INFINITY;
+		for (int row = 0, offset = 0; row < live.length; row++, offset += dim) {
+			if (!live[row]) {
+				continue;
+			}
+			double dotProduct = kernel.dot(vector, matrix, offset, dim);
+			if (dotProduct > highestSimilarity) {
+				highestSimilarity = dotProduct;
+				bestRow = row;
+			}
+		}
+		return bestRow;
+	}
+
+	/**
+	 * Finds the most similar target row for a batch of vectors with one
+	 * cache-blocked pass over the normalized matrix, instead of one full scan
+	 * per vector.
+	 * 
+	 * Time Complexity: O(q * n * d) arithmetic, reading the matrix once
+	 * 
+	 * @param vectors vectors to compare
+	 * @param rows    receives the most similar row per vector, or -1 if there
+	 *                are no targets
+	 */
+	@Override
+	public void findMostSimilarRows(double[][] vectors, int[] rows) {
+		Targets current = targets;
+		BlockedArgmax.run(kernel, vectors, current.matrix(), current.live(), current.dimension(), rows);
+	}
+
+	/**
+	 * Computes the cosine similarity of a vector with one target row, up to the
+	 * constant query norm.
+	 * 
+	 * Time Complexity: O(d) where d is the dimension
+	 * 
+	 * @param vector vector to compare
+	 * @param row    target row
+	 * @return dot product with the normalized row
+	 */
+	double similarityToRow(double[] vector, int row) {
+		Targets current = targets;
+		return kernel.dot(vector, current.matrix(), row * current.dimension(), current.dimension());
+	}
+
+	/**
+	 * Finds the k most similar target words to a vector with a partitioned
+	 * fork/join scan of the normalized matrix.
+	 * 
+	 * Time Complexity: O(n * d / p) where p is the parallelism
+	 * 
+	 * @param vector query vector
+	 * @param k      number of results
+	 * @return up to k words, most similar first
+	 */
+	@Override
+	public List<ScoredWord> topK(double[] vector, int k) {
+		double[] query = TopKQuery.unit(vector);
+		Targets current = targets;
+		double[] matrix = current.matrix();
+		boolean[] live = current.live();
+		int dim = current.dimension();
+		return TopKQuery.run(this, live.length,
+				row -> live[row] ? kernel.dot(query, matrix, row * dim, dim) : Double.NEGATIVE_INFINITY, k)
+				.stream().filter(scored -> scored.similarity() > Double.NEGATIVE_INFINITY).toList();
 	}
 
 	 /**
@@ -74,7 +455,7 @@ public class GoogleEmbeddingsMap implements WordEmbeddings {
      */
 	@Override
 	public double[] getEmbedding(String word) {
-		return wordMap.get(word);
+		return targets.wordMap().get(word);
 	}
 
 	/**
@@ -88,18 +469,154 @@ public class GoogleEmbeddingsMap implements WordEmbeddings {
 	
 	@Override
 	public boolean containsWord(String word) {
-		return wordMap.containsKey(word);
+		return targets.wordMap().containsKey(word);
 	}
 
 	 /**
-     * Returns the internal word map. Package-private method for optimization purposes.
+     * Returns the current word map. Package-private method for optimization purposes.
      * 
      * Time Complexity: O(1) constant time operation
      * 
-     * @return the concurrent hash map containing word embeddings
+     * @return unmodifiable map of the current target words to their embeddings
      */
 	Map<String, double[]> getWordMap() {
-		return wordMap;
+		return targets.wordMap();
+	}
+
+	/**
+     * Returns the unit-normalized target vectors as one row-major block.
+     * Package-private method for optimization purposes.
+     * 
+     * @return normalized vectors, dimension components per row
+     */
+	double[] getNormalizedVectors() {
+		return targets.matrix();
+	}
+
+	/**
+     * Returns the kernel used for similarity scans, so that other searches
+     * over the normalized matrix can score rows exactly as the scan does.
+     * 
+     * @return similarity kernel
+     */
+	SimilarityKernel getKernel() {
+		return kernel;
+	}
+
+	/**
+     * Returns the components in order of decreasing variance across the targets
+     * as loaded. Rows added later do not change the order.
+     * 
+     * @return component indexes, highest variance first
+     */
+	int[] getDimensionOrder() {
+		return dimensionOrder;
+	}
+
+	/**
+     * Returns the number of components per target vector.
+     * 
+     * @return vector dimension
+     */
+	int getDimension() {
+		return targets.dimension();
+	}
+
+	/**
+     * Returns the number of rows in the normalized matrix, including rows of
+     * removed words that have not been reused.
+     * 
+     * @return row count
+     */
+	int getRowCount() {
+		return targets.live().length;
+	}
+
+	/**
+     * Checks whether a row holds a current target.
+     * 
+     * @param row row in the normalized matrix
+     * @return true if the row's word has not been removed
+     */
+	boolean isLive(int row) {
+		boolean[] live = targets.live();
+		return row < live.length && live[row];
+	}
+
+	/**
+     * Feeds the current row layout into a digest: the row count, then each
+     * row's liveness and word, and optionally the normalized vectors. Files
+     * saved over the targets store the digest, so one written for other rows,
+     * such as before a runtime edit, is never reused.
+     * 
+     * Time Complexity: O(m), or O(m * d) with the vectors
+     * 
+     * @param digest  digest to update
+     * @param vectors whether to include the normalized vectors
+     */
+	void digestRows(MessageDigest digest, boolean vectors) {
+		Targets current = targets;
+		int rows = current.live().length;
+		digest.update(ByteBuffer.allocate(2 * Integer.BYTES).putInt(rows).putInt(current.dimension()).flip());
+		ByteBuffer row = ByteBuffer.allocate(current.dimension() * Double.BYTES);
+		for (int r = 0; r < rows; r++) {
+			byte[] word = current.index().wordAt(r).getBytes(StandardCharsets.UTF_8);
+			digest.update(ByteBuffer.allocate(1 + Integer.BYTES).put((byte) (current.live()[r] ? 1 : 0))
+					.putInt(word.length).flip());
+			digest.update(word);
+			if (vectors) {
+				row.clear();
+				row.asDoubleBuffer().put(current.matrix(), r * current.dimension(), current.dimension());
+				digest.update(row);
+			}
+		}
+	}
+
+	/**
+     * Returns the row of a target word in the normalized matrix.
+     * 
+     * Time Complexity: O(1) average case using the open-addressing index
+     * 
+     * @param word the word to look up
+     * @return the row of the word, or -1 if not found
+     */
+	
+	@Override
+	public int indexOf(String word) {
+		return targets.index().indexOf(word);
+	}
+
+	/**
+     * Returns the target word stored in a given row.
+     * 
+     * @param index row in the normalized matrix
+     * @return the word
+     */
+	
+	@Override
+	public String wordAt(int index) {
+		return targets.index().wordAt(index);
+	}
+
+	/**
+	 * Estimates the heap held by the raw vectors, the map, the normalized matrix
+	 * and the index.
+	 *
+	 * Time Complexity: O(n)
+	 *
+	 * @return estimated footprint in bytes
+	 */
+
+	private long memoryBytes() {
+		Targets current = targets;
+		long rawVectors = (long) current.wordMap().size() * (16 + (long) current.dimension() * Double.BYTES + 32);
+		return rawVectors + (long) current.matrix().length * Double.BYTES + current.index().memoryBytes()
+				+ current.live().length;
+	}
+
+	@Override
+	public EmbeddingsStats getStats() {
+		return stats;
 	}
 
 	/**
@@ -112,6 +629,6 @@ public class GoogleEmbeddingsMap implements WordEmbeddings {
 	
 	@Override
 	public int getSize() {
-		return wordMap.size();
+		return targets.wordMap().size();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,674 @@
+package ie.atu.sw;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Approximate SimilaritySearch using a Hierarchical Navigable Small World
+ * (HNSW) graph over the Google target vectors. Queries descend greedily
+ * through sparse upper layers and finish with a bounded best-first search on
+ * the dense bottom layer, visiting a small fraction of the targets.
+ *
+ * Recall and speed are tuned with m (links per node), efConstruction (search
+ * width while building) and efSearch (search width while querying). The graph
+ * can be saved and loaded, and measureRecall compares it with the exact scan.
+ * A saved graph records the dimension and a hash of the target rows' words and
+ * vectors, and is only loaded over targets that match it.
+ *
+ * Registered as a TargetListener, the graph inserts added targets and unlinks
+ * removed ones, reconnecting their former neighbours, instead of being
+ * rebuilt. Changes are made on a working copy, and only the nodes a change
+ * touched are copied when it is published, so queries may run concurrently
+ * with each other and with updates. Each
+ * published graph keeps the normalized matrix it was built over, and queries
+ * score nodes against that matrix rather than the live targets.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public class HnswSimilaritySearch implements SimilaritySearch, TargetListener {
+	/** Index file magic number ("HNSW") */
+	private static final int MAGIC = 0x484E5357;
+	/** Index file format version */
+	private static final int VERSION = 2;
+	/** Length of the SHA-256 hash of the target rows in bytes */
+	private static final int HASH_LENGTH = 32;
+	/** Default links per node on upper layers */
+	public static final int DEFAULT_M = 16;
+	/** Default search width while building */
+	public static final int DEFAULT_EF_CONSTRUCTION = 200;
+	/** Default search width while querying */
+	public static final int DEFAULT_EF_SEARCH = 64;
+
+	/** Target vectors the graph is built over */
+	private final GoogleEmbeddingsMap targets;
+	/** Kernel of the targets, used to score nodes */
+	private final SimilarityKernel kernel;
+	/** Number of components per vector */
+	private final int dimension;
+	/** Links per node on upper layers; the bottom layer allows twice as many */
+	private final int m;
+	/** Search width while building */
+	private final int efConstruction;
+	/** Search width while querying */
+	private volatile int efSearch = DEFAULT_EF_SEARCH;
+
+	/** Source of node levels */
+	private final Random random = new Random(42);
+
+	/**
+	 * Working copy of the graph, changed only while building or under the
+	 * update lock. links[node][level] holds the neighbour count followed by
+	 * neighbour rows, and is null for rows not in the graph.
+	 */
+	private int[][][] links;
+	/** Normalized target matrix the working copy is built over */
+	private double[] matrix;
+	/** Node every search starts from in the working copy */
+	private int entryPoint = -1;
+	/** Top level of the entry point in the working copy */
+	private int maxLevel = -1;
+	/** Nodes of the working copy changed since the graph was last published */
+	private final BitSet changed = new BitSet();
+	/** Graph as seen by queries */
+	private volatile Graph graph = new Graph(new int[0][][], new double[0], -1, -1);
+
+	/**
+	 * One published state of the graph.
+	 *
+	 * @param links      neighbour lists per node and level
+	 * @param matrix     normalized target matrix the links were built over
+	 * @param entryPoint node every search starts from
+	 * @param maxLevel   top level of the entry point
+	 */
+	private record Graph(int[][][] links, double[] matrix, int entryPoint, int maxLevel) {
+	}
+
+	/**
+	 * Constructs an empty graph over the given targets.
+	 *
+	 * @param targets        loaded Google embeddings
+	 * @param m              links per node on upper layers
+	 * @param efConstruction search width while building
+	 */
+	private HnswSimilaritySearch(GoogleEmbeddingsMap targets, int m, int efConstruction) {
+		this.targets = targets;
+		this.kernel = targets.getKernel();
+		this.dimension = targets.getDimension();
+		this.m = m;
+		this.efConstruction = efConstruction;
+		this.matrix = targets.getNormalizedVectors();
+		this.links = new int[targets.getRowCount()][][];
+	}
+
+	/**
+	 * Builds a graph by inserting every live target row in order.
+	 *
+	 * Time Complexity: O(n * log n * efConstruction * d) expected, where n is the
+	 * number of targets and d the dimension
+	 *
+	 * @param targets        loaded Google embeddings
+	 * @param m              links per node on upper layers
+	 * @param efConstruction search width while building
+	 * @param listener       listener receiving progress in rows inserted
+	 * @return the built graph
+	 */
+	public static HnswSimilaritySearch build(GoogleEmbeddingsMap targets, int m, int efConstruction,
+			ProgressListener listener) {
+		HnswSimilaritySearch index = new HnswSimilaritySearch(targets, m, efConstruction);
+		ProgressTracker progress = new ProgressTracker(listener, "Building HNSW index", targets.getRowCount());
+		for (int row = 0; row < targets.getRowCount(); row++) {
+			if (targets.isLive(row)) {
+				index.insert(row, index.randomLevel());
+			}
+			progress.advance(1);
+		}
+		progress.finish();
+		index.publish();
+		return index;
+	}
+
+	/**
+	 * Loads a graph saved by save. The graph must have been built over the same
+	 * target rows: the file's node count, dimension and hash of the rows' words
+	 * and vectors are checked against the loaded targets, and every link is
+	 * checked to point at a node present on its layer.
+	 *
+	 * Time Complexity: O(n * m + n * d)
+	 *
+	 * @param filePath path of the index file
+	 * @param targets  loaded Google embeddings
+	 * @return the loaded graph
+	 * @throws Exception if the file cannot be read, is damaged or does not match
+	 *                   the targets
+	 */
+	public static HnswSimilaritySearch load(String filePath, GoogleEmbeddingsMap targets) throws Exception {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filePath)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new Exception("[ERROR] Not an HNSW index file: " + filePath);
+			}
+			int count = in.readInt();
+			if (count != targets.getRowCount()) {
+				throw new Exception("[ERROR] HNSW index has " + count + " nodes but " + targets.getRowCount()
+						+ " target rows are loaded");
+			}
+			int dimension = in.readInt();
+			if (dimension != targets.getDimension()) {
+				throw new Exception("[ERROR] HNSW index has dimension " + dimension + " but the targets have "
+						+ targets.getDimension());
+			}
+			byte[] hash = new byte[HASH_LENGTH];
+			in.readFully(hash);
+			if (!Arrays.equals(hash, targetsHash(targets))) {
+				throw new Exception("[ERROR] HNSW index was built over different target words or vectors");
+			}
+			int m = in.readInt();
+			int efConstruction = in.readInt();
+			if (m < 2 || efConstruction < 1) {
+				throw new Exception("[ERROR] HNSW index is damaged: m " + m + ", efConstruction " + efConstruction);
+			}
+			HnswSimilaritySearch index = new HnswSimilaritySearch(targets, m, efConstruction);
+			index.efSearch = in.readInt();
+			index.entryPoint = in.readInt();
+			index.maxLevel = in.readInt();
+			for (int node = 0; node < count; node++) {
+				int levels = in.readInt();
+				if (levels < 0 || levels > index.maxLevel + 1) {
+					throw new Exception("[ERROR] HNSW index is damaged: node " + node + " has " + levels + " levels");
+				}
+				if (levels == 0) {
+					continue;
+				}
+				index.links[node] = new int[levels][];
+				for (int level = 0; level < levels; level++) {
+					int[] list = new int[index.maxLinks(level) + 1];
+					list[0] = in.readInt();
+					if (list[0] < 0 || list[0] >= list.length) {
+						throw new Exception("[ERROR] HNSW index is damaged: node " + node + " has " + list[0]
+								+ " links on level " + level);
+					}
+					for (int i = 1; i <= list[0]; i++) {
+						list[i] = in.readInt();
+					}
+					index.links[node][level] = list;
+				}
+				index.changed.set(node);
+			}
+			index.checkLinks();
+			index.publish();
+			return index;
+		} catch (EOFException e) {
+			throw new Exception("[ERROR] HNSW index file is truncated: " + filePath);
+		}
+	}
+
+	/**
+	 * Checks that a loaded graph only links to nodes present on the linked
+	 * layer and that the entry point spans the top level, so searches never
+	 * step outside the graph. Nodes were already checked to lie no higher than
+	 * the top level.
+	 *
+	 * Time Complexity: O(n * m)
+	 *
+	 * @throws Exception naming the first bad link
+	 */
+	private void checkLinks() throws Exception {
+		boolean entryValid = entryPoint < 0 ? maxLevel == -1
+				: entryPoint < links.length && links[entryPoint] != null && links[entryPoint].length == maxLevel + 1;
+		if (!entryValid) {
+			throw new Exception("[ERROR] HNSW index is damaged: entry point " + entryPoint + " at level " + maxLevel);
+		}
+		for (int node = 0; node < links.length; node++) {
+			if (links[node] == null) {
+				continue;
+			}
+			for (int level = 0; level < links[node].length; level++) {
+				int[] list = links[node][level];
+				for (int i = 1; i <= list[0]; i++) {
+					int neighbour = list[i];
+					if (neighbour < 0 || neighbour >= links.length || links[neighbour] == null
+							|| links[neighbour].length <= level) {
+						throw new Exception("[ERROR] HNSW index is damaged: node " + node + " links to " + neighbour
+								+ " on level " + level);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Hashes the target rows' words, liveness and normalized vectors, so a saved
+	 * graph is only loaded over the rows it was built from.
+	 *
+	 * Time Complexity: O(n * d)
+	 *
+	 * @param targets loaded Google embeddings
+	 * @return 32 byte digest
+	 * @throws Exception if SHA-256 is unavailable
+	 */
+	private static byte[] targetsHash(GoogleEmbeddingsMap targets) throws Exception {
+		MessageDigest digest = MessageDigest.getInstance("SHA-256");
+		targets.digestRows(digest, true);
+		return digest.digest();
+	}
+
+	/**
+	 * Saves the graph so it can be loaded without rebuilding, together with the
+	 * dimension and a hash of the target rows it was built over.
+	 *
+	 * Time Complexity: O(n * m + n * d)
+	 *
+	 * @param filePath destination path
+	 * @throws Exception if writing fails
+	 */
+	public synchronized void save(String filePath) throws Exception {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(links.length);
+			out.writeInt(dimension);
+			out.write(targetsHash(targets));
+			out.writeInt(m);
+			out.writeInt(efConstruction);
+			out.writeInt(efSearch);
+			out.writeInt(entryPoint);
+			out.writeInt(maxLevel);
+			for (int[][] node : links) {
+				if (node == null) {
+					out.writeInt(0);
+					continue;
+				}
+				out.writeInt(node.length);
+				for (int[] list : node) {
+					for (int i = 0; i <= list[0]; i++) {
+						out.writeInt(list[i]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds an approximately most similar target row.
+	 *
+	 * Time Complexity: O(log n * efSearch * d) expected
+	 *
+	 * @param vector vector to compare
+	 * @return row of the most similar target found, or -1 if there are no targets
+	 */
+	@Override
+	public int findMostSimilarRow(double[] vector) {
+		Graph published = graph;
+		if (published.entryPoint() < 0) {
+			return -1;
+		}
+		int current = published.entryPoint();
+		for (int level = published.maxLevel(); level > 0; level--) {
+			current = greedyClosest(published.links(), published.matrix(), vector, current, level);
+		}
+		RowHeap found = searchLayer(published.links(), published.matrix(), vector, current, Math.max(efSearch, 1), 0);
+		return found.bestRow();
+	}
+
+	/**
+	 * Inserts a row added to the targets and publishes the updated graph.
+	 *
+	 * Time Complexity: O(log n * efConstruction * d) expected for the insert,
+	 * plus O(n) to publish
+	 *
+	 * @param row row of the new target
+	 */
+	@Override
+	public synchronized void targetAdded(int row) {
+		matrix = targets.getNormalizedVectors();
+		insert(row, randomLevel());
+		publish();
+	}
+
+	/**
+	 * Unlinks a row removed from the targets and publishes the updated graph.
+	 *
+	 * Time Complexity: O(n * m) to find the links into the row, plus
+	 * O(m * m * d) to reconnect its neighbours
+	 *
+	 * @param row row of the removed target
+	 */
+	@Override
+	public synchronized void targetRemoved(int row) {
+		matrix = targets.getNormalizedVectors();
+		unlink(row);
+		publish();
+	}
+
+	/**
+	 * Sets the search width used by queries. Larger values raise recall and cost.
+	 *
+	 * @param efSearch candidates kept during the bottom layer search
+	 */
+	public void setEfSearch(int efSearch) {
+		this.efSearch = efSearch;
+	}
+
+	/**
+	 * Returns the links per node on upper layers the graph was built with.
+	 *
+	 * @return m
+	 */
+	public int getM() {
+		return m;
+	}
+
+	/**
+	 * Returns the search width the graph was built with.
+	 *
+	 * @return build-time search width
+	 */
+	public int getEfConstruction() {
+		return efConstruction;
+	}
+
+	/**
+	 * Measures recall@1 against the exact scan: the fraction of queries for which
+	 * the graph returns the same row.
+	 *
+	 * Time Complexity: O(q * n * d) for the exact answers
+	 *
+	 * @param queries query vectors
+	 * @return recall between 0 and 1
+	 */
+	public double measureRecall(double[][] queries) {
+		int hits = 0;
+		for (double[] query : queries) {
+			if (findMostSimilarRow(query) == targets.findMostSimilarRow(query)) {
+				hits++;
+			}
+		}
+		return queries.length == 0 ? 1.0 : (double) hits / queries.length;
+	}
+
+	/**
+	 * Inserts a target row into the graph at the given top level.
+	 *
+	 * @param row   row to insert
+	 * @param level top level of the new node
+	 */
+	private void insert(int row, int level) {
+		if (row >= links.length) {
+			links = Arrays.copyOf(links, row + 1);
+		}
+		links[row] = new int[level + 1][];
+		changed.set(row);
+		for (int l = 0; l <= level; l++) {
+			links[row][l] = new int[maxLinks(l) + 1];
+		}
+		if (entryPoint < 0) {
+			entryPoint = row;
+			maxLevel = level;
+			return;
+		}
+
+		double[] vector = rowVector(row);
+		int current = entryPoint;
+		for (int l = maxLevel; l > level; l--) {
+			current = greedyClosest(links, matrix, vector, current, l);
+		}
+		for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+			RowHeap candidates = searchLayer(links, matrix, vector, current, efConstruction, l);
+			int[] rows = candidates.rowsBestFirst();
+			int[] list = links[row][l];
+			for (int i = 0; i < rows.length && list[0] < m; i++) {
+				list[++list[0]] = rows[i];
+				connect(rows[i], row, l);
+			}
+			current = rows[0];
+		}
+		if (level > maxLevel) {
+			entryPoint = row;
+			maxLevel = level;
+		}
+	}
+
+	/**
+	 * Removes a node from the graph. Every list linking to the node drops the
+	 * link and is offered the node's own neighbours on that layer instead, so
+	 * the neighbourhood stays connected. A new entry point is chosen if the
+	 * node was the entry point.
+	 *
+	 * @param row node to remove
+	 */
+	private void unlink(int row) {
+		int[][] own = row < links.length ? links[row] : null;
+		if (own == null) {
+			return;
+		}
+		links[row] = null;
+		changed.set(row);
+		for (int node = 0; node < links.length; node++) {
+			if (links[node] == null) {
+				continue;
+			}
+			for (int level = 0; level < Math.min(links[node].length, own.length); level++) {
+				int[] list = links[node][level];
+				int position = indexOf(list, row);
+				if (position < 0) {
+					continue;
+				}
+				list[position] = list[list[0]];
+				list[0]--;
+				changed.set(node);
+				for (int i = 1; i <= own[level][0]; i++) {
+					int candidate = own[level][i];
+					if (candidate != node && indexOf(list, candidate) < 0) {
+						connect(node, candidate, level);
+					}
+				}
+			}
+		}
+		if (row == entryPoint) {
+			entryPoint = -1;
+			maxLevel = -1;
+			for (int node = 0; node < links.length; node++) {
+				if (links[node] != null && links[node].length - 1 > maxLevel) {
+					entryPoint = node;
+					maxLevel = links[node].length - 1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds a neighbour in a list.
+	 *
+	 * @param list      neighbour count followed by neighbour rows
+	 * @param neighbour row to look for
+	 * @return position of the neighbour in the list, or -1 if absent
+	 */
+	private static int indexOf(int[] list, int neighbour) {
+		for (int i = 1; i <= list[0]; i++) {
+			if (list[i] == neighbour) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Draws the top level of a new node from an exponentially decaying
+	 * distribution, so each layer holds about 1 / m of the one below.
+	 *
+	 * @return level of the new node
+	 */
+	private int randomLevel() {
+		return (int) (-Math.log(1.0 - random.nextDouble()) * (1.0 / Math.log(m)));
+	}
+
+	/**
+	 * Publishes the working graph to queries. Nodes unchanged since the last
+	 * publish share their lists with the published graph; only changed nodes
+	 * are copied.
+	 *
+	 * Time Complexity: O(n + c * m) where c is the number of changed nodes
+	 */
+	private void publish() {
+		int[][][] copy = Arrays.copyOf(graph.links(), links.length);
+		for (int node = changed.nextSetBit(0); node >= 0; node = changed.nextSetBit(node + 1)) {
+			if (links[node] == null) {
+				copy[node] = null;
+				continue;
+			}
+			copy[node] = new int[links[node].length][];
+			for (int level = 0; level < links[node].length; level++) {
+				copy[node][level] = links[node][level].clone();
+			}
+		}
+		changed.clear();
+		graph = new Graph(copy, matrix, entryPoint, maxLevel);
+	}
+
+	/**
+	 * Adds a link from a node to a new neighbour, dropping its least similar
+	 * neighbour when the list is full.
+	 *
+	 * @param node      node gaining a link
+	 * @param neighbour new neighbour
+	 * @param level     layer of the link
+	 */
+	private void connect(int node, int neighbour, int level) {
+		int[] list = links[node][level];
+		changed.set(node);
+		if (list[0] < list.length - 1) {
+			list[++list[0]] = neighbour;
+			return;
+		}
+		double[] vector = rowVector(node);
+		int weakest = -1;
+		double weakestSimilarity = similarity(matrix, vector, neighbour);
+		for (int i = 1; i <= list[0]; i++) {
+			double similarity = similarity(matrix, vector, list[i]);
+			if (similarity < weakestSimilarity) {
+				weakestSimilarity = similarity;
+				weakest = i;
+			}
+		}
+		if (weakest > 0) {
+			list[weakest] = neighbour;
+		}
+	}
+
+	/**
+	 * Walks a layer greedily towards the query until no neighbour is closer.
+	 *
+	 * @param links  neighbour lists to walk
+	 * @param matrix normalized target matrix the links belong to
+	 * @param vector query vector
+	 * @param start  starting node
+	 * @param level  layer to walk
+	 * @return closest node found
+	 */
+	private int greedyClosest(int[][][] links, double[] matrix, double[] vector, int start, int level) {
+		int current = start;
+		double best = similarity(matrix, vector, current);
+		boolean improved = true;
+		while (improved) {
+			improved = false;
+			int[] list = links[current][level];
+			for (int i = 1; i <= list[0]; i++) {
+				double similarity = similarity(matrix, vector, list[i]);
+				if (similarity > best) {
+					best = similarity;
+					current = list[i];
+					improved = true;
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Best-first search of one layer keeping the ef most similar nodes seen.
+	 *
+	 * @param links  neighbour lists to search
+	 * @param matrix normalized target matrix the links belong to
+	 * @param vector query vector
+	 * @param start  starting node
+	 * @param ef     number of results to keep
+	 * @param level  layer to search
+	 * @return heap of the best nodes found
+	 */
+	private RowHeap searchLayer(int[][][] links, double[] matrix, double[] vector, int start, int ef, int level) {
+		BitSet visited = new BitSet(links.length);
+		RowHeap candidates = new RowHeap(true);
+		RowHeap results = new RowHeap(false);
+		double startSimilarity = similarity(matrix, vector, start);
+		visited.set(start);
+		candidates.push(start, startSimilarity);
+		results.push(start, startSimilarity);
+
+		while (candidates.size() > 0) {
+			double similarity = candidates.topScore();
+			int node = candidates.pop();
+			if (results.size() >= ef && similarity < results.topScore()) {
+				break;
+			}
+			int[] list = links[node][level];
+			for (int i = 1; i <= list[0]; i++) {
+				int neighbour = list[i];
+				if (visited.get(neighbour)) {
+					continue;
+				}
+				visited.set(neighbour);
+				double neighbourSimilarity = similarity(matrix, vector, neighbour);
+				if (results.size() < ef || neighbourSimilarity > results.topScore()) {
+					candidates.push(neighbour, neighbourSimilarity);
+					results.push(neighbour, neighbourSimilarity);
+					if (results.size() > ef) {
+						results.pop();
+					}
+				}
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Scores a node against a query, up to the constant query norm.
+	 *
+	 * @param matrix normalized target matrix
+	 * @param vector query vector
+	 * @param row    node to score
+	 * @return dot product with the node's normalized row
+	 */
+	private double similarity(double[] matrix, double[] vector, int row) {
+		return kernel.dot(vector, matrix, row * dimension, dimension);
+	}
+
+	/**
+	 * Returns the link capacity of a layer.
+	 *
+	 * @param level layer
+	 * @return maximum neighbours per node
+	 */
+	private int maxLinks(int level) {
+		return level == 0 ? m * 2 : m;
+	}
+
+	/**
+	 * Copies a normalized target row.
+	 *
+	 * @param row target row
+	 * @return the row's components
+	 */
+	private double[] rowVector(int row) {
+		return Arrays.copyOfRange(matrix, row * dimension, (row + 1) * dimension);
+	}
+}
@@ -0,0 +1,113 @@
+package ie.atu.sw;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with HDR-style log-linear buckets: every power
+ * of two is split into 16 linear sub-buckets, so any recorded value is kept to
+ * within about 6% using a fixed 960 counters, from nanoseconds up to hours.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public class LatencyHistogram {
+	/** Bits of linear resolution within each power of two */
+	private static final int SUB_BITS = 4;
+	/** Sub-buckets per power of two */
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	/** Total number of buckets, covering every positive long */
+	private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+	/** Count per bucket */
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	/** Number of recorded values */
+	private final AtomicLong total = new AtomicLong();
+	/** Largest recorded value */
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records one value.
+	 * Time Complexity: O(1)
+	 *
+	 * @param nanos value to record, in nanoseconds
+	 */
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0);
+		counts.incrementAndGet(bucket(value));
+		total.incrementAndGet();
+		max.accumulateAndGet(value, Math::max);
+	}
+
+	/**
+	 * Returns the value at a percentile, to bucket precision.
+	 * Time Complexity: O(b) where b is the number of buckets
+	 *
+	 * @param percentile percentile between 0 and 100
+	 * @return value in nanoseconds, or 0 if nothing was recorded
+	 */
+	public long percentile(double percentile) {
+		long count = total.get();
+		if (count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(count * percentile / 100.0);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank && seen > 0) {
+				return Math.min(lowestValue(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Returns the number of recorded values.
+	 *
+	 * @return count
+	 */
+	public long getCount() {
+		return total.get();
+	}
+
+	/**
+	 * Returns the largest recorded value.
+	 *
+	 * @return maximum in nanoseconds
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Maps a value to its bucket.
+	 *
+	 * @param value non-negative value
+	 * @return bucket index
+	 */
+	private static int bucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * Returns the smallest value that maps to a bucket.
+	 *
+	 * @param bucket bucket index
+	 * @return lowest value of the bucket
+	 */
+	private static long lowestValue(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+		long sub = bucket % SUB_BUCKETS;
+		return (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+	}
+}
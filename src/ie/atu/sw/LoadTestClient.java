@@ -0,0 +1,103 @@
+package ie.atu.sw;
+
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop load generator for SimplificationServer. A number of virtual
+ * threads each send requests back to back, cycling through chunks of an input
+ * file, and the latency of every successful request is recorded in a
+ * LatencyHistogram. Rejected (503) and failed requests are counted apart so
+ * admission control shows up in the report instead of in the percentiles.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public class LoadTestClient {
+	/** Endpoint to send requests to */
+	private final URI uri;
+	/** Request bodies, sent in turn */
+	private final List<String> bodies;
+
+	/**
+	 * Constructs a client sending chunks of a file to an endpoint.
+	 *
+	 * @param uri             simplify endpoint, such as http://localhost:8080/simplify
+	 * @param inputPath       file whose lines make up the request bodies
+	 * @param linesPerRequest lines of the file per request body
+	 * @throws Exception if the file cannot be read
+	 */
+	public LoadTestClient(URI uri, String inputPath, int linesPerRequest) throws Exception {
+		this.uri = uri;
+		List<String> lines = Files.readAllLines(Path.of(inputPath));
+		this.bodies = new ArrayList<>();
+		int step = Math.max(1, linesPerRequest);
+		for (int i = 0; i < lines.size(); i += step) {
+			bodies.add(String.join("\n", lines.subList(i, Math.min(lines.size(), i + step))) + "\n");
+		}
+		if (bodies.isEmpty()) {
+			throw new Exception("[ERROR] No lines to send in " + inputPath);
+		}
+	}
+
+	/**
+	 * Sends requests from concurrent clients and prints a latency report.
+	 * Time Complexity: O(r) requests
+	 *
+	 * @param concurrency number of clients sending at once
+	 * @param requests    total number of requests
+	 * @param out         stream to print the report to
+	 * @throws Exception if the run is interrupted
+	 */
+	public void run(int concurrency, int requests, PrintStream out) throws Exception {
+		LatencyHistogram latency = new LatencyHistogram();
+		LongAdder rejected = new LongAdder();
+		LongAdder failed = new LongAdder();
+		AtomicInteger next = new AtomicInteger();
+
+		long start = System.nanoTime();
+		try (HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+				var clients = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int c = 0; c < Math.max(1, concurrency); c++) {
+				clients.submit(() -> {
+					int i;
+					while ((i = next.getAndIncrement()) < requests) {
+						HttpRequest request = HttpRequest.newBuilder(uri)
+								.POST(HttpRequest.BodyPublishers.ofString(bodies.get(i % bodies.size()))).build();
+						long sent = System.nanoTime();
+						try {
+							int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+							if (status == 200) {
+								latency.record(System.nanoTime() - sent);
+							} else if (status == 503) {
+								rejected.increment();
+							} else {
+								failed.increment();
+							}
+						} catch (Exception e) {
+							failed.increment();
+						}
+					}
+					return null;
+				});
+			}
+		}
+		long wall = System.nanoTime() - start;
+
+		out.printf("%d requests in %.2f s: %.0f req/s, %d ok, %d rejected, %d failed%n", requests, wall / 1e9,
+				requests * 1e9 / wall, latency.getCount(), rejected.sum(), failed.sum());
+		out.printf("latency p50 %.2f ms, p99 %.2f ms, max %.2f ms%n", latency.percentile(50) / 1e6,
+				latency.percentile(99) / 1e6, latency.getMax() / 1e6);
+	}
+}
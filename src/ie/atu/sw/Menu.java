@@ -28,11 +28,20 @@ public class Menu {
 		System.out.println("(3)Search for word in google-1000");
 		System.out.println("(4) Output length of google-1000");
 		System.out.println("(5) Output length of glove embeddings");
+		System.out.println("(6) Toggle vocabulary-first mode");
+		System.out.println("(7) Precompute replacement table");
+		System.out.println("(8) Save GloVe embeddings as binary snapshot");
+		System.out.println("(9) Choose similarity search (exact, pruned, quantized, hnsw)");
+		System.out.println("(10) Find nearest words in embeddings");
+		System.out.println("(11) Add or remove google-1000 words");
+		System.out.println("(12) Toggle watching google-1000 file for changes");
+		System.out.println("(13) Choose execution strategy (forkjoin, fixed, virtual)");
+		System.out.println("(14) Reload embeddings in the background");
 		System.out.println("(-1) Quit");
 		
 		//Output a menu of options and solicit text from the user
 		System.out.print(ConsoleColour.BLACK_BOLD_BRIGHT);
-		System.out.print("Select Option [1-4]>");
+		System.out.print("Select Option [1-14, -1 to quit]>");
 		System.out.println();
 	}
 
@@ -0,0 +1,37 @@
+package ie.atu.sw;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Publishes metrics beans on the platform MBean server under the ie.atu.sw
+ * domain, where JConsole, VisualVM or a JMX exporter can read them.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public final class Metrics {
+
+	private Metrics() {
+	}
+
+	/**
+	 * Registers a bean, replacing any bean already registered under the name.
+	 *
+	 * @param type bean type, such as Embeddings or Processor
+	 * @param name instance name, such as GloVe
+	 * @param bean the standard MBean to register
+	 * @throws Exception if registration fails
+	 */
+	public static void register(String type, String name, Object bean) throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName objectName = new ObjectName("ie.atu.sw:type=" + type + ",name=" + name);
+		if (server.isRegistered(objectName)) {
+			server.unregisterMBean(objectName);
+		}
+		server.registerMBean(bean, objectName);
+	}
+}
@@ -0,0 +1,184 @@
+package ie.atu.sw;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Groups the words of concurrent simplification requests into one similarity
+ * pass. Callers queue the distinct words of their text; a dispatcher thread
+ * collects queued requests until maxBatchSize have arrived or maxWait has
+ * passed since the first, and hands the batch to a worker executor, which
+ * resolves the union of their words once in parallel and gives every caller
+ * the shared replacements. The dispatcher only forms batches, so the next
+ * batch fills while the previous one is resolved.
+ *
+ * The queue is bounded: once maxQueued requests are waiting, new requests are
+ * rejected straight away so an overloaded server sheds load instead of
+ * building an unbounded backlog.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+final class MicroBatcher implements AutoCloseable {
+	/** Processor resolving words */
+	private final ConcurrentTextProcessor processor;
+	/** Executor running each batch's similarity pass */
+	private final Executor workers;
+	/** Most requests resolved in one pass */
+	private final int maxBatchSize;
+	/** Longest time a request waits for others to join its batch */
+	private final long maxWaitNanos;
+	/** Requests waiting for a pass */
+	private final BlockingQueue<Pending> queue;
+	/** Thread forming and resolving batches */
+	private final Thread dispatcher;
+	/** Number of passes run */
+	private final AtomicLong batches = new AtomicLong();
+	/** Number of requests resolved */
+	private final AtomicLong requests = new AtomicLong();
+
+	/**
+	 * A queued request: its distinct words and the future receiving their
+	 * replacements.
+	 */
+	private record Pending(Set<String> words, CompletableFuture<Map<String, String>> result) {
+	}
+
+	/**
+	 * Constructs a batcher and starts its dispatcher thread.
+	 *
+	 * @param processor    processor resolving words
+	 * @param workers      executor running each batch's similarity pass
+	 * @param maxBatchSize most requests resolved in one pass
+	 * @param maxWaitNanos longest time a request waits for others
+	 * @param maxQueued    most requests waiting before new ones are rejected
+	 */
+	MicroBatcher(ConcurrentTextProcessor processor, Executor workers, int maxBatchSize, long maxWaitNanos,
+			int maxQueued) {
+		this.processor = processor;
+		this.workers = workers;
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+		this.maxWaitNanos = Math.max(0, maxWaitNanos);
+		this.queue = new ArrayBlockingQueue<>(Math.max(1, maxQueued));
+		this.dispatcher = Thread.ofPlatform().name("micro-batcher").daemon().start(this::dispatch);
+	}
+
+	/**
+	 * Queues the words of a request for the next pass.
+	 * Time Complexity: O(w) to queue, where w is the number of words
+	 *
+	 * @param words distinct words of the request
+	 * @return future completed with a replacement for every word
+	 * @throws RejectedExecutionException if the queue is full
+	 */
+	CompletableFuture<Map<String, String>> submit(Set<String> words) {
+		CompletableFuture<Map<String, String>> result = new CompletableFuture<>();
+		if (!queue.offer(new Pending(words, result))) {
+			throw new RejectedExecutionException("[ERROR] Server overloaded: " + queue.size() + " requests queued");
+		}
+		return result;
+	}
+
+	/**
+	 * Dispatcher loop. Waits for a request, gathers more until the batch is
+	 * full or the first request has waited maxWait, then hands the batch to
+	 * the workers.
+	 */
+	private void dispatch() {
+		List<Pending> batch = new ArrayList<>(maxBatchSize);
+		while (!Thread.currentThread().isInterrupted()) {
+			try {
+				batch.add(queue.take());
+				long deadline = System.nanoTime() + maxWaitNanos;
+				while (batch.size() < maxBatchSize) {
+					Pending next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+				List<Pending> full = List.copyOf(batch);
+				batch.clear();
+				try {
+					workers.execute(() -> resolve(full));
+				} catch (RejectedExecutionException e) {
+					for (Pending pending : full) {
+						pending.result().cancel(false);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		for (Pending pending : batch) {
+			pending.result().cancel(false);
+		}
+		for (Pending pending : queue) {
+			pending.result().cancel(false);
+		}
+	}
+
+	/**
+	 * Resolves the union of a batch's words in one pass and completes every
+	 * request with the shared replacements.
+	 * Time Complexity: O(v * m / p) where v is the number of distinct words
+	 *
+	 * @param batch requests to resolve
+	 */
+	private void resolve(List<Pending> batch) {
+		Set<String> words = new HashSet<>();
+		for (Pending pending : batch) {
+			words.addAll(pending.words());
+		}
+		try {
+			Map<String, String> replacements = processor.resolveAll(words);
+			for (Pending pending : batch) {
+				pending.result().complete(replacements);
+			}
+		} catch (RuntimeException e) {
+			for (Pending pending : batch) {
+				pending.result().completeExceptionally(e);
+			}
+		}
+		batches.incrementAndGet();
+		requests.addAndGet(batch.size());
+	}
+
+	/**
+	 * Returns the number of similarity passes run.
+	 *
+	 * @return batch count
+	 */
+	long getBatches() {
+		return batches.get();
+	}
+
+	/**
+	 * Returns the number of requests resolved.
+	 *
+	 * @return request count
+	 */
+	long getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * Stops the dispatcher, cancelling any requests still queued. Batches
+	 * already handed to the workers still complete.
+	 */
+	@Override
+	public void close() {
+		dispatcher.interrupt();
+	}
+}
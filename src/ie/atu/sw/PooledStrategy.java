@@ -0,0 +1,107 @@
+package ie.atu.sw;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * ExecutionStrategy on a plain ExecutorService, either a fixed pool of
+ * platform threads or a virtual thread per task. forEach starts one task per
+ * unit of parallelism, and each task claims chunks of indexes from a shared
+ * cursor until none are left. Chunk sizes come from an AdaptiveBatchSizer fed
+ * with the measured cost of earlier chunks, so a chunk of expensive indexes is
+ * followed by smaller ones and the tasks finish close together.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+final class PooledStrategy implements ExecutionStrategy {
+	/** Time one chunk should take */
+	private static final long TARGET_CHUNK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	/** Smallest chunk, enough to amortize claiming it */
+	private static final int MIN_CHUNK = 8;
+	/** Largest chunk */
+	private static final int MAX_CHUNK = 1 << 16;
+
+	/** Name used to choose this strategy */
+	private final String name;
+	/** Executor running the tasks */
+	private final ExecutorService executor;
+	/** Number of tasks started by forEach */
+	private final int parallelism;
+	/** Chunk size learned across forEach calls */
+	private final AdaptiveBatchSizer chunks = new AdaptiveBatchSizer(TARGET_CHUNK_NANOS, 64, MIN_CHUNK, MAX_CHUNK);
+
+	/**
+	 * Constructs a strategy over an executor it owns.
+	 *
+	 * @param name        name used to choose this strategy
+	 * @param executor    executor running the tasks
+	 * @param parallelism number of tasks started by forEach
+	 */
+	PooledStrategy(String name, ExecutorService executor, int parallelism) {
+		this.name = name;
+		this.executor = executor;
+		this.parallelism = parallelism;
+	}
+
+	@Override
+	public String name() {
+		return name;
+	}
+
+	@Override
+	public ExecutorService executor() {
+		return executor;
+	}
+
+	/**
+	 * Runs the action over the indexes in self-scheduled adaptive chunks.
+	 * Time Complexity: O(n / p) for uniform work
+	 *
+	 * @param size   number of indexes
+	 * @param action action run once per index
+	 */
+	@Override
+	public void forEach(int size, IntConsumer action) {
+		AtomicInteger cursor = new AtomicInteger();
+		List<Future<?>> tasks = new ArrayList<>(parallelism);
+		for (int t = 0; t < Math.min(parallelism, size); t++) {
+			tasks.add(executor.submit(() -> {
+				int chunk = chunks.next();
+				int from;
+				while ((from = cursor.getAndAdd(chunk)) < size) {
+					long start = System.nanoTime();
+					int to = Math.min(size, from + chunk);
+					for (int i = from; i < to; i++) {
+						action.accept(i);
+					}
+					chunks.record(to - from, System.nanoTime() - start);
+					chunk = chunks.next();
+				}
+			}));
+		}
+		for (Future<?> task : tasks) {
+			try {
+				task.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("[ERROR] Interrupted while waiting for workers", e);
+			} catch (ExecutionException e) {
+				throw e.getCause() instanceof RuntimeException runtime ? runtime
+						: new IllegalStateException("[ERROR] Worker failed", e.getCause());
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,131 @@
+package ie.atu.sw;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput, outcome and latency metrics for text processing, published over
+ * JMX. Counters are striped adders, so workers update them without contention.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public class ProcessorStats implements ProcessorStatsMBean {
+	/** Tokens found directly in Google-1000 */
+	private final LongAdder directHits = new LongAdder();
+	/** Tokens found in neither embedding set */
+	private final LongAdder oov = new LongAdder();
+	/** Tokens replaced by a similar word */
+	private final LongAdder replaced = new LongAdder();
+	/** Time spent inside processText, summed over concurrent runs */
+	private final LongAdder busyNanos = new LongAdder();
+	/** Latency of each processed batch */
+	private final LatencyHistogram batchLatency = new LatencyHistogram();
+	/** Pending queues of the runs in progress */
+	private final Set<Collection<?>> queues = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Records the outcome counts and latency of one batch.
+	 *
+	 * @param hits          tokens found directly in Google-1000
+	 * @param outOfVocab    tokens found in neither set
+	 * @param replacements  tokens replaced
+	 * @param latencyNanos  batch processing time
+	 */
+	public void recordBatch(int hits, int outOfVocab, int replacements, long latencyNanos) {
+		directHits.add(hits);
+		oov.add(outOfVocab);
+		replaced.add(replacements);
+		batchLatency.record(latencyNanos);
+	}
+
+	/**
+	 * Marks the start of a run and the queue whose depth should be reported.
+	 * Several runs may be in progress at once.
+	 *
+	 * @param pending pending batch queue of the run
+	 */
+	public void runStarted(Collection<?> pending) {
+		queues.add(pending);
+	}
+
+	/**
+	 * Marks the end of a run.
+	 *
+	 * @param pending pending batch queue of the run
+	 * @param nanos   duration of the run
+	 */
+	public void runFinished(Collection<?> pending, long nanos) {
+		busyNanos.add(nanos);
+		queues.remove(pending);
+	}
+
+	@Override
+	public long getTokens() {
+		return directHits.sum() + oov.sum() + replaced.sum();
+	}
+
+	@Override
+	public double getTokensPerSecond() {
+		long nanos = busyNanos.sum();
+		return nanos == 0 ? 0 : getTokens() * 1e9 / nanos;
+	}
+
+	@Override
+	public double getDirectHitRate() {
+		return rate(directHits.sum());
+	}
+
+	@Override
+	public double getOovRate() {
+		return rate(oov.sum());
+	}
+
+	@Override
+	public double getReplacedRate() {
+		return rate(replaced.sum());
+	}
+
+	@Override
+	public long getBatches() {
+		return batchLatency.getCount();
+	}
+
+	@Override
+	public long getBatchLatencyP50Micros() {
+		return batchLatency.percentile(50) / 1000;
+	}
+
+	@Override
+	public long getBatchLatencyP99Micros() {
+		return batchLatency.percentile(99) / 1000;
+	}
+
+	@Override
+	public long getBatchLatencyMaxMicros() {
+		return batchLatency.getMax() / 1000;
+	}
+
+	@Override
+	public int getQueueDepth() {
+		int depth = 0;
+		for (Collection<?> pending : queues) {
+			depth += pending.size();
+		}
+		return depth;
+	}
+
+	/**
+	 * Computes a share of all tokens.
+	 *
+	 * @param count tokens in the category
+	 * @return rate between 0 and 1
+	 */
+	private double rate(long count) {
+		long tokens = getTokens();
+		return tokens == 0 ? 0 : (double) count / tokens;
+	}
+}
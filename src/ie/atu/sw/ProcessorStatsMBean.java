@@ -0,0 +1,91 @@
+package ie.atu.sw;
+
+/**
+ * JMX view of text processing throughput and latency.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public interface ProcessorStatsMBean {
+
+	/**
+	 * Gets the number of tokens processed.
+	 *
+	 * @return token count
+	 */
+
+	long getTokens();
+
+	/**
+	 * Gets tokens processed per second of processing time.
+	 *
+	 * @return throughput in tokens per second
+	 */
+
+	double getTokensPerSecond();
+
+	/**
+	 * Gets the share of tokens found directly in Google-1000.
+	 *
+	 * @return rate between 0 and 1
+	 */
+
+	double getDirectHitRate();
+
+	/**
+	 * Gets the share of tokens found in neither embedding set.
+	 *
+	 * @return rate between 0 and 1
+	 */
+
+	double getOovRate();
+
+	/**
+	 * Gets the share of tokens replaced by a similar word.
+	 *
+	 * @return rate between 0 and 1
+	 */
+
+	double getReplacedRate();
+
+	/**
+	 * Gets the number of batches processed.
+	 *
+	 * @return batch count
+	 */
+
+	long getBatches();
+
+	/**
+	 * Gets the median batch latency.
+	 *
+	 * @return latency in microseconds
+	 */
+
+	long getBatchLatencyP50Micros();
+
+	/**
+	 * Gets the 99th percentile batch latency.
+	 *
+	 * @return latency in microseconds
+	 */
+
+	long getBatchLatencyP99Micros();
+
+	/**
+	 * Gets the largest batch latency.
+	 *
+	 * @return latency in microseconds
+	 */
+
+	long getBatchLatencyMaxMicros();
+
+	/**
+	 * Gets the number of batches waiting for the writer.
+	 *
+	 * @return queue depth
+	 */
+
+	int getQueueDepth();
+}
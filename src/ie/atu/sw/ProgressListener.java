@@ -0,0 +1,32 @@
+package ie.atu.sw;
+
+/**
+ * Receives progress from long-running operations such as loading embeddings,
+ * simplifying text and building indexes. Progress is reported in the
+ * operation's own units, normally bytes of input against the file size.
+ *
+ * Operations report through a ProgressTracker, which throttles updates by
+ * time, so a listener is called a few times per second at most and never
+ * concurrently. The last call of every operation has done equal to total.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+@FunctionalInterface
+public interface ProgressListener {
+
+	/** Listener that ignores all progress */
+	ProgressListener NONE = (task, done, total) -> {
+	};
+
+	/**
+	 * Called when an operation makes progress.
+	 *
+	 * @param task  short description of the operation
+	 * @param done  units completed so far
+	 * @param total total units of the operation
+	 */
+
+	void onProgress(String task, long done, long total);
+}
@@ -0,0 +1,81 @@
+package ie.atu.sw;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe progress counter for one operation. Workers add completed units
+ * with advance, which costs one atomic add and, for a real listener, one clock
+ * read; the listener is only called when at least MIN_INTERVAL_NANOS have
+ * passed since the last update, so hot loops never pay for console output.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+final class ProgressTracker {
+	/** Minimum time between two listener updates */
+	private static final long MIN_INTERVAL_NANOS = 100_000_000L;
+
+	/** Listener receiving updates */
+	private final ProgressListener listener;
+	/** Short description of the operation */
+	private final String task;
+	/** Total units of the operation */
+	private final long total;
+	/** Units completed so far */
+	private final AtomicLong done = new AtomicLong();
+	/** Clock reading after which the next update may be sent */
+	private final AtomicLong nextReport = new AtomicLong(System.nanoTime());
+	/** Last value passed to the listener, guarded by this */
+	private long reported = -1;
+
+	/**
+	 * Constructs a tracker for an operation.
+	 *
+	 * @param listener listener receiving updates
+	 * @param task     short description of the operation
+	 * @param total    total units of the operation
+	 */
+	ProgressTracker(ProgressListener listener, String task, long total) {
+		this.listener = listener;
+		this.task = task;
+		this.total = Math.max(total, 0);
+	}
+
+	/**
+	 * Adds completed units, updating the listener if enough time has passed.
+	 * Time Complexity: O(1)
+	 *
+	 * @param units units just completed
+	 */
+	void advance(long units) {
+		long current = done.addAndGet(units);
+		if (listener == ProgressListener.NONE) {
+			return;
+		}
+		long now = System.nanoTime();
+		long next = nextReport.get();
+		if (now - next >= 0 && nextReport.compareAndSet(next, now + MIN_INTERVAL_NANOS)) {
+			report(Math.min(current, total - 1));
+		}
+	}
+
+	/**
+	 * Marks the operation complete, always sending a final update.
+	 */
+	void finish() {
+		report(total);
+	}
+
+	/**
+	 * Sends an update unless it would move the listener backwards.
+	 *
+	 * @param value units to report
+	 */
+	private synchronized void report(long value) {
+		if (value > reported) {
+			reported = value;
+			listener.onProgress(task, value, total);
+		}
+	}
+}
@@ -0,0 +1,263 @@
+package ie.atu.sw;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exact SimilaritySearch that abandons most candidates before their dot
+ * product is complete. Target rows are stored with their components reordered
+ * by decreasing variance, so the first few components carry most of each
+ * score. Every BLOCK components the partial dot product is checked against an
+ * upper bound on what the remaining components could add: by Cauchy-Schwarz
+ * that is at most the norm of the query's remaining components times the norm
+ * of the row's remaining components, both precomputed. A candidate whose bound
+ * cannot beat the best score so far is dropped.
+ *
+ * Reordered sums round differently from the brute-force scan, so the bound
+ * carries a small slack and every candidate that survives is re-scored with
+ * the same kernel dot product as the scan, against the normalized matrix kept
+ * in the same published state as the reordered rows. The row returned is
+ * therefore always the row the brute-force scan of that matrix returns, ties
+ * included.
+ *
+ * Registered as a TargetListener, the search reorders added rows and drops
+ * removed ones without touching the rest. Changes are made on a copy of the
+ * rows and published in one step, so queries may run during an update.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public class PrunedSimilaritySearch implements SimilaritySearch, TargetListener {
+	/** Components summed between bound checks */
+	private static final int BLOCK = 16;
+	/** Bound slack per unit of query norm, far above any rounding error */
+	private static final double SLACK = 1e-9;
+
+	/** Targets whose rows are searched */
+	private final GoogleEmbeddingsMap targets;
+	/** Kernel of the targets, summing each block and re-scoring survivors */
+	private final SimilarityKernel kernel;
+	/** Components in order of decreasing variance */
+	private final int[] order;
+	/** Number of components per vector */
+	private final int dimension;
+	/** Number of bound checks per row */
+	private final int blocks;
+	/** Reordered rows as seen by queries, replaced whole on every change */
+	private volatile Rows state;
+
+	/**
+	 * One published state of the reordered rows.
+	 *
+	 * @param source normalized target matrix in component order, used to
+	 *               re-score survivors
+	 * @param matrix reordered target rows, row-major
+	 * @param tails  per row and block, the norm of the row's components after
+	 *               that block
+	 * @param live   whether each row holds a current target
+	 */
+	private record Rows(double[] source, double[] matrix, double[] tails, boolean[] live) {
+	}
+
+	/** Number of live candidates visited */
+	private final AtomicLong candidates = new AtomicLong();
+	/** Number of components multiplied, including re-scoring */
+	private final AtomicLong dimensionsTouched = new AtomicLong();
+
+	/**
+	 * Reorders the normalized matrix of loaded Google embeddings by the
+	 * variance order computed when they were loaded.
+	 *
+	 * Time Complexity: O(n * d) where n is the number of targets and d the
+	 * dimension
+	 *
+	 * @param targets loaded Google embeddings
+	 */
+	public PrunedSimilaritySearch(GoogleEmbeddingsMap targets) {
+		this.targets = targets;
+		this.kernel = targets.getKernel();
+		this.order = targets.getDimensionOrder();
+		this.dimension = targets.getDimension();
+		this.blocks = (dimension + BLOCK - 1) / BLOCK;
+
+		double[] source = targets.getNormalizedVectors();
+		int rows = targets.getRowCount();
+		double[] matrix = new double[rows * dimension];
+		double[] tails = new double[rows * blocks];
+		boolean[] live = new boolean[rows];
+		for (int row = 0; row < rows; row++) {
+			reorder(source, row, matrix, tails);
+			live[row] = targets.isLive(row);
+		}
+		this.state = new Rows(source, matrix, tails, live);
+	}
+
+	/**
+	 * Reorders a row added to the targets, growing the rows if needed.
+	 *
+	 * Time Complexity: O(m * d) to copy the rows, O(d) to reorder the row
+	 *
+	 * @param row row of the new target
+	 */
+	@Override
+	public synchronized void targetAdded(int row) {
+		Rows current = state;
+		int rows = Math.max(current.live().length, row + 1);
+		double[] matrix = Arrays.copyOf(current.matrix(), rows * dimension);
+		double[] tails = Arrays.copyOf(current.tails(), rows * blocks);
+		boolean[] live = Arrays.copyOf(current.live(), rows);
+		double[] source = targets.getNormalizedVectors();
+		reorder(source, row, matrix, tails);
+		live[row] = true;
+		state = new Rows(source, matrix, tails, live);
+	}
+
+	/**
+	 * Stops scanning a row removed from the targets.
+	 *
+	 * Time Complexity: O(m)
+	 *
+	 * @param row row of the removed target
+	 */
+	@Override
+	public synchronized void targetRemoved(int row) {
+		Rows current = state;
+		boolean[] live = current.live().clone();
+		live[row] = false;
+		state = new Rows(current.source(), current.matrix(), current.tails(), live);
+	}
+
+	/**
+	 * Finds the most similar target, abandoning each candidate as soon as its
+	 * bound falls to the best score found so far.
+	 *
+	 * Time Complexity: O(n * d) worst case, O(n * k) when candidates are
+	 * abandoned after k components on average
+	 *
+	 * @param vector vector to compare
+	 * @return row of the most similar target, or -1 if there are no targets
+	 */
+	@Override
+	public int findMostSimilarRow(double[] vector) {
+		double[] query = new double[dimension];
+		for (int i = 0; i < dimension; i++) {
+			query[i] = vector[order[i]];
+		}
+		double[] queryTails = new double[blocks];
+		tailNorms(query, 0, queryTails, 0);
+		double slack = SLACK * Math.sqrt(norm2(query));
+		double[][] queryBlocks = new double[blocks][];
+		for (int block = 0; block < blocks; block++) {
+			queryBlocks[block] = Arrays.copyOfRange(query, block * BLOCK, Math.min(dimension, (block + 1) * BLOCK));
+		}
+
+		Rows current = state;
+		double[] source = current.source();
+		double[] matrix = current.matrix();
+		double[] tails = current.tails();
+		boolean[] live = current.live();
+
+		int bestRow = -1;
+		double highestSimilarity = Double.NEGATIVE_INFINITY;
+		long visited = 0;
+		long touched = 0;
+		for (int row = 0; row < live.length; row++) {
+			if (!live[row]) {
+				continue;
+			}
+			visited++;
+			int offset = row * dimension;
+			int tailOffset = row * blocks;
+			double partial = 0.0;
+			int i = 0;
+			boolean abandoned = false;
+			for (int block = 0; block < blocks; block++) {
+				double[] part = queryBlocks[block];
+				partial += kernel.dot(part, matrix, offset + i, part.length);
+				i += part.length;
+				if (partial + queryTails[block] * tails[tailOffset + block] + slack <= highestSimilarity) {
+					abandoned = true;
+					break;
+				}
+			}
+			touched += i;
+			if (abandoned) {
+				continue;
+			}
+			double similarity = kernel.dot(vector, source, offset, dimension);
+			touched += dimension;
+			if (similarity > highestSimilarity) {
+				highestSimilarity = similarity;
+				bestRow = row;
+			}
+		}
+		candidates.addAndGet(visited);
+		dimensionsTouched.addAndGet(touched);
+		return bestRow;
+	}
+
+	/**
+	 * Returns the average number of components multiplied per candidate,
+	 * counting the full re-scoring of candidates that were not abandoned.
+	 *
+	 * @return average components per candidate, or 0 before any query
+	 */
+	public double getAverageDimensions() {
+		long visited = candidates.get();
+		return visited == 0 ? 0.0 : (double) dimensionsTouched.get() / visited;
+	}
+
+	/**
+	 * Writes one normalized row in variance order, with its tail norms.
+	 *
+	 * Time Complexity: O(d)
+	 *
+	 * @param source normalized target matrix
+	 * @param row    row to reorder
+	 * @param matrix destination reordered matrix
+	 * @param tails  destination tail norms
+	 */
+	private void reorder(double[] source, int row, double[] matrix, double[] tails) {
+		int offset = row * dimension;
+		for (int i = 0; i < dimension; i++) {
+			matrix[offset + i] = source[offset + order[i]];
+		}
+		tailNorms(matrix, offset, tails, row * blocks);
+	}
+
+	/**
+	 * Computes, for each block of a reordered vector, the norm of the components
+	 * after that block. The last block's tail is zero.
+	 *
+	 * Time Complexity: O(d)
+	 *
+	 * @param vector      reordered components
+	 * @param offset      index of the first component
+	 * @param tails       destination tail norms
+	 * @param tailsOffset index of the first tail norm
+	 */
+	private void tailNorms(double[] vector, int offset, double[] tails, int tailsOffset) {
+		double suffix = 0.0;
+		for (int block = blocks - 1; block >= 0; block--) {
+			tails[tailsOffset + block] = Math.sqrt(suffix);
+			for (int i = Math.min(dimension, (block + 1) * BLOCK) - 1; i >= block * BLOCK; i--) {
+				suffix += vector[offset + i] * vector[offset + i];
+			}
+		}
+	}
+
+	/**
+	 * Computes the squared norm of a vector.
+	 *
+	 * @param vector vector
+	 * @return sum of squared components
+	 */
+	private static double norm2(double[] vector) {
+		double sum = 0.0;
+		for (double v : vector) {
+			sum += v * v;
+		}
+		return sum;
+	}
+}
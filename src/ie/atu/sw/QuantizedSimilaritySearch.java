@@ -0,0 +1,266 @@
+package ie.atu.sw;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SimilaritySearch over int8-quantized copies of the Google target vectors.
+ * Each normalized target row is stored as signed bytes with one float scale
+ * factor, a quarter of the memory of a float32 row and an eighth of a double
+ * row. Candidates are ranked with integer dot products and the best few are
+ * re-scored against the full-precision matrix, so the chosen replacement
+ * matches the exact scan in all but near-tie cases. Re-scoring reads the
+ * targets' own normalized matrix rather than a private copy; the matrix is
+ * kept in the same published state as the codes, so a query never ranks one
+ * set of targets and scores another, and is refreshed on every change so an
+ * older matrix is never held on to.
+ * 
+ * One query in every verifyInterval also runs the exact scan, and the
+ * mismatch count reports how often the quantized result differs.
+ * 
+ * Registered as a TargetListener, the search quantizes added rows and drops
+ * removed ones without touching the rest. Changes are made on a copy of the
+ * codes and published in one step, so queries may run during an update.
+ * 
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public class QuantizedSimilaritySearch implements SimilaritySearch, TargetListener {
+	/** Number of candidates re-scored at full precision */
+	private static final int RESCORE_CANDIDATES = 8;
+	/** Largest magnitude of a quantized component */
+	private static final int LEVELS = 127;
+
+	/** Targets whose rows are quantized */
+	private final GoogleEmbeddingsMap targets;
+	/** Kernel of the targets, used to re-score candidates */
+	private final SimilarityKernel kernel;
+	/** Quantized rows as seen by queries, replaced whole on every change */
+	private volatile Codes state;
+	/** Number of components per vector */
+	private final int dimension;
+	/** Queries between exact verifications, or 0 to never verify */
+	private final int verifyInterval;
+
+	/**
+	 * One published state of the quantized rows.
+	 * 
+	 * @param source normalized target matrix the codes were built from, used
+	 *               to re-score candidates
+	 * @param codes  quantized target rows, row-major
+	 * @param scales scale factor per target row
+	 * @param live   whether each row holds a current target
+	 */
+	private record Codes(double[] source, byte[] codes, float[] scales, boolean[] live) {
+	}
+
+	/** Number of queries answered */
+	private final AtomicLong queries = new AtomicLong();
+	/** Number of queries checked against the exact scan */
+	private final AtomicLong verified = new AtomicLong();
+	/** Number of checked queries whose result differed */
+	private final AtomicLong mismatches = new AtomicLong();
+
+	/**
+	 * Quantizes the normalized matrix of loaded Google embeddings.
+	 * 
+	 * Time Complexity: O(n * d) where n is the number of targets and d the
+	 * dimension
+	 * 
+	 * @param targets        loaded Google embeddings
+	 * @param verifyInterval queries between exact verifications, or 0 to disable
+	 */
+	public QuantizedSimilaritySearch(GoogleEmbeddingsMap targets, int verifyInterval) {
+		this.targets = targets;
+		this.kernel = targets.getKernel();
+		this.verifyInterval = verifyInterval;
+		this.dimension = targets.getDimension();
+
+		double[] matrix = targets.getNormalizedVectors();
+		int rows = targets.getRowCount();
+		byte[] codes = new byte[rows * dimension];
+		float[] scales = new float[rows];
+		boolean[] live = new boolean[rows];
+		for (int row = 0; row < rows; row++) {
+			scales[row] = quantize(matrix, row * dimension, dimension, codes, row * dimension);
+			live[row] = targets.isLive(row);
+		}
+		this.state = new Codes(matrix, codes, scales, live);
+	}
+
+	/**
+	 * Quantizes a row added to the targets, growing the rows if needed.
+	 * 
+	 * Time Complexity: O(m * d) to copy the codes, O(d) to quantize the row
+	 * 
+	 * @param row row of the new target
+	 */
+	@Override
+	public synchronized void targetAdded(int row) {
+		Codes current = state;
+		int rows = Math.max(current.scales().length, row + 1);
+		byte[] codes = Arrays.copyOf(current.codes(), rows * dimension);
+		float[] scales = Arrays.copyOf(current.scales(), rows);
+		boolean[] live = Arrays.copyOf(current.live(), rows);
+		double[] source = targets.getNormalizedVectors();
+		scales[row] = quantize(source, row * dimension, dimension, codes, row * dimension);
+		live[row] = true;
+		state = new Codes(source, codes, scales, live);
+	}
+
+	/**
+	 * Stops ranking a row removed from the targets. The targets publish a new
+	 * matrix with every change, so it replaces the one kept for re-scoring.
+	 * 
+	 * Time Complexity: O(m)
+	 * 
+	 * @param row row of the removed target
+	 */
+	@Override
+	public synchronized void targetRemoved(int row) {
+		Codes current = state;
+		boolean[] live = current.live().clone();
+		live[row] = false;
+		state = new Codes(targets.getNormalizedVectors(), current.codes(), current.scales(), live);
+	}
+
+	/**
+	 * Finds the most similar target by ranking integer dot products and
+	 * re-scoring the best candidates at full precision.
+	 * 
+	 * Time Complexity: O(n * d) integer operations plus O(k * d) for re-scoring
+	 * 
+	 * @param vector vector to compare
+	 * @return row of the most similar target, or -1 if there are no targets
+	 */
+	@Override
+	public int findMostSimilarRow(double[] vector) {
+		byte[] query = new byte[dimension];
+		quantize(vector, 0, dimension, query, 0);
+		Codes current = state;
+		double[] source = current.source();
+		byte[] codes = current.codes();
+		float[] scales = current.scales();
+		boolean[] live = current.live();
+
+		int[] candidates = new int[RESCORE_CANDIDATES];
+		float[] candidateScores = new float[RESCORE_CANDIDATES];
+		int found = 0;
+		for (int row = 0, offset = 0; row < scales.length; row++, offset += dimension) {
+			if (!live[row]) {
+				continue;
+			}
+			int dot = 0;
+			for (int i = 0; i < dimension; i++) {
+				dot += query[i] * codes[offset + i];
+			}
+			float score = dot * scales[row];
+			if (found < RESCORE_CANDIDATES || score > candidateScores[found - 1]) {
+				int pos = found < RESCORE_CANDIDATES ? found++ : found - 1;
+				while (pos > 0 && candidateScores[pos - 1] < score) {
+					candidates[pos] = candidates[pos - 1];
+					candidateScores[pos] = candidateScores[pos - 1];
+					pos--;
+				}
+				candidates[pos] = row;
+				candidateScores[pos] = score;
+			}
+		}
+
+		int bestRow = -1;
+		double highestSimilarity = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < found; i++) {
+			double similarity = kernel.dot(vector, source, candidates[i] * dimension, dimension);
+			if (similarity > highestSimilarity || (similarity == highestSimilarity && candidates[i] < bestRow)) {
+				highestSimilarity = similarity;
+				bestRow = candidates[i];
+			}
+		}
+
+		if (verifyInterval > 0 && queries.incrementAndGet() % verifyInterval == 0) {
+			verified.incrementAndGet();
+			if (targets.findMostSimilarRow(vector) != bestRow) {
+				mismatches.incrementAndGet();
+			}
+		}
+		return bestRow;
+	}
+
+	/**
+	 * Returns the number of queries between exact verifications.
+	 * 
+	 * @return verification interval, or 0 if verification is disabled
+	 */
+	public int getVerifyInterval() {
+		return verifyInterval;
+	}
+
+	/**
+	 * Returns the number of queries checked against the exact scan.
+	 * 
+	 * @return verified query count
+	 */
+	public long getVerifiedCount() {
+		return verified.get();
+	}
+
+	/**
+	 * Returns the number of checked queries whose result differed from the exact
+	 * scan.
+	 * 
+	 * @return mismatch count
+	 */
+	public long getMismatchCount() {
+		return mismatches.get();
+	}
+
+	/**
+	 * Returns the memory used by the quantized rows, scales and liveness flags.
+	 * 
+	 * @return size in bytes
+	 */
+	public long getCodeBytes() {
+		Codes current = state;
+		return current.codes().length + (long) current.scales().length * Float.BYTES + current.live().length;
+	}
+
+	/**
+	 * Returns all the memory the search retains: the codes plus the
+	 * full-precision matrix read for re-scoring, which is shared with the
+	 * targets rather than copied.
+	 * 
+	 * @return size in bytes
+	 */
+	public long getMemoryBytes() {
+		return getCodeBytes() + (long) state.source().length * Double.BYTES;
+	}
+
+	/**
+	 * Quantizes one vector to signed bytes using a symmetric scale, so that the
+	 * largest component maps to +/-127.
+	 * 
+	 * Time Complexity: O(d)
+	 * 
+	 * @param source       source values
+	 * @param sourceOffset index of the first component
+	 * @param length       number of components
+	 * @param target       destination codes
+	 * @param targetOffset index of the first destination code
+	 * @return scale factor mapping a code back to its value
+	 */
+	private static float quantize(double[] source, int sourceOffset, int length, byte[] target, int targetOffset) {
+		double max = 0.0;
+		for (int i = 0; i < length; i++) {
+			max = Math.max(max, Math.abs(source[sourceOffset + i]));
+		}
+		if (max == 0.0) {
+			return 0f;
+		}
+		double scale = max / LEVELS;
+		for (int i = 0; i < length; i++) {
+			target[targetOffset + i] = (byte) Math.round(source[sourceOffset + i] / scale);
+		}
+		return (float) scale;
+	}
+}
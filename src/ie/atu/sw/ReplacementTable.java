@@ -0,0 +1,382 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Precomputed GloVe to Google-1000 replacement table. Every GloVe word id maps
+ * to the row of its most similar Google word, so simplifying a word costs one
+ * id lookup and one array read.
+ *
+ * The table depends only on the GloVe file and the target rows, so it is saved
+ * as a sidecar file next to the GloVe file, named after a key of both. The key
+ * hashes every target row's word and liveness but only the path, size and
+ * modification time of the GloVe file, so a warm start reads none of it. Later
+ * runs over the same rows memory-map the sidecar instead of recomputing, and
+ * targets edited at runtime never match a sidecar written before the edit.
+ *
+ * Registered as a TargetListener, the table follows changes to the Google
+ * words: an added target is compared with each word's current replacement,
+ * and only words whose replacement was removed are searched again. Each change
+ * patches a heap copy of the rows and publishes it with a single write, so a
+ * lookup sees either the old or the new table, never a half-patched one.
+ *
+ * Sidecar layout (big-endian): magic, version, 32 byte SHA-256 key, source
+ * count, target count, then one int target row per source id.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public class ReplacementTable implements TargetListener {
+	/** Sidecar file magic number ("RPLC") */
+	private static final int MAGIC = 0x52504C43;
+	/** Sidecar format version */
+	private static final int VERSION = 3;
+	/** Length of the SHA-256 key in bytes */
+	private static final int KEY_LENGTH = 32;
+	/** Sidecar header size in bytes */
+	private static final int HEADER_SIZE = 4 + 4 + KEY_LENGTH + 4 + 4;
+	/** Number of source ids below which a fork/join task stops splitting */
+	private static final int SPLIT_THRESHOLD = 1024;
+
+	/** Source embeddings whose ids index the table */
+	private final WordEmbeddings gloveEmbeddings;
+	/** Target embeddings whose rows are stored in the table */
+	private final GoogleEmbeddingsMap googleEmbeddings;
+	/**
+	 * Target row for each source id, on heap or memory-mapped. Never written
+	 * after publication; changes replace the whole buffer.
+	 */
+	private volatile IntBuffer targets;
+
+	/**
+	 * Constructs a table over a buffer of target rows.
+	 *
+	 * @param gloveEmbeddings  source embeddings
+	 * @param googleEmbeddings target embeddings
+	 * @param targets          target row per source id
+	 */
+	private ReplacementTable(WordEmbeddings gloveEmbeddings, GoogleEmbeddingsMap googleEmbeddings,
+			IntBuffer targets) {
+		this.gloveEmbeddings = gloveEmbeddings;
+		this.googleEmbeddings = googleEmbeddings;
+		this.targets = targets;
+	}
+
+	/**
+	 * Memory-maps the sidecar for the GloVe file and the current target rows if
+	 * one exists, otherwise computes the table and saves it as a sidecar. The
+	 * table is not saved if the targets changed while it was computed.
+	 *
+	 * Time Complexity: O(1) when the sidecar exists, otherwise O(n * m * d) where
+	 * n is the GloVe size, m the Google size and d the dimension
+	 *
+	 * @param glovePath        path of the loaded GloVe file
+	 * @param gloveEmbeddings  loaded GloVe embeddings
+	 * @param googleEmbeddings loaded Google embeddings
+	 * @param listener         listener receiving progress if the table is computed
+	 * @return the replacement table
+	 * @throws Exception if the files cannot be read or written
+	 */
+	public static ReplacementTable loadOrCompute(String glovePath, WordEmbeddings gloveEmbeddings,
+			GoogleEmbeddingsMap googleEmbeddings, ProgressListener listener) throws Exception {
+		byte[] key = inputKey(glovePath, googleEmbeddings);
+		Path sidecar = sidecarPath(glovePath, key);
+
+		if (Files.exists(sidecar)) {
+			ReplacementTable table = map(sidecar, key, gloveEmbeddings, googleEmbeddings);
+			if (table != null) {
+				return table;
+			}
+		}
+
+		ReplacementTable table = compute(gloveEmbeddings, googleEmbeddings, listener);
+		if (Arrays.equals(key, inputKey(glovePath, googleEmbeddings))) {
+			table.save(sidecar, key);
+		}
+		return table;
+	}
+
+	/**
+	 * Computes the full table with a fork/join job over the GloVe ids. Words that
+	 * are themselves Google words map to their own row. Progress is reported in
+	 * GloVe words resolved.
+	 *
+	 * Time Complexity: O(n * m * d), divided across the common pool
+	 *
+	 * @param gloveEmbeddings  loaded GloVe embeddings
+	 * @param googleEmbeddings loaded Google embeddings
+	 * @param listener         listener receiving progress
+	 * @return the replacement table
+	 */
+	public static ReplacementTable compute(WordEmbeddings gloveEmbeddings, GoogleEmbeddingsMap googleEmbeddings,
+			ProgressListener listener) {
+		int[] rows = new int[gloveEmbeddings.getSize()];
+		ProgressTracker progress = new ProgressTracker(listener, "Computing replacements", rows.length);
+		ForkJoinPool.commonPool().invoke(new ForEachTask(0, rows.length,
+				id -> rows[id] = resolve(gloveEmbeddings, googleEmbeddings, id), progress));
+		progress.finish();
+		return new ReplacementTable(gloveEmbeddings, googleEmbeddings, IntBuffer.wrap(rows));
+	}
+
+	/**
+	 * Looks up the replacement for a word.
+	 *
+	 * Time Complexity: O(1) average case
+	 *
+	 * @param word the word to replace
+	 * @return the most similar Google word, or null if the word is not in GloVe
+	 */
+	public String lookup(String word) {
+		int id = gloveEmbeddings.indexOf(word);
+		if (id < 0) {
+			return null;
+		}
+		int row = targets.get(id);
+		return row < 0 ? null : googleEmbeddings.wordAt(row);
+	}
+
+	/**
+	 * Points every word at an added target if it is more similar than the
+	 * word's current replacement, breaking ties towards the lower row as
+	 * findMostSimilarRow does. The added word itself always maps to its own
+	 * row.
+	 *
+	 * Time Complexity: O(n * d), divided across the common pool
+	 *
+	 * @param row row of the new target
+	 */
+	@Override
+	public synchronized void targetAdded(int row) {
+		int[] rows = copyTargets();
+		ForkJoinPool.commonPool().invoke(new ForEachTask(0, rows.length, id -> {
+			String word = gloveEmbeddings.wordAt(id);
+			int current = rows[id];
+			if (current < 0 || googleEmbeddings.indexOf(word) == row) {
+				rows[id] = row;
+				return;
+			}
+			double[] vector = gloveEmbeddings.getEmbedding(word);
+			double added = googleEmbeddings.similarityToRow(vector, row);
+			double kept = googleEmbeddings.similarityToRow(vector, current);
+			if (added > kept || added == kept && row < current) {
+				rows[id] = row;
+			}
+		}, null));
+		targets = IntBuffer.wrap(rows);
+	}
+
+	/**
+	 * Searches again for every word whose replacement was a removed target.
+	 *
+	 * Time Complexity: O(n + r * m * d) where r is the number of words that
+	 * pointed at the removed row
+	 *
+	 * @param row row of the removed target
+	 */
+	@Override
+	public synchronized void targetRemoved(int row) {
+		int[] rows = copyTargets();
+		ForkJoinPool.commonPool().invoke(new ForEachTask(0, rows.length, id -> {
+			if (rows[id] == row) {
+				rows[id] = resolve(gloveEmbeddings, googleEmbeddings, id);
+			}
+		}, null));
+		targets = IntBuffer.wrap(rows);
+	}
+
+	/**
+	 * Copies the published target rows onto the heap to be patched.
+	 *
+	 * Time Complexity: O(n)
+	 *
+	 * @return copy of the target rows
+	 */
+	private int[] copyTargets() {
+		IntBuffer current = targets;
+		int[] rows = new int[current.limit()];
+		current.get(0, rows);
+		return rows;
+	}
+
+	/**
+	 * Finds the replacement row of one source word. Words that are themselves
+	 * Google words map to their own row.
+	 *
+	 * Time Complexity: O(m * d)
+	 *
+	 * @param gloveEmbeddings  source embeddings
+	 * @param googleEmbeddings target embeddings
+	 * @param id               source id
+	 * @return target row, or -1 if there are no targets
+	 */
+	private static int resolve(WordEmbeddings gloveEmbeddings, GoogleEmbeddingsMap googleEmbeddings, int id) {
+		String word = gloveEmbeddings.wordAt(id);
+		int row = googleEmbeddings.indexOf(word);
+		return row >= 0 ? row : googleEmbeddings.findMostSimilarRow(gloveEmbeddings.getEmbedding(word));
+	}
+
+	/**
+	 * Returns the number of source words in the table.
+	 *
+	 * @return table size
+	 */
+	public int getSize() {
+		return targets.limit();
+	}
+
+	/**
+	 * Writes the table to a sidecar file. The file is written under a temporary
+	 * name and moved into place so readers never see a partial table.
+	 *
+	 * Time Complexity: O(n)
+	 *
+	 * @param sidecar destination path
+	 * @param key     hash of the inputs
+	 * @throws IOException if writing fails
+	 */
+	private void save(Path sidecar, byte[] key) throws IOException {
+		Path temp = sidecar.resolveSibling(sidecar.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + targets.limit() * Integer.BYTES);
+			buffer.putInt(MAGIC).putInt(VERSION).put(key).putInt(targets.limit()).putInt(googleEmbeddings.getRowCount());
+			for (int i = 0; i < targets.limit(); i++) {
+				buffer.putInt(targets.get(i));
+			}
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+		Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Memory-maps a sidecar file, checking that it belongs to the loaded inputs.
+	 * The key covers the target rows, so the stored target count is a check on
+	 * the file rather than on the key.
+	 *
+	 * Time Complexity: O(1)
+	 *
+	 * @param sidecar          sidecar path
+	 * @param key              expected hash of the inputs
+	 * @param gloveEmbeddings  loaded GloVe embeddings
+	 * @param googleEmbeddings loaded Google embeddings
+	 * @return the mapped table, or null if the sidecar does not match
+	 * @throws IOException if the file cannot be mapped
+	 */
+	private static ReplacementTable map(Path sidecar, byte[] key, WordEmbeddings gloveEmbeddings,
+			GoogleEmbeddingsMap googleEmbeddings) throws IOException {
+		try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE) {
+				return null;
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				return null;
+			}
+			byte[] storedKey = new byte[KEY_LENGTH];
+			buffer.get(storedKey);
+			if (!Arrays.equals(storedKey, key)) {
+				return null;
+			}
+			int sourceCount = buffer.getInt();
+			int targetCount = buffer.getInt();
+			if (sourceCount != gloveEmbeddings.getSize() || targetCount != googleEmbeddings.getRowCount()
+					|| channel.size() != HEADER_SIZE + (long) sourceCount * Integer.BYTES) {
+				return null;
+			}
+			IntBuffer rows = buffer.slice(HEADER_SIZE, sourceCount * Integer.BYTES).order(ByteOrder.BIG_ENDIAN)
+					.asIntBuffer();
+			return new ReplacementTable(gloveEmbeddings, googleEmbeddings, rows);
+		}
+	}
+
+	/**
+	 * Builds the sidecar path for a GloVe file and input hash.
+	 *
+	 * @param glovePath path of the GloVe file
+	 * @param key       hash of the inputs
+	 * @return sidecar path next to the GloVe file
+	 */
+	private static Path sidecarPath(String glovePath, byte[] key) {
+		Path glove = Path.of(glovePath).toAbsolutePath();
+		String hex = HexFormat.of().formatHex(key, 0, 8);
+		return glove.resolveSibling(glove.getFileName() + "." + hex + ".replacements");
+	}
+
+	/**
+	 * Computes the SHA-256 key of the inputs: the GloVe file's absolute path,
+	 * size and modification time, followed by the word and liveness of every
+	 * target row. Rewriting the GloVe file changes its modification time and so
+	 * the key, and so does any runtime edit of the targets, including one that
+	 * only removes words and keeps the row count.
+	 *
+	 * Time Complexity: O(m) in the number of target rows
+	 *
+	 * @param glovePath        path of the GloVe file
+	 * @param googleEmbeddings loaded Google embeddings
+	 * @return 32 byte digest
+	 * @throws Exception if the GloVe file cannot be read
+	 */
+	private static byte[] inputKey(String glovePath, GoogleEmbeddingsMap googleEmbeddings) throws Exception {
+		Path glove = Path.of(glovePath).toAbsolutePath();
+		MessageDigest digest = MessageDigest.getInstance("SHA-256");
+		digest.update(glove.toString().getBytes(StandardCharsets.UTF_8));
+		digest.update(ByteBuffer.allocate(2 * Long.BYTES).putLong(Files.size(glove))
+				.putLong(Files.getLastModifiedTime(glove).toMillis()).flip());
+		googleEmbeddings.digestRows(digest, false);
+		return digest.digest();
+	}
+
+	/**
+	 * Fork/join task running an action on each of a range of GloVe ids,
+	 * reporting progress to a tracker if one is given.
+	 */
+	@SuppressWarnings("serial") // fork/join tasks are never serialized
+	private static class ForEachTask extends RecursiveAction {
+		private final int from;
+		private final int to;
+		private final IntConsumer action;
+		private final ProgressTracker progress;
+
+		ForEachTask(int from, int to, IntConsumer action, ProgressTracker progress) {
+			this.from = from;
+			this.to = to;
+			this.action = action;
+			this.progress = progress;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= SPLIT_THRESHOLD) {
+				for (int id = from; id < to; id++) {
+					action.accept(id);
+				}
+				if (progress != null) {
+					progress.advance(to - from);
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new ForEachTask(from, mid, action, progress), new ForEachTask(mid, to, action, progress));
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package ie.atu.sw;
+
+import java.util.Arrays;
+
+/**
+ * Binary heap of rows keyed by similarity score, stored in parallel primitive
+ * arrays so that pushing a candidate allocates nothing. A max-first heap hands
+ * out the most promising candidate next; a min-first heap keeps the weakest of
+ * a bounded result set on top so it can be evicted.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+final class RowHeap {
+	/** Whether the highest score is on top */
+	private final boolean maxFirst;
+	/** Rows in heap order */
+	private int[] rows = new int[16];
+	/** Scores parallel to rows */
+	private double[] scores = new double[16];
+	/** Number of entries */
+	private int size;
+
+	/**
+	 * Constructs an empty heap.
+	 *
+	 * @param maxFirst true to keep the highest score on top, false for the lowest
+	 */
+	RowHeap(boolean maxFirst) {
+		this.maxFirst = maxFirst;
+	}
+
+	/**
+	 * Returns the number of entries.
+	 *
+	 * @return heap size
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the score on top of the heap.
+	 *
+	 * @return top score
+	 */
+	double topScore() {
+		return scores[0];
+	}
+
+	/**
+	 * Adds a row.
+	 *
+	 * Time Complexity: O(log n)
+	 *
+	 * @param row   row to add
+	 * @param score its score
+	 */
+	void push(int row, double score) {
+		if (size == rows.length) {
+			rows = Arrays.copyOf(rows, size * 2);
+			scores = Arrays.copyOf(scores, size * 2);
+		}
+		int i = size++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!before(score, scores[parent])) {
+				break;
+			}
+			rows[i] = rows[parent];
+			scores[i] = scores[parent];
+			i = parent;
+		}
+		rows[i] = row;
+		scores[i] = score;
+	}
+
+	/**
+	 * Adds a row to a heap holding at most limit entries, evicting the top when
+	 * full. Only meaningful on a min-first heap, where it keeps the best rows.
+	 *
+	 * Time Complexity: O(log limit)
+	 *
+	 * @param row   row to add
+	 * @param score its score
+	 * @param limit maximum number of entries
+	 */
+	void offer(int row, double score, int limit) {
+		if (size < limit) {
+			push(row, score);
+		} else if (limit > 0 && before(scores[0], score)) {
+			pop();
+			push(row, score);
+		}
+	}
+
+	/**
+	 * Removes the top row.
+	 *
+	 * Time Complexity: O(log n)
+	 *
+	 * @return the removed row
+	 */
+	int pop() {
+		int top = rows[0];
+		int row = rows[--size];
+		double score = scores[size];
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && before(scores[child + 1], scores[child])) {
+				child++;
+			}
+			if (!before(scores[child], score)) {
+				break;
+			}
+			rows[i] = rows[child];
+			scores[i] = scores[child];
+			i = child;
+		}
+		rows[i] = row;
+		scores[i] = score;
+		return top;
+	}
+
+	/**
+	 * Returns the row with the highest score, preferring the lowest row on ties.
+	 *
+	 * Time Complexity: O(n)
+	 *
+	 * @return best row, or -1 if empty
+	 */
+	int bestRow() {
+		int best = -1;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < size; i++) {
+			if (scores[i] > bestScore || (scores[i] == bestScore && rows[i] < best)) {
+				bestScore = scores[i];
+				best = rows[i];
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Returns all rows ordered from highest to lowest score.
+	 *
+	 * Time Complexity: O(n log n)
+	 *
+	 * @return rows best first
+	 */
+	int[] rowsBestFirst() {
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+		int[] sorted = new int[size];
+		for (int i = 0; i < size; i++) {
+			sorted[i] = rows[order[i]];
+		}
+		return sorted;
+	}
+
+	/**
+	 * Returns the score of a row stored at a heap position.
+	 *
+	 * @param position heap position
+	 * @return score at that position
+	 */
+	double scoreAt(int position) {
+		return scores[position];
+	}
+
+	/**
+	 * Returns the row stored at a heap position.
+	 *
+	 * @param position heap position
+	 * @return row at that position
+	 */
+	int rowAt(int position) {
+		return rows[position];
+	}
+
+	/**
+	 * Compares two scores in heap order.
+	 *
+	 * @param a first score
+	 * @param b second score
+	 * @return true if a belongs above b
+	 */
+	private boolean before(double a, double b) {
+		return maxFirst ? a > b : a < b;
+	}
+}
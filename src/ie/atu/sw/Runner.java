@@ -1,6 +1,14 @@
 package ie.atu.sw;
 
+import java.io.File;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The Runner class serves as the main entry point for the text processing application.
@@ -17,6 +25,8 @@ import java.util.Scanner;
  * @version 1.0
  */
 public class Runner {
+	/** Number of sample queries used to measure HNSW recall */
+	private static final int RECALL_QUERIES = 1000;
 	
 	 /**
      * The main entry point of the application.
@@ -35,6 +45,24 @@ public class Runner {
      * @throws Exception If there are issues with file operations or text processing
      */
     public static void main(String[] args) throws Exception {
+        // --verify checks the checksum of binary snapshots, reading them in full
+        if (Arrays.asList(args).contains("--verify")) {
+            BinaryEmbeddings.setVerifyChecksums(true);
+            args = Arrays.stream(args).filter(arg -> !arg.equals("--verify")).toArray(String[]::new);
+        }
+        if (args.length > 0 && args[0].equals("--batch")) {
+            runBatch(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--serve")) {
+            runServer(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--loadtest")) {
+            runLoadTest(args);
+            return;
+        }
+
     	//File paths
         String embeddingsFile = "";
         String google1000File = "";
@@ -46,10 +74,6 @@ public class Runner {
         //Declaring scanner for user input
         Scanner scanner = new Scanner(System.in);
         
-        // Create objects
-        WordEmbeddings gloveEmbeddings = new GloVeEmbeddingsMap();
-        WordEmbeddings googleEmbeddings = new GoogleEmbeddingsMap(gloveEmbeddings);
-        TextProcessor textProcessor = new ConcurrentTextProcessor(gloveEmbeddings, googleEmbeddings);
         Menu menu = new Menu();
         
         
@@ -67,28 +91,69 @@ public class Runner {
         outputFile = scanner.nextLine();
         
 
-        // Load embeddings
-        gloveEmbeddings.load(embeddingsFile);
-        System.out.println("GloVe embeddings loaded successfully");
-
-        googleEmbeddings.load(google1000File);
+        // Load embeddings, detecting CSV or binary snapshot format. With --selective
+        // only the vectors of the input's words and the Google words are kept;
+        // otherwise the input is tokenized while GloVe loads
+        boolean selective = args.length > 0 && args[0].equals("--selective");
+        ProgressListener progress = new ConsoleProgressListener();
+        ConcurrentTextProcessor textProcessor;
+        if (selective) {
+            WordEmbeddings glove = WordEmbeddings.openSelective(embeddingsFile, inputFile, google1000File,
+                    progress);
+            GoogleEmbeddingsMap google = new GoogleEmbeddingsMap(glove);
+            google.load(google1000File, progress);
+            textProcessor = new ConcurrentTextProcessor(glove, google);
+        } else {
+            StartupPipeline startup = StartupPipeline.start(embeddingsFile, google1000File, inputFile, progress,
+                    System.out);
+            textProcessor = startup.await();
+            System.out.println("Embeddings ready after " + startup.getReadyMillis() + " ms");
+        }
+        textProcessor.setProgressListener(progress);
+        WordEmbeddings gloveEmbeddings = textProcessor.getSnapshot().glove();
+        System.out.println("GloVe embeddings loaded successfully (" + gloveEmbeddings.getSize() + " words, "
+                + gloveEmbeddings.getStats().getMemoryBytes() / 1024 + " KB)");
         System.out.println("Google 1000 words loaded successfully");
+
+        // Publish live metrics over JMX (view with JConsole or VisualVM)
+        registerMetrics(textProcessor);
         
+        // Reloads build a new snapshot in the background and swap it in
+        EmbeddingsReloader reloader = new EmbeddingsReloader(textProcessor, embeddingsFile, google1000File, progress);
+        if (selective) {
+            reloader.setSelectiveInput(inputFile);
+        }
+        TargetListWatcher watcher = null;
+
         //Loop menu items 
         while (option != -1) {
             menu.loadMenu();
             option = scanner.nextInt(); //Take in user input
             scanner.nextLine(); // Consume newline
+            // Embeddings in use; a reload may replace them between options
+            EmbeddingsSnapshot embeddings = textProcessor.getSnapshot();
             
             //If user enters 1, call processText and pass I/O
             if (option == 1) {
                 textProcessor.processText(inputFile, outputFile);
                 System.out.println("Word replacement completed. Check the output file.");
+                if (embeddings.search() instanceof QuantizedSimilaritySearch quantizedSearch) {
+                    System.out.println("Quantized search differed from exact on " + quantizedSearch.getMismatchCount()
+                            + " of " + quantizedSearch.getVerifiedCount() + " verified queries");
+                }
+                if (embeddings.search() instanceof PrunedSimilaritySearch prunedSearch) {
+                    System.out.printf("Pruned search touched %.1f of %d dimensions per candidate%n",
+                            prunedSearch.getAverageDimensions(), embeddings.google().getDimension());
+                }
+                if (textProcessor.isVocabularyFirst()) {
+                    System.out.println("Resolved " + textProcessor.getDistinctWordCount() + " distinct words for "
+                            + textProcessor.getTokenCount() + " tokens");
+                }
               //If user enters 2, call contains on user input word
             } else if (option == 2) {
                 System.out.println("Please enter the word you want to search for in embeddings:");
                 String searchWord = scanner.nextLine();
-                if (gloveEmbeddings.containsWord(searchWord)) {
+                if (embeddings.glove().containsWord(searchWord)) {
                     System.out.println(searchWord + " was found in embeddings");
                 } else {
                     System.out.println(searchWord + " was not found in embeddings");
@@ -99,7 +164,7 @@ public class Runner {
             	System.out.println("Please enter the word you want to search for in google 1000");
             	String searchWord = scanner.nextLine();
             	
-            	if(googleEmbeddings.containsWord(searchWord)) {
+            	if(embeddings.google().containsWord(searchWord)) {
             		System.out.println(searchWord+" was found in google-1000");
             	}
             	else {
@@ -108,42 +173,331 @@ public class Runner {
             	
             }
             else if(option==4) {
-                System.out.println("Google-1000 contains "+googleEmbeddings.getSize()+" embeddings");
+                System.out.println("Google-1000 contains "+embeddings.google().getSize()+" embeddings");
             }
             else if(option==5) {
-                System.out.println("GloVe Embeddings contains "+gloveEmbeddings.getSize()+" embeddings");
+                System.out.println("GloVe Embeddings contains "+embeddings.glove().getSize()+" embeddings");
+            }
+            //Switch between streaming and vocabulary-first processing
+            else if(option==6) {
+                textProcessor.setVocabularyFirst(!textProcessor.isVocabularyFirst());
+                System.out.println("Vocabulary-first mode " + (textProcessor.isVocabularyFirst() ? "enabled" : "disabled"));
+            }
+            //Load the replacement table sidecar, computing it on first use
+            else if(option==7) {
+                // A selective load covers only this input, so its table is not saved as a sidecar
+                GoogleEmbeddingsMap targets = embeddings.google();
+                ReplacementTable table = selective
+                        ? ReplacementTable.compute(embeddings.glove(), targets, progress)
+                        : ReplacementTable.loadOrCompute(embeddingsFile, embeddings.glove(), targets, progress);
+                if (textProcessor.swapSnapshot(embeddings, embeddings.withReplacementTable(table))) {
+                    if (embeddings.replacementTable() != null) {
+                        targets.removeTargetListener(embeddings.replacementTable());
+                    }
+                    targets.addTargetListener(table);
+                    System.out.println("Replacement table ready for " + table.getSize() + " words");
+                } else {
+                    System.out.println("Embeddings changed while the table was built, please try again");
+                }
+            }
+            //Save the loaded GloVe embeddings as a memory-mappable snapshot
+            else if(option==8) {
+                System.out.println("Please enter the path and name for the binary snapshot:");
+                String snapshotFile = scanner.nextLine();
+                BinaryEmbeddings.write(embeddings.glove(), snapshotFile);
+                System.out.println("Binary snapshot written to " + snapshotFile);
             }
+            //Choose the exact scan, the pruned exact scan, the int8 quantized search or the HNSW graph
+            else if(option==9) {
+                System.out.println("Please enter the search mode (exact, pruned, quantized, hnsw):");
+                String mode = scanner.nextLine().trim();
+                GoogleEmbeddingsMap targets = embeddings.google();
+                SimilaritySearch search;
+                if (mode.equals("quantized")) {
+                    QuantizedSimilaritySearch quantizedSearch = new QuantizedSimilaritySearch(targets, 64);
+                    search = quantizedSearch;
+                    System.out.println("Quantized search enabled (" + quantizedSearch.getCodeBytes() + " bytes of codes, "
+                            + quantizedSearch.getMemoryBytes() + " bytes with the shared re-scoring matrix)");
+                } else if (mode.equals("pruned")) {
+                    search = new PrunedSimilaritySearch(targets);
+                    System.out.println("Pruned exact search enabled");
+                } else if (mode.equals("hnsw")) {
+                    System.out.println("Please enter the path of the HNSW index file (built and saved if missing or stale):");
+                    String indexFile = scanner.nextLine();
+                    HnswSimilaritySearch hnsw = null;
+                    if (new File(indexFile).exists()) {
+                        try {
+                            hnsw = HnswSimilaritySearch.load(indexFile, targets);
+                        } catch (Exception e) {
+                            System.out.println(e.getMessage() + "; rebuilding the index");
+                        }
+                    }
+                    if (hnsw == null) {
+                        hnsw = HnswSimilaritySearch.build(targets, HnswSimilaritySearch.DEFAULT_M,
+                                HnswSimilaritySearch.DEFAULT_EF_CONSTRUCTION, progress);
+                        hnsw.save(indexFile);
+                    }
+                    search = hnsw;
+                    printRecall(hnsw, targets, embeddings.glove());
+                } else {
+                    search = targets;
+                    System.out.println("Exact search enabled");
+                }
+                if (textProcessor.swapSnapshot(embeddings, embeddings.withSearch(search))) {
+                    if (embeddings.search() instanceof TargetListener previous) {
+                        targets.removeTargetListener(previous);
+                    }
+                    if (search instanceof TargetListener listener) {
+                        targets.addTargetListener(listener);
+                    }
+                } else {
+                    System.out.println("Embeddings changed while the search was built, please try again");
+                }
+            }
+            //List the closest words to a word across the whole GloVe vocabulary
+            else if(option==10) {
+                System.out.println("Please enter the word to find neighbours for:");
+                String searchWord = scanner.nextLine();
+                System.out.println("Please enter the number of neighbours:");
+                int k = scanner.nextInt();
+                scanner.nextLine();
+                if (k <= 0) {
+                    System.out.println("[ERROR] The number of neighbours must be at least 1");
+                } else {
+                    List<ScoredWord> neighbours = embeddings.glove().topK(searchWord, k);
+                    if (neighbours.isEmpty()) {
+                        System.out.println(searchWord + " was not found in embeddings");
+                    }
+                    for (ScoredWord neighbour : neighbours) {
+                        System.out.printf("%-20s %.4f%n", neighbour.word(), neighbour.similarity());
+                    }
+                }
+            }
+            //Add or remove Google-1000 words without reloading
+            else if(option==11) {
+                System.out.println("Please enter words to add (+word) or remove (-word), separated by spaces:");
+                List<String> additions = new ArrayList<>();
+                List<String> removals = new ArrayList<>();
+                for (String change : scanner.nextLine().trim().split("\\s+")) {
+                    if (change.startsWith("-")) {
+                        removals.add(change.substring(1));
+                    } else if (!change.isEmpty()) {
+                        additions.add(change.startsWith("+") ? change.substring(1) : change);
+                    }
+                }
+                int changes = embeddings.google().update(additions, removals);
+                System.out.println("Applied " + changes + " changes, Google-1000 now contains "
+                        + embeddings.google().getSize() + " words");
+            }
+            //Apply edits to the google-1000 file as it is saved
+            else if(option==12) {
+                if (watcher == null) {
+                    watcher = new TargetListWatcher(() -> textProcessor.getSnapshot().google(), google1000File,
+                            System.out);
+                    watcher.start();
+                    System.out.println("Watching " + google1000File + " for changes");
+                } else {
+                    watcher.close();
+                    watcher = null;
+                    System.out.println("Stopped watching " + google1000File);
+                }
+            }
+            //Choose how CPU-bound work is spread over threads
+            else if(option==13) {
+                System.out.println("Please enter the execution strategy (forkjoin, fixed, virtual):");
+                try {
+                    // Create the new strategy before closing the old one, so a bad name keeps the current one
+                    ExecutionStrategy strategy = ExecutionStrategies.named(scanner.nextLine().trim(),
+                            Runtime.getRuntime().availableProcessors());
+                    textProcessor.getExecutionStrategy().close();
+                    textProcessor.setExecutionStrategy(strategy);
+                    System.out.println("Using the " + strategy.name() + " execution strategy");
+                } catch (Exception e) {
+                    System.out.println(e.getMessage() + "; still using the "
+                            + textProcessor.getExecutionStrategy().name() + " execution strategy");
+                }
+            }
+            //Reload the embeddings in the background while processing continues
+            else if(option==14) {
+                System.out.println("Please enter the glove embeddings file to reload (blank for " + embeddingsFile + "):");
+                String glovePath = scanner.nextLine().trim();
+                System.out.println("Please enter the google1000 file to reload (blank for " + google1000File + "):");
+                String googlePath = scanner.nextLine().trim();
+                long start = System.nanoTime();
+                reloader.reloadAsync(glovePath.isEmpty() ? embeddingsFile : glovePath,
+                        googlePath.isEmpty() ? google1000File : googlePath).whenComplete((snapshot, error) -> {
+                            if (error != null) {
+                                System.out.println("[ERROR] Reload failed: " + error.getMessage());
+                            } else {
+                                System.out.printf("Embeddings version %d in use (%d words), built in %.1f ms%n",
+                                        snapshot.version(), snapshot.glove().getSize(),
+                                        (System.nanoTime() - start) / 1e6);
+                            }
+                        });
+                System.out.println("Reloading in the background, processing continues on version "
+                        + embeddings.version());
+            }
+        }
+        if (watcher != null) {
+            watcher.close();
         }
+        textProcessor.getExecutionStrategy().close();
         System.out.println("Thanks for using my program!!");
     }
     
     /**
-     * Displays a progress bar in the console to indicate the progress of an operation.
-     * The progress bar uses Unicode block characters to create a visual representation
-     * of the completion percentage.
+     * Benchmarks an HNSW graph against the exact scan on a sample of GloVe words
+     * and prints recall@1 and the time per query of each.
      * 
-     * Time Complexity: O(n) where n is the size of the progress bar (fixed at 50)
+     * Time Complexity: O(q * n * d) for the exact answers
      * 
-     * @param index The current progress index
-     * @param total The total number of steps to complete
+     * @param hnsw the graph to measure
+     * @param googleEmbeddings the targets the graph was built over
+     * @param gloveEmbeddings source of query vectors
      */
     
-    public static void printProgress(int index, int total) {
-        if (index > total) return;
-        int size = 50;
-        char done = '█';
-        char todo = '░';
-        int complete = (100 * index) / total;
-        int completeLen = size * complete / 100;
+    private static void printRecall(HnswSimilaritySearch hnsw, GoogleEmbeddingsMap googleEmbeddings,
+            WordEmbeddings gloveEmbeddings) {
+        Random random = new Random(7);
+        double[][] queries = new double[Math.min(RECALL_QUERIES, gloveEmbeddings.getSize())][];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = gloveEmbeddings.getEmbedding(gloveEmbeddings.wordAt(random.nextInt(gloveEmbeddings.getSize())));
+        }
+
+        long start = System.nanoTime();
+        for (double[] query : queries) {
+            hnsw.findMostSimilarRow(query);
+        }
+        long approximate = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (double[] query : queries) {
+            googleEmbeddings.findMostSimilarRow(query);
+        }
+        long exact = System.nanoTime() - start;
+
+        System.out.printf("HNSW recall@1 %.3f, %.1f us/query (exact scan %.1f us/query)%n", hnsw.measureRecall(queries),
+                approximate / 1000.0 / queries.length, exact / 1000.0 / queries.length);
+    }
+
+    /**
+     * Publishes the metrics of the loaded embeddings and the text processor
+     * over JMX. Reloads register the beans of the embeddings they swap in.
+     * 
+     * @param textProcessor processor holding the loaded embeddings
+     * @throws Exception if a bean cannot be registered
+     */
+
+    private static void registerMetrics(ConcurrentTextProcessor textProcessor) throws Exception {
+        EmbeddingsSnapshot embeddings = textProcessor.getSnapshot();
+        Metrics.register("Embeddings", "GloVe", embeddings.glove().getStats());
+        Metrics.register("Embeddings", "Google1000", embeddings.google().getStats());
+        Metrics.register("Processor", "Text", textProcessor.getStats());
+    }
+
+    /**
+     * Runs non-interactive batch mode:
+     * --batch embeddings google1000 input-dir-or-glob output-dir [parallelism]
+     * Embeddings are loaded once, every matching file is simplified on a shared
+     * worker pool and a per-file and aggregate throughput report is printed.
+     * 
+     * Time Complexity: O(n / p) where n is the total input size and p the parallelism
+     * 
+     * @param args command line arguments, starting with --batch
+     * @throws Exception if the embeddings cannot be loaded or no files match
+     */
+
+    private static void runBatch(String[] args) throws Exception {
+        if (args.length < 5) {
+            System.out.println("Usage: --batch <embeddings> <google1000> <input dir or glob> <output dir> [parallelism]");
+            return;
+        }
+        int parallelism = args.length > 5 ? Integer.parseInt(args[5])
+                : Runtime.getRuntime().availableProcessors();
+
+        ProgressListener progress = new ConsoleProgressListener();
+        ConcurrentTextProcessor textProcessor = StartupPipeline.start(args[1], args[2], null, progress, System.out)
+                .await();
+        registerMetrics(textProcessor);
+
+        BatchSimplifier batch = new BatchSimplifier(textProcessor, parallelism, progress);
+        long tokens = textProcessor.getStats().getTokens();
+        long start = System.nanoTime();
+        List<BatchSimplifier.FileResult> results = batch.run(args[3], Path.of(args[4]));
+        long wall = System.nanoTime() - start;
+        BatchSimplifier.printReport(results, wall, textProcessor.getStats().getTokens() - tokens, System.out);
+    }
+
+    /**
+     * Runs server mode:
+     * --serve embeddings google1000 [port] [max-batch] [max-wait-ms] [max-queued] [--watch]
+     * The port is bound straight away and answers 503 while the embeddings
+     * load; they are then kept resident while the server answers requests,
+     * until the process is stopped. POST /reload reloads them from
+     * the same files without stopping the server. With --watch, edits saved to
+     * the google1000 file are applied to the running server.
+     * 
+     * @param args command line arguments, starting with --serve
+     * @throws Exception if the embeddings cannot be loaded or the port bound
+     */
+
+    private static void runServer(String[] args) throws Exception {
+        boolean watch = Arrays.asList(args).contains("--watch");
+        args = Arrays.stream(args).filter(arg -> !arg.equals("--watch")).toArray(String[]::new);
+        if (args.length < 3) {
+            System.out.println("Usage: --serve <embeddings> <google1000> [port] [max batch] [max wait ms] [max queued] [--watch]");
+            return;
+        }
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : 8080;
+        int maxBatch = args.length > 4 ? Integer.parseInt(args[4]) : 64;
+        long maxWait = args.length > 5 ? Long.parseLong(args[5]) : 2;
+        int maxQueued = args.length > 6 ? Integer.parseInt(args[6]) : 1024;
+
+        ProgressListener progress = new ConsoleProgressListener();
+        // Bind the port while loading; requests get 503 until setup below is done
+        StartupPipeline startup = StartupPipeline.start(args[1], args[2], null, progress, System.out);
+        CompletableFuture<ConcurrentTextProcessor> serving = new CompletableFuture<>();
+        SimplificationServer server = new SimplificationServer(serving, port, maxBatch, maxWait, maxQueued);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.start();
+        System.out.println("Listening on port " + server.getPort() + ", loading embeddings");
 
-        StringBuilder sb = new StringBuilder();
-        sb.append("[");
-        for (int i = 0; i < size; i++) {
-            sb.append((i < completeLen) ? done : todo);
+        ConcurrentTextProcessor textProcessor;
+        try {
+            textProcessor = startup.await();
+        } catch (Exception e) {
+            server.close();
+            throw e;
+        }
+        registerMetrics(textProcessor);
+        server.enableReload(new EmbeddingsReloader(textProcessor, args[1], args[2], progress), System.out);
+        serving.complete(textProcessor);
+        if (watch) {
+            TargetListWatcher watcher = new TargetListWatcher(() -> textProcessor.getSnapshot().google(), args[2],
+                    System.out);
+            watcher.start();
+            System.out.println("Watching " + args[2] + " for changes");
         }
+        System.out.println("Serving POST http://localhost:" + server.getPort() + "/simplify (Ctrl+C to stop)");
+    }
 
-        System.out.print("\r" + sb + "] " + complete + "%");
+    /**
+     * Runs the load-test client:
+     * --loadtest url input [concurrency] [requests] [lines-per-request]
+     * 
+     * @param args command line arguments, starting with --loadtest
+     * @throws Exception if the input cannot be read
+     */
+
+    private static void runLoadTest(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.out.println("Usage: --loadtest <url> <input> [concurrency] [requests] [lines per request]");
+            return;
+        }
+        int concurrency = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+        int requests = args.length > 4 ? Integer.parseInt(args[4]) : 1000;
+        int linesPerRequest = args.length > 5 ? Integer.parseInt(args[5]) : 10;
 
-        if (index == total) System.out.print("\n");
+        LoadTestClient client = new LoadTestClient(URI.create(args[1]), args[2], linesPerRequest);
+        client.run(concurrency, requests, System.out);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,94 @@
+package ie.atu.sw;
+
+/**
+ * Portable SimilarityKernel written as plain loops. Used wherever the vector
+ * API module is not available.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public class ScalarSimilarityKernel implements SimilarityKernel {
+
+	/**
+	 * Computes the dot product of a vector with a matrix row.
+	 * Time Complexity: O(n)
+	 *
+	 * @param vector query vector
+	 * @param matrix row-major matrix
+	 * @param offset index of the first component of the row
+	 * @param length number of components
+	 * @return dot product
+	 */
+	@Override
+	public double dot(double[] vector, double[] matrix, int offset, int length) {
+		double dotProduct = 0.0;
+		for (int i = 0; i < length; i++) {
+			dotProduct += vector[i] * matrix[offset + i];
+		}
+		return dotProduct;
+	}
+
+	/**
+	 * Computes the dot products of four vectors with two matrix rows, keeping
+	 * the eight sums in registers.
+	 * Time Complexity: O(n)
+	 *
+	 * @param v0      first vector
+	 * @param v1      second vector
+	 * @param v2      third vector
+	 * @param v3      fourth vector
+	 * @param matrix  row-major matrix
+	 * @param offset0 index of the first component of the first row
+	 * @param offset1 index of the first component of the second row
+	 * @param length  number of components
+	 * @param scores  receives the eight products
+	 */
+	@Override
+	public void dot4x2(double[] v0, double[] v1, double[] v2, double[] v3, double[] matrix, int offset0,
+			int offset1, int length, double[] scores) {
+		double s00 = 0, s01 = 0, s10 = 0, s11 = 0, s20 = 0, s21 = 0, s30 = 0, s31 = 0;
+		for (int i = 0; i < length; i++) {
+			double b0 = matrix[offset0 + i];
+			double b1 = matrix[offset1 + i];
+			s00 += v0[i] * b0;
+			s01 += v0[i] * b1;
+			s10 += v1[i] * b0;
+			s11 += v1[i] * b1;
+			s20 += v2[i] * b0;
+			s21 += v2[i] * b1;
+			s30 += v3[i] * b0;
+			s31 += v3[i] * b1;
+		}
+		scores[0] = s00;
+		scores[1] = s01;
+		scores[2] = s10;
+		scores[3] = s11;
+		scores[4] = s20;
+		scores[5] = s21;
+		scores[6] = s30;
+		scores[7] = s31;
+	}
+
+	/**
+	 * Computes cosine similarity with the dot product and norms fused into one
+	 * loop.
+	 * Time Complexity: O(n)
+	 *
+	 * @param v1 first vector
+	 * @param v2 second vector
+	 * @return similarity score
+	 */
+	@Override
+	public double cosine(double[] v1, double[] v2) {
+		double dotProduct = 0.0;
+		double norm1 = 0.0;
+		double norm2 = 0.0;
+		for (int i = 0; i < v1.length; i++) {
+			dotProduct += v1[i] * v2[i];
+			norm1 += v1[i] * v1[i];
+			norm2 += v2[i] * v2[i];
+		}
+		return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
+	}
+}
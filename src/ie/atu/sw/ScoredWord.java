@@ -0,0 +1,14 @@
+package ie.atu.sw;
+
+/**
+ * A word with its similarity to a query.
+ *
+ * @param word       the word
+ * @param similarity cosine similarity to the query
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public record ScoredWord(String word, double similarity) {
+}
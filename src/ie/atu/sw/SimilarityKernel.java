@@ -0,0 +1,57 @@
+package ie.atu.sw;
+
+/**
+ * Interface for the inner loops of vector similarity. Implementations trade
+ * portability for speed, so callers should obtain one through
+ * SimilarityKernels.preferred() rather than constructing it directly.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public interface SimilarityKernel {
+
+	/**
+	 * Computes the dot product of a vector with a row of a row-major matrix.
+	 *
+	 * @param vector  query vector
+	 * @param matrix  row-major matrix
+	 * @param offset  index of the first component of the row in matrix
+	 * @param length  number of components
+	 * @return dot product
+	 */
+
+	double dot(double[] vector, double[] matrix, int offset, int length);
+
+	/**
+	 * Computes the dot products of four vectors with two rows of a row-major
+	 * matrix in one pass, so each component loaded is used four or eight times.
+	 * Each product is summed exactly as dot would sum it, so a blocked scan
+	 * ranks rows the same way as a scan calling dot per row.
+	 *
+	 * @param v0      first vector
+	 * @param v1      second vector
+	 * @param v2      third vector
+	 * @param v3      fourth vector
+	 * @param matrix  row-major matrix
+	 * @param offset0 index of the first component of the first row
+	 * @param offset1 index of the first component of the second row
+	 * @param length  number of components
+	 * @param scores  receives the eight products, with vector i against row j
+	 *                at 2 * i + j
+	 */
+
+	void dot4x2(double[] v0, double[] v1, double[] v2, double[] v3, double[] matrix, int offset0, int offset1,
+			int length, double[] scores);
+
+	/**
+	 * Computes the cosine similarity of two vectors, accumulating the dot product
+	 * and both norms in a single pass.
+	 *
+	 * @param v1 first vector
+	 * @param v2 second vector
+	 * @return similarity score
+	 */
+
+	double cosine(double[] v1, double[] v2);
+}
@@ -0,0 +1,82 @@
+package ie.atu.sw;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Chooses the SimilarityKernel for this JVM. The vector API kernel is used
+ * when the jdk.incubator.vector module is present and agrees with the scalar
+ * kernel on a probe; otherwise the scalar kernel is used.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public final class SimilarityKernels {
+	/** Name of the vector API module */
+	private static final String VECTOR_MODULE = "jdk.incubator.vector";
+	/** Largest difference from the scalar kernel accepted on the probe and in tests */
+	static final double TOLERANCE = 1e-9;
+	/** Kernel chosen on first use */
+	private static final SimilarityKernel PREFERRED = choose();
+
+	private SimilarityKernels() {
+	}
+
+	/**
+	 * Returns the fastest kernel available in this JVM.
+	 *
+	 * @return preferred kernel
+	 */
+	public static SimilarityKernel preferred() {
+		return PREFERRED;
+	}
+
+	/**
+	 * Loads the vector API kernel reflectively, so this class still links when the
+	 * module is missing, and checks it against the scalar kernel.
+	 *
+	 * @return the vector kernel if usable, otherwise the scalar kernel
+	 */
+	private static SimilarityKernel choose() {
+		SimilarityKernel scalar = new ScalarSimilarityKernel();
+		if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+			return scalar;
+		}
+		try {
+			SimilarityKernel vector = (SimilarityKernel) Class.forName("ie.atu.sw.VectorSimilarityKernel")
+					.getDeclaredConstructor().newInstance();
+			return agrees(vector, scalar) ? vector : scalar;
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return scalar;
+		}
+	}
+
+	/**
+	 * Compares two kernels on random vectors of awkward lengths, so both the lane
+	 * loop and the scalar tail are exercised.
+	 *
+	 * @param candidate kernel to check
+	 * @param reference kernel to check against
+	 * @return true if every result is within TOLERANCE
+	 */
+	private static boolean agrees(SimilarityKernel candidate, SimilarityKernel reference) {
+		Random random = new Random(42);
+		for (int length : new int[] { 1, 7, 50, 301 }) {
+			double[] a = new double[length];
+			double[] b = new double[length * 2];
+			for (int i = 0; i < a.length; i++) {
+				a[i] = random.nextGaussian();
+			}
+			for (int i = 0; i < b.length; i++) {
+				b[i] = random.nextGaussian();
+			}
+			double[] row = Arrays.copyOfRange(b, length, length * 2);
+			if (Math.abs(candidate.dot(a, b, length, length) - reference.dot(a, b, length, length)) > TOLERANCE
+					|| Math.abs(candidate.cosine(a, row) - reference.cosine(a, row)) > TOLERANCE) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
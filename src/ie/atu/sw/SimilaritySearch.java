@@ -0,0 +1,39 @@
+package ie.atu.sw;
+
+/**
+ * Interface for nearest-neighbour search over the Google target vectors.
+ * Implementations range from the exact scan in GoogleEmbeddingsMap to
+ * compressed or approximate indexes built over the same targets.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+@FunctionalInterface
+public interface SimilaritySearch {
+
+	/**
+	 * Finds the target row most similar to a vector.
+	 *
+	 * @param vector vector to compare
+	 * @return row of the most similar target word, or -1 if there are no targets
+	 */
+
+	int findMostSimilarRow(double[] vector);
+
+	/**
+	 * Finds the most similar target row for each of a batch of vectors. The
+	 * default searches for each vector in turn; searches that can share work
+	 * across the batch override it.
+	 *
+	 * @param vectors vectors to compare
+	 * @param rows    receives the row for each vector, or -1 if there are no
+	 *                targets
+	 */
+
+	default void findMostSimilarRows(double[][] vectors, int[] rows) {
+		for (int i = 0; i < vectors.length; i++) {
+			rows[i] = findMostSimilarRow(vectors[i]);
+		}
+	}
+}
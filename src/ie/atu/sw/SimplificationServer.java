@@ -0,0 +1,248 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP server keeping the embeddings resident between jobs.
+ *
+ * POST /simplify with a UTF-8 text body returns the simplified text, with
+ * whitespace and punctuation preserved. Each exchange is handled on its own
+ * virtual thread, and the words of concurrent requests are resolved together
+ * by a MicroBatcher.
+ * Requests beyond the batcher's queue limit, or still queued when the server
+ * closes, get 503 Service Unavailable, bodies over MAX_BODY_BYTES get 413 and
+ * any other failure gets 500. The server can start before the embeddings have
+ * loaded: until then /simplify and GET /health answer 503, and GET /health
+ * returns 200 once requests are being answered. Once reloading is enabled, POST /reload rebuilds the
+ * embeddings in the background and returns 202 straight away; requests keep
+ * being answered from the old snapshot until the new one is swapped in.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public class SimplificationServer implements AutoCloseable {
+	/** Largest accepted request body */
+	private static final int MAX_BODY_BYTES = 1 << 20;
+	/** Seconds a rejected client is asked to wait before retrying */
+	private static final String RETRY_AFTER_SECONDS = "1";
+
+	/** Processor rendering each request, once loaded */
+	private final CompletableFuture<ConcurrentTextProcessor> processor;
+	/** Virtual threads handling exchanges and resolving batches */
+	private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+	/** Batcher resolving the words of concurrent requests, once loaded */
+	private final CompletableFuture<MicroBatcher> batcher;
+	/** Underlying HTTP server */
+	private final HttpServer server;
+
+	/**
+	 * Creates a server bound to the loopback interface. The server does not
+	 * accept requests until start is called.
+	 *
+	 * @param processor     processor with embeddings loaded
+	 * @param port          port to listen on, or 0 for any free port
+	 * @param maxBatchSize  most requests resolved in one similarity pass
+	 * @param maxWaitMillis longest time a request waits for others to join
+	 * @param maxQueued     most requests waiting before new ones get 503
+	 * @throws IOException if the port cannot be bound
+	 */
+	public SimplificationServer(ConcurrentTextProcessor processor, int port, int maxBatchSize, long maxWaitMillis,
+			int maxQueued) throws IOException {
+		this(CompletableFuture.completedFuture(processor), port, maxBatchSize, maxWaitMillis, maxQueued);
+	}
+
+	/**
+	 * Creates a server bound to the loopback interface for a processor that is
+	 * still loading, such as StartupPipeline.ready. Once started, the server
+	 * answers 503 until the processor is available.
+	 *
+	 * @param processor     future completing with the processor
+	 * @param port          port to listen on, or 0 for any free port
+	 * @param maxBatchSize  most requests resolved in one similarity pass
+	 * @param maxWaitMillis longest time a request waits for others to join
+	 * @param maxQueued     most requests waiting before new ones get 503
+	 * @throws IOException if the port cannot be bound
+	 */
+	public SimplificationServer(CompletableFuture<ConcurrentTextProcessor> processor, int port, int maxBatchSize,
+			long maxWaitMillis, int maxQueued) throws IOException {
+		this.processor = processor;
+		this.batcher = processor.thenApply(ready -> new MicroBatcher(ready, workers, maxBatchSize,
+				TimeUnit.MILLISECONDS.toNanos(maxWaitMillis), maxQueued));
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		this.server.setExecutor(workers);
+		this.server.createContext("/simplify", this::handleSimplify);
+		this.server.createContext("/health", exchange -> {
+			if (loadedBatcher() == null) {
+				respond(exchange, 503, "loading\n");
+			} else {
+				respond(exchange, 200, "ok\n");
+			}
+		});
+	}
+
+	/**
+	 * Enables POST /reload, which reloads the embeddings from the reloader's
+	 * current files. Call once the processor has loaded.
+	 *
+	 * @param reloader reloader replacing the processor's snapshot
+	 * @param log      stream receiving a line when each reload completes or
+	 *                 fails
+	 */
+	public void enableReload(EmbeddingsReloader reloader, PrintStream log) {
+		server.createContext("/reload", exchange -> {
+			if (!exchange.getRequestMethod().equals("POST")) {
+				respond(exchange, 405, "[ERROR] Use POST\n");
+				return;
+			}
+			long version = processor.join().getSnapshot().version();
+			long start = System.nanoTime();
+			reloader.reloadAsync().whenComplete((snapshot, error) -> {
+				if (error != null) {
+					log.println("[ERROR] Reload failed: " + error.getMessage());
+				} else {
+					log.printf("Embeddings version %d in use, built in %.1f ms%n", snapshot.version(),
+							(System.nanoTime() - start) / 1e6);
+				}
+			});
+			respond(exchange, 202, "Reloading, serving version " + version + "\n");
+		});
+	}
+
+	/**
+	 * Starts accepting requests.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Returns the port the server is listening on.
+	 *
+	 * @return bound port
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Returns the average number of requests resolved per similarity pass.
+	 *
+	 * @return mean batch size, or 0 before the first request
+	 */
+	public double getMeanBatchSize() {
+		MicroBatcher loaded = loadedBatcher();
+		long batches = loaded == null ? 0 : loaded.getBatches();
+		return batches == 0 ? 0 : (double) loaded.getRequests() / batches;
+	}
+
+	/**
+	 * Stops accepting requests, waits briefly for exchanges in progress and
+	 * stops the batcher and the workers.
+	 */
+	@Override
+	public void close() {
+		server.stop(1);
+		batcher.thenAccept(MicroBatcher::close);
+		workers.shutdown();
+	}
+
+	/**
+	 * Returns the batcher if the processor has loaded.
+	 *
+	 * @return the batcher, or null while loading or if loading failed
+	 */
+	private MicroBatcher loadedBatcher() {
+		return batcher.isDone() && !batcher.isCompletedExceptionally() ? batcher.join() : null;
+	}
+
+	/**
+	 * Handles POST /simplify.
+	 * Time Complexity: O(n) in the body size, plus the shared similarity pass
+	 *
+	 * @param exchange HTTP exchange
+	 * @throws IOException if the response cannot be written
+	 */
+	private void handleSimplify(HttpExchange exchange) throws IOException {
+		if (!exchange.getRequestMethod().equals("POST")) {
+			respond(exchange, 405, "[ERROR] Use POST\n");
+			return;
+		}
+		MicroBatcher loaded = loadedBatcher();
+		if (loaded == null) {
+			exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+			respond(exchange, 503, "[ERROR] Embeddings still loading\n");
+			return;
+		}
+		byte[] body;
+		try (InputStream in = exchange.getRequestBody()) {
+			body = in.readNBytes(MAX_BODY_BYTES + 1);
+		}
+		if (body.length > MAX_BODY_BYTES) {
+			respond(exchange, 413, "[ERROR] Body larger than " + MAX_BODY_BYTES + " bytes\n");
+			return;
+		}
+
+		ByteBuffer text = ByteBuffer.wrap(body);
+		Set<String> words = ConcurrentTextProcessor.distinctWords(text, 0, body.length);
+
+		try {
+			Map<String, String> replacements = loaded.submit(words).get();
+			respond(exchange, 200, processor.join().processRange(text, 0, body.length, replacements::get));
+		} catch (RejectedExecutionException e) {
+			exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+			respond(exchange, 503, e.getMessage() + "\n");
+		} catch (CancellationException e) {
+			respond(exchange, 503, "[ERROR] Server shutting down\n");
+		} catch (InterruptedException | ExecutionException | RuntimeException e) {
+			respond(exchange, 500, "[ERROR] " + e.getMessage() + "\n");
+		}
+	}
+
+	/**
+	 * Sends a plain text response and closes the exchange.
+	 *
+	 * @param exchange HTTP exchange
+	 * @param status   status code
+	 * @param text     response body
+	 * @throws IOException if the response cannot be written
+	 */
+	private static void respond(HttpExchange exchange, int status, String text) throws IOException {
+		respond(exchange, status, text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Sends a UTF-8 plain text response and closes the exchange.
+	 *
+	 * @param exchange HTTP exchange
+	 * @param status   status code
+	 * @param bytes    response body
+	 * @throws IOException if the response cannot be written
+	 */
+	private static void respond(HttpExchange exchange, int status, byte[] bytes) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
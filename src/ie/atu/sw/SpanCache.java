@@ -0,0 +1,183 @@
+package ie.atu.sw;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Open-addressing table from normalized token bytes to how the token is
+ * rewritten. Tokens are probed straight from their span in the input buffer,
+ * so a token seen before costs one hash and one in-place comparison and
+ * allocates nothing; bytes are only copied the first time a word is seen.
+ *
+ * Not thread-safe: each worker uses its own cache for the range it rewrites.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+final class SpanCache {
+	/** Token found directly in Google-1000 */
+	static final byte DIRECT_HIT = 0;
+	/** Token found in neither embedding set */
+	static final byte OUT_OF_VOCABULARY = 1;
+	/** Token replaced by a similar word */
+	static final byte REPLACED = 2;
+
+	/** Normalized bytes per slot, null where unused. Length is a power of two */
+	private byte[][] keys = new byte[256][];
+	/** Replacement bytes per slot, null to keep the original token */
+	private byte[][] values = new byte[256][];
+	/** Outcome per slot */
+	private byte[] kinds = new byte[256];
+	/** Number of used slots */
+	private int size;
+
+	/**
+	 * Finds the slot of a token, or the empty slot where it would be added.
+	 * Time Complexity: O(k) average case where k is the token length
+	 *
+	 * @param text  buffer holding the token
+	 * @param start offset of the token
+	 * @param end   offset just after the token
+	 * @param hash  SpanTokenizer.hash of the token
+	 * @return slot position
+	 */
+	int find(ByteBuffer text, int start, int end, int hash) {
+		int mask = keys.length - 1;
+		int i = mix(hash) & mask;
+		while (keys[i] != null && !SpanTokenizer.matches(text, start, end, keys[i])) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	/**
+	 * Checks whether a slot holds a token.
+	 *
+	 * @param slot slot from find
+	 * @return true if the token was added before
+	 */
+	boolean contains(int slot) {
+		return keys[slot] != null;
+	}
+
+	/**
+	 * Adds a token at the empty slot returned by find. No other call may come
+	 * between the two.
+	 *
+	 * @param slot       empty slot from find
+	 * @param normalized normalized token bytes
+	 * @param value      replacement bytes, or null to keep the original token
+	 * @param kind       outcome of the token
+	 */
+	void put(int slot, byte[] normalized, byte[] value, byte kind) {
+		keys[slot] = normalized;
+		values[slot] = value;
+		kinds[slot] = kind;
+		if (++size * 2 > keys.length) {
+			rehash(keys.length * 2);
+		}
+	}
+
+	/**
+	 * Adds a token, if absent, with no replacement.
+	 * Time Complexity: O(k) average case where k is the token length
+	 *
+	 * @param text  buffer holding the token
+	 * @param start offset of the token
+	 * @param end   offset just after the token
+	 */
+	void add(ByteBuffer text, int start, int end) {
+		int slot = find(text, start, end, SpanTokenizer.hash(text, start, end));
+		if (!contains(slot)) {
+			put(slot, SpanTokenizer.normalize(text, start, end), null, DIRECT_HIT);
+		}
+	}
+
+	/**
+	 * Adds a word, if absent, with no replacement.
+	 *
+	 * @param word word to add
+	 */
+	void add(String word) {
+		byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+		add(ByteBuffer.wrap(bytes), 0, bytes.length);
+	}
+
+	/**
+	 * Returns the number of tokens added.
+	 *
+	 * @return token count
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the replacement at a slot.
+	 *
+	 * @param slot used slot
+	 * @return replacement bytes, or null to keep the original token
+	 */
+	byte[] valueAt(int slot) {
+		return values[slot];
+	}
+
+	/**
+	 * Returns the outcome at a slot.
+	 *
+	 * @param slot used slot
+	 * @return DIRECT_HIT, OUT_OF_VOCABULARY or REPLACED
+	 */
+	byte kindAt(int slot) {
+		return kinds[slot];
+	}
+
+	/**
+	 * Returns the normalized bytes of every token added, in no particular order.
+	 *
+	 * @return normalized keys
+	 */
+	byte[][] keys() {
+		return Arrays.stream(keys).filter(key -> key != null).toArray(byte[][]::new);
+	}
+
+	/**
+	 * Rebuilds the table at a new capacity.
+	 *
+	 * @param capacity new slot count, a power of two
+	 */
+	private void rehash(int capacity) {
+		byte[][] oldKeys = keys;
+		byte[][] oldValues = values;
+		byte[] oldKinds = kinds;
+		keys = new byte[capacity][];
+		values = new byte[capacity][];
+		kinds = new byte[capacity];
+		int mask = capacity - 1;
+		for (int slot = 0; slot < oldKeys.length; slot++) {
+			if (oldKeys[slot] != null) {
+				byte[] key = oldKeys[slot];
+				int i = mix(SpanTokenizer.hash(ByteBuffer.wrap(key), 0, key.length)) & mask;
+				while (keys[i] != null) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[slot];
+				values[i] = oldValues[slot];
+				kinds[i] = oldKinds[slot];
+			}
+		}
+	}
+
+	/**
+	 * Spreads hash bits for linear probing over a power-of-two table.
+	 *
+	 * @param h hash code
+	 * @return mixed hash
+	 */
+	private static int mix(int h) {
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
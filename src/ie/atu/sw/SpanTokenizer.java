@@ -0,0 +1,275 @@
+package ie.atu.sw;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Tokenizer working directly on UTF-8 bytes, usually a memory-mapped file.
+ * Tokens are reported as spans (start and end offsets) into the buffer, and
+ * everything between tokens (whitespace, line breaks and punctuation) is left
+ * in place so that output can be rebuilt with the original separators.
+ *
+ * A token is a run of ASCII letters and digits and non-ASCII characters, which
+ * may contain an apostrophe or hyphen between two such characters, as in
+ * "don't" or "well-known". Common non-ASCII punctuation (curly quotes, en and
+ * em dashes, the ellipsis and the no-break space) separates tokens like its
+ * ASCII counterpart, and a right single quote inside a token is read as an
+ * apostrophe, so "don’t" is the same word as "don't". The normalized form
+ * of a token is its ASCII lowercase with such quotes replaced by apostrophes,
+ * which is hashed and compared in place so lookups need no String per token.
+ *
+ * Only absolute buffer reads are used, so one buffer may be scanned by many
+ * threads at once.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+final class SpanTokenizer {
+
+	private SpanTokenizer() {
+	}
+
+	/**
+	 * Finds the start of the next token.
+	 * Time Complexity: O(k) where k is the number of separator bytes skipped
+	 *
+	 * @param text buffer to scan
+	 * @param from offset to start from
+	 * @param to   end of the scanned range
+	 * @return offset of the next token, or to if there is none
+	 */
+	static int tokenStart(ByteBuffer text, int from, int to) {
+		int i = from;
+		while (i < to && !isWordStart(text, i, to)) {
+			i += Math.max(1, separatorLength(text, i, to));
+		}
+		return i;
+	}
+
+	/**
+	 * Finds the end of the token starting at an offset.
+	 * Time Complexity: O(k) where k is the token length
+	 *
+	 * @param text  buffer to scan
+	 * @param start offset of the token
+	 * @param to    end of the scanned range
+	 * @return offset just after the token
+	 */
+	static int tokenEnd(ByteBuffer text, int start, int to) {
+		int i = start + 1;
+		while (i < to) {
+			byte b = text.get(i);
+			if (isWordStart(text, i, to)) {
+				i++;
+			} else if ((b == '\'' || b == '-') && isWordStart(text, i + 1, to)) {
+				i++;
+			} else if (isRightQuote(text, i, to) && isWordStart(text, i + 3, to)) {
+				i += 3;
+			} else {
+				break;
+			}
+		}
+		return i;
+	}
+
+	/**
+	 * Finds the first offset at or after a position that follows a whitespace
+	 * byte. Such offsets never fall inside a token, so ranges split there can
+	 * be tokenized independently.
+	 * Time Complexity: O(k) where k is the distance scanned
+	 *
+	 * @param text     buffer to scan
+	 * @param position offset to start from
+	 * @param limit    end of the buffer
+	 * @return boundary offset, or limit if there is none
+	 */
+	static int nextBoundary(ByteBuffer text, int position, int limit) {
+		for (int i = position; i < limit; i++) {
+			if (isWhitespace(text.get(i))) {
+				return i + 1;
+			}
+		}
+		return limit;
+	}
+
+	/**
+	 * Finds the last offset before a limit that follows a whitespace byte.
+	 * Time Complexity: O(k) where k is the distance scanned
+	 *
+	 * @param text  buffer to scan
+	 * @param limit end of the buffer
+	 * @return boundary offset, or limit if the buffer has no whitespace
+	 */
+	static int lastBoundary(ByteBuffer text, int limit) {
+		for (int i = limit - 1; i >= 0; i--) {
+			if (isWhitespace(text.get(i))) {
+				return i + 1;
+			}
+		}
+		return limit;
+	}
+
+	/**
+	 * Hashes the normalized form of a token.
+	 * Time Complexity: O(k) where k is the token length
+	 *
+	 * @param text  buffer holding the token
+	 * @param start offset of the token
+	 * @param end   offset just after the token
+	 * @return hash of the lowercase bytes
+	 */
+	static int hash(ByteBuffer text, int start, int end) {
+		int h = 0;
+		for (int i = start; i < end; i++) {
+			if (isRightQuote(text, i, end)) {
+				h = 31 * h + '\'';
+				i += 2;
+			} else {
+				h = 31 * h + lower(text.get(i));
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * Compares the normalized form of a token with normalized bytes.
+	 * Time Complexity: O(k) where k is the token length
+	 *
+	 * @param text       buffer holding the token
+	 * @param start      offset of the token
+	 * @param end        offset just after the token
+	 * @param normalized lowercase bytes to compare with
+	 * @return true if they are equal
+	 */
+	static boolean matches(ByteBuffer text, int start, int end, byte[] normalized) {
+		if (end - start < normalized.length) {
+			return false;
+		}
+		int i = start;
+		for (int j = 0; j < normalized.length; j++, i++) {
+			if (isRightQuote(text, i, end)) {
+				if (normalized[j] != '\'') {
+					return false;
+				}
+				i += 2;
+			} else if (lower(text.get(i)) != normalized[j]) {
+				return false;
+			}
+		}
+		return i == end;
+	}
+
+	/**
+	 * Copies the normalized form of a token.
+	 * Time Complexity: O(k) where k is the token length
+	 *
+	 * @param text  buffer holding the token
+	 * @param start offset of the token
+	 * @param end   offset just after the token
+	 * @return lowercase bytes of the token
+	 */
+	static byte[] normalize(ByteBuffer text, int start, int end) {
+		byte[] bytes = new byte[end - start];
+		int length = 0;
+		for (int i = start; i < end; i++) {
+			if (isRightQuote(text, i, end)) {
+				bytes[length++] = '\'';
+				i += 2;
+			} else {
+				bytes[length++] = lower(text.get(i));
+			}
+		}
+		return length == bytes.length ? bytes : Arrays.copyOf(bytes, length);
+	}
+
+	/**
+	 * Decodes normalized bytes to a word.
+	 *
+	 * @param normalized lowercase UTF-8 bytes
+	 * @return the word
+	 */
+	static String toWord(byte[] normalized) {
+		return new String(normalized, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Checks whether a byte can be part of a token.
+	 *
+	 * @param b byte to check
+	 * @return true for ASCII letters and digits and non-ASCII bytes
+	 */
+	static boolean isWordByte(byte b) {
+		return b < 0 || (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9');
+	}
+
+	/**
+	 * Checks whether the byte at an offset can be part of a token, which is
+	 * when it is a word byte that does not start non-ASCII punctuation.
+	 *
+	 * @param text buffer to scan
+	 * @param i    offset to check
+	 * @param to   end of the scanned range
+	 * @return true if a token may continue or start at the offset
+	 */
+	static boolean isWordStart(ByteBuffer text, int i, int to) {
+		return i < to && isWordByte(text.get(i)) && separatorLength(text, i, to) == 0;
+	}
+
+	/**
+	 * Measures the non-ASCII punctuation character starting at an offset:
+	 * U+2018 to U+201D quotes, U+2013 and U+2014 dashes, U+2026 ellipsis or
+	 * U+00A0 no-break space. Lead bytes never occur inside another UTF-8
+	 * character, so the check is safe at any offset.
+	 *
+	 * @param text buffer to scan
+	 * @param i    offset to check
+	 * @param to   end of the scanned range
+	 * @return byte length of the character, or 0 if there is none
+	 */
+	static int separatorLength(ByteBuffer text, int i, int to) {
+		byte b = text.get(i);
+		if (b == (byte) 0xC2) {
+			return i + 1 < to && text.get(i + 1) == (byte) 0xA0 ? 2 : 0;
+		}
+		if (b != (byte) 0xE2 || i + 2 >= to || text.get(i + 1) != (byte) 0x80) {
+			return 0;
+		}
+		int last = text.get(i + 2) & 0xFF;
+		return last == 0x93 || last == 0x94 || (last >= 0x98 && last <= 0x9D) || last == 0xA6 ? 3 : 0;
+	}
+
+	/**
+	 * Checks whether a right single quote (U+2019) starts at an offset.
+	 *
+	 * @param text buffer to scan
+	 * @param i    offset to check
+	 * @param to   end of the scanned range
+	 * @return true if the three bytes E2 80 99 start at the offset
+	 */
+	static boolean isRightQuote(ByteBuffer text, int i, int to) {
+		return i + 2 < to && text.get(i) == (byte) 0xE2 && text.get(i + 1) == (byte) 0x80
+				&& text.get(i + 2) == (byte) 0x99;
+	}
+
+	/**
+	 * Checks whether a byte is ASCII whitespace.
+	 *
+	 * @param b byte to check
+	 * @return true for space, tab, line feed, carriage return and form feed
+	 */
+	static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f';
+	}
+
+	/**
+	 * Lowercases an ASCII letter, leaving any other byte unchanged.
+	 *
+	 * @param b byte to lowercase
+	 * @return lowercase byte
+	 */
+	static byte lower(byte b) {
+		return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+	}
+}
@@ -0,0 +1,158 @@
+package ie.atu.sw;
+
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Start-up sequence that tokenizes the input while the embeddings load,
+ * instead of after them.
+ *
+ * Loading runs on a background thread, so callers can get on with work that
+ * does not need the embeddings, such as binding the server port, and block on
+ * ready only when they do. Meanwhile the input file is tokenized on a virtual
+ * thread and its vocabulary handed to the processor, so the first run skips
+ * its own collection pass. The Google targets are built once GloVe is loaded,
+ * which takes well under a millisecond for the standard list.
+ *
+ * The vocabulary is handed over before the processor is returned, so the
+ * first run always finds it; tokenizing normally finishes long before GloVe
+ * does. The input's size and modification time are read before it is
+ * tokenized, so an edit made meanwhile makes the first run collect the
+ * vocabulary itself. If tokenizing fails the failure is logged and loading
+ * carries on. Batch and server modes have no single input to tokenize, so for
+ * them the pipeline only overlaps loading with the caller's own set-up.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public class StartupPipeline {
+	/** Time the pipeline started */
+	private final long started = System.nanoTime();
+	/** Completes with a processor once the embeddings are loaded */
+	private final CompletableFuture<ConcurrentTextProcessor> ready = new CompletableFuture<>();
+	/** Time from start until the processor was ready */
+	private volatile long readyNanos;
+
+	/**
+	 * Vocabulary of the input collected while loading.
+	 *
+	 * @param size       input size read before tokenizing
+	 * @param modified   input modification time read before tokenizing
+	 * @param vocabulary distinct normalized words
+	 * @param tokens     number of tokens
+	 */
+	private record Tokenized(long size, FileTime modified, SpanCache vocabulary, long tokens) {
+	}
+
+	private StartupPipeline() {
+	}
+
+	/**
+	 * Starts loading on a background thread and returns at once.
+	 *
+	 * @param glovePath  GloVe file, CSV or binary snapshot
+	 * @param googlePath Google word list
+	 * @param inputPath  input to tokenize ahead of the first run, or null
+	 * @param progress   listener receiving load progress
+	 * @param log        stream receiving a line if the input cannot be
+	 *                   tokenized
+	 * @return the running pipeline
+	 */
+	public static StartupPipeline start(String glovePath, String googlePath, String inputPath,
+			ProgressListener progress, PrintStream log) {
+		StartupPipeline pipeline = new StartupPipeline();
+		Thread.ofPlatform().name("startup").daemon()
+				.start(() -> pipeline.run(glovePath, googlePath, inputPath, progress, log));
+		return pipeline;
+	}
+
+	/**
+	 * Returns the future completing with a processor over the loaded
+	 * embeddings. Fails if loading fails.
+	 *
+	 * @return future of the processor
+	 */
+	public CompletableFuture<ConcurrentTextProcessor> ready() {
+		return ready;
+	}
+
+	/**
+	 * Waits until the processor is ready.
+	 *
+	 * @return processor over the loaded embeddings
+	 * @throws Exception if loading failed
+	 */
+	public ConcurrentTextProcessor await() throws Exception {
+		try {
+			return ready.get();
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof Exception cause ? cause : e;
+		}
+	}
+
+	/**
+	 * Returns the time from start until the processor was ready.
+	 *
+	 * @return milliseconds, or 0 if not ready yet
+	 */
+	public long getReadyMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(readyNanos);
+	}
+
+	/**
+	 * Runs the start-up sequence, completing ready.
+	 *
+	 * @param glovePath  GloVe file
+	 * @param googlePath Google word list
+	 * @param inputPath  input to tokenize, or null
+	 * @param progress   listener receiving load progress
+	 * @param log        stream receiving a line if the input cannot be
+	 *                   tokenized
+	 */
+	private void run(String glovePath, String googlePath, String inputPath, ProgressListener progress,
+			PrintStream log) {
+		try {
+			CompletableFuture<Tokenized> tokenized = new CompletableFuture<>();
+			if (inputPath != null) {
+				Thread.ofVirtual().name("startup-tokenize").start(() -> {
+					try {
+						Path path = Path.of(inputPath);
+						long size = Files.size(path);
+						FileTime modified = Files.getLastModifiedTime(path);
+						SpanCache vocabulary = new SpanCache();
+						long tokens = ConcurrentTextProcessor.collectVocabulary(inputPath, vocabulary);
+						tokenized.complete(new Tokenized(size, modified, vocabulary, tokens));
+					} catch (Exception e) {
+						tokenized.completeExceptionally(e);
+					}
+				});
+			}
+
+			WordEmbeddings glove = WordEmbeddings.open(glovePath, progress);
+			GoogleEmbeddingsMap google = new GoogleEmbeddingsMap(glove);
+			google.load(googlePath, progress);
+
+			ConcurrentTextProcessor processor = new ConcurrentTextProcessor(glove, google);
+			if (inputPath != null) {
+				try {
+					Tokenized input = tokenized.get();
+					processor.prepareVocabulary(inputPath, input.size(), input.modified(), input.vocabulary(),
+							input.tokens());
+				} catch (ExecutionException e) {
+					log.println("[ERROR] Could not tokenize " + inputPath + " while loading: "
+							+ e.getCause().getMessage() + "; it will be tokenized when processed");
+				}
+			}
+			readyNanos = System.nanoTime() - started;
+			ready.complete(processor);
+		} catch (Throwable e) {
+			ready.completeExceptionally(e);
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package ie.atu.sw;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Watches the Google-1000 word list and applies edits to a loaded
+ * GoogleEmbeddingsMap as they are saved. Only the difference between the file
+ * and the current targets is applied, so adding or removing a few words costs
+ * a few incremental updates instead of a full reload.
+ *
+ * The file's directory is registered with a WatchService. Editors often save
+ * by writing a temporary file and renaming it over the original, so creation
+ * events are handled as well as modifications, and events are allowed to
+ * settle briefly before the file is read. Editors that truncate the file and
+ * write it in place can still be caught mid-write, so a read is only used
+ * once the file's size and modification time hold still across a settle
+ * interval, and an empty list is never applied: removing every target would
+ * silently drop words from the output.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public class TargetListWatcher implements AutoCloseable {
+	/** Time allowed for a burst of file events to settle before reading */
+	private static final long SETTLE_MILLIS = 200;
+	/** Reads of a changing file attempted before giving up until its next event */
+	private static final int MAX_READS = 10;
+
+	/** Targets kept in step with the file, looked up at each change */
+	private final Supplier<GoogleEmbeddingsMap> targets;
+	/** Watched word list */
+	private final Path file;
+	/** Stream receiving a line per applied change or error */
+	private final PrintStream log;
+	/** Service delivering events for the file's directory */
+	private final WatchService service;
+	/** Thread waiting for events, once started */
+	private Thread watcher;
+
+	/**
+	 * Creates a watcher for a word list. Nothing is watched until start is
+	 * called.
+	 *
+	 * @param targets  loaded Google embeddings
+	 * @param filePath word list the targets were loaded from
+	 * @param log      stream receiving a line per applied change or error
+	 * @throws IOException if the directory cannot be watched
+	 */
+	public TargetListWatcher(GoogleEmbeddingsMap targets, String filePath, PrintStream log) throws IOException {
+		this(() -> targets, filePath, log);
+	}
+
+	/**
+	 * Creates a watcher for the word list of whichever targets are current
+	 * when a change is saved, such as the targets of a processor's snapshot,
+	 * so the watcher keeps working across reloads.
+	 *
+	 * @param targets  supplies the current Google embeddings
+	 * @param filePath word list the targets were loaded from
+	 * @param log      stream receiving a line per applied change or error
+	 * @throws IOException if the directory cannot be watched
+	 */
+	public TargetListWatcher(Supplier<GoogleEmbeddingsMap> targets, String filePath, PrintStream log)
+			throws IOException {
+		this.targets = targets;
+		this.file = Path.of(filePath).toAbsolutePath();
+		this.log = log;
+		this.service = FileSystems.getDefault().newWatchService();
+		this.file.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY);
+	}
+
+	/**
+	 * Starts watching on a daemon thread.
+	 */
+	public synchronized void start() {
+		if (watcher == null) {
+			watcher = Thread.ofPlatform().name("target-list-watcher").daemon().start(this::watch);
+		}
+	}
+
+	/**
+	 * Reads the word list and applies the words added and removed since the
+	 * targets were last updated. An empty list is logged and ignored.
+	 *
+	 * Time Complexity: O(m) to compare, plus the incremental updates
+	 *
+	 * @return number of words added and removed
+	 * @throws IOException          if the file cannot be read, or is still
+	 *                              changing after MAX_READS attempts
+	 * @throws InterruptedException if interrupted while waiting for the file to
+	 *                              settle
+	 */
+	public int applyChanges() throws IOException, InterruptedException {
+		Set<String> wanted = new LinkedHashSet<>();
+		for (String line : readSettled()) {
+			if (!line.isBlank()) {
+				wanted.add(line.trim());
+			}
+		}
+		if (wanted.isEmpty()) {
+			log.println("[ERROR] " + file + " is empty; targets left unchanged");
+			return 0;
+		}
+		GoogleEmbeddingsMap current = targets.get();
+		List<String> removals = new ArrayList<>();
+		for (String word : current.getWords()) {
+			if (!wanted.remove(word)) {
+				removals.add(word);
+			}
+		}
+		return current.update(wanted, removals);
+	}
+
+	/**
+	 * Reads the word list once its size and modification time are the same
+	 * before the read and a settle interval after it, so a read overlapping a
+	 * write is retried instead of used.
+	 *
+	 * @return lines of the file
+	 * @throws IOException          if the file cannot be read, or is still
+	 *                              changing after MAX_READS attempts
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private List<String> readSettled() throws IOException, InterruptedException {
+		for (int attempt = 0; attempt < MAX_READS; attempt++) {
+			long size = Files.size(file);
+			FileTime modified = Files.getLastModifiedTime(file);
+			List<String> lines = Files.readAllLines(file);
+			Thread.sleep(SETTLE_MILLIS);
+			if (Files.size(file) == size && Files.getLastModifiedTime(file).equals(modified)) {
+				return lines;
+			}
+		}
+		throw new IOException("still changing after " + MAX_READS + " reads");
+	}
+
+	/**
+	 * Watcher loop. Waits for events on the file, lets them settle, then
+	 * applies the changes, until closed.
+	 */
+	private void watch() {
+		try {
+			while (true) {
+				if (!concernsFile(service.take())) {
+					continue;
+				}
+				WatchKey more;
+				while ((more = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+					concernsFile(more);
+				}
+				try {
+					long start = System.nanoTime();
+					int changes = applyChanges();
+					if (changes > 0) {
+						log.printf("Applied %d target changes from %s in %.1f ms (%d targets)%n", changes,
+								file.getFileName(), (System.nanoTime() - start) / 1e6, targets.get().getSize());
+					}
+				} catch (IOException e) {
+					log.println("[ERROR] Could not read " + file + ": " + e.getMessage());
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// Closed
+		}
+	}
+
+	/**
+	 * Drains a key's events and re-arms it.
+	 *
+	 * @param key signalled key
+	 * @return true if any event may concern the watched file
+	 */
+	private boolean concernsFile(WatchKey key) {
+		boolean concerns = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			concerns |= event.kind() == StandardWatchEventKinds.OVERFLOW
+					|| file.getFileName().equals(event.context());
+		}
+		key.reset();
+		return concerns;
+	}
+
+	/**
+	 * Stops watching.
+	 *
+	 * @throws IOException if the watch service cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		service.close();
+	}
+}
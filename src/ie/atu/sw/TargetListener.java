@@ -0,0 +1,37 @@
+package ie.atu.sw;
+
+/**
+ * Receives changes to the Google target words of a GoogleEmbeddingsMap, so
+ * that structures derived from the targets (search indexes and replacement
+ * tables) can be patched instead of rebuilt.
+ *
+ * Rows are stable: a removed word's row is left empty until an addition in a
+ * later update reuses it, and no other row ever moves. Every listener has
+ * therefore been told of a removal before its row can hold another word.
+ * Listeners are called one change at a time, after the new targets are
+ * visible through the map, and never concurrently.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public interface TargetListener {
+
+	/**
+	 * Called after a word is added at a row, which is either a new row at the
+	 * end of the matrix or the row of a word removed earlier.
+	 *
+	 * @param row row of the new target
+	 */
+
+	void targetAdded(int row);
+
+	/**
+	 * Called after the word at a row is removed. The row's vector stays in the
+	 * matrix until the row is reused, but the row is no longer live.
+	 *
+	 * @param row row of the removed target
+	 */
+
+	void targetRemoved(int row);
+}
@@ -0,0 +1,126 @@
+package ie.atu.sw;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Exact top-k similarity query over every row of an embedding store. The rows
+ * are split into partitions scanned as a fork/join job; each partition keeps a
+ * bounded min-heap of its k best rows and the heaps are merged as the tasks
+ * join.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+@SuppressWarnings("serial") // fork/join tasks are never serialized
+final class TopKQuery extends RecursiveTask<RowHeap> {
+	/** Rows below which a task scans instead of splitting */
+	private static final int MIN_PARTITION = 4096;
+
+	/** Score of a row against the query */
+	private final IntToDoubleFunction scorer;
+	/** Number of results to keep */
+	private final int k;
+	/** First row of the partition */
+	private final int from;
+	/** Row after the partition */
+	private final int to;
+	/** Partition size at which to stop splitting */
+	private final int threshold;
+
+	private TopKQuery(IntToDoubleFunction scorer, int k, int from, int to, int threshold) {
+		this.scorer = scorer;
+		this.k = k;
+		this.from = from;
+		this.to = to;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Finds the k rows with the highest scores.
+	 *
+	 * Time Complexity: O(n * d / p + p * k log k) where n is the number of rows, d
+	 * the dimension and p the parallelism
+	 *
+	 * @param source store the rows belong to, used to name the results
+	 * @param scorer similarity of a row to the query
+	 * @param k      number of results
+	 * @return up to k words, most similar first
+	 */
+	static List<ScoredWord> run(WordEmbeddings source, IntToDoubleFunction scorer, int k) {
+		return run(source, source.getSize(), scorer, k);
+	}
+
+	/**
+	 * Finds the k rows with the highest scores among a given number of rows,
+	 * for stores whose row count differs from their word count.
+	 *
+	 * Time Complexity: O(n * d / p + p * k log k)
+	 *
+	 * @param source store the rows belong to, used to name the results
+	 * @param rows   number of rows to score
+	 * @param scorer similarity of a row to the query
+	 * @param k      number of results
+	 * @return up to k words, most similar first
+	 */
+	static List<ScoredWord> run(WordEmbeddings source, int rows, IntToDoubleFunction scorer, int k) {
+		int threshold = Math.max(MIN_PARTITION, rows / (ForkJoinPool.getCommonPoolParallelism() * 4));
+		RowHeap best = ForkJoinPool.commonPool().invoke(new TopKQuery(scorer, k, 0, rows, threshold));
+
+		List<ScoredWord> results = new ArrayList<>(best.size());
+		for (int i = 0; i < best.size(); i++) {
+			results.add(new ScoredWord(source.wordAt(best.rowAt(i)), best.scoreAt(i)));
+		}
+		results.sort(Comparator.comparingDouble(ScoredWord::similarity).reversed());
+		return results;
+	}
+
+	/**
+	 * Normalizes a query vector to unit length so that scores are cosines.
+	 *
+	 * @param vector query vector
+	 * @return unit-length copy, or the zero vector unchanged
+	 */
+	static double[] unit(double[] vector) {
+		double norm = 0.0;
+		for (double v : vector) {
+			norm += v * v;
+		}
+		norm = Math.sqrt(norm);
+		double[] unit = new double[vector.length];
+		for (int i = 0; i < vector.length; i++) {
+			unit[i] = norm > 0 ? vector[i] / norm : 0.0;
+		}
+		return unit;
+	}
+
+	/**
+	 * Scans the partition, or splits it and merges the halves' heaps.
+	 *
+	 * @return heap of the k best rows in the partition
+	 */
+	@Override
+	protected RowHeap compute() {
+		if (to - from <= threshold) {
+			RowHeap heap = new RowHeap(false);
+			for (int row = from; row < to; row++) {
+				heap.offer(row, scorer.applyAsDouble(row), k);
+			}
+			return heap;
+		}
+		int mid = (from + to) >>> 1;
+		TopKQuery left = new TopKQuery(scorer, k, from, mid, threshold);
+		left.fork();
+		RowHeap merged = new TopKQuery(scorer, k, mid, to, threshold).compute();
+		RowHeap other = left.join();
+		for (int i = 0; i < other.size(); i++) {
+			merged.offer(other.rowAt(i), other.scoreAt(i), k);
+		}
+		return merged;
+	}
+}
@@ -0,0 +1,146 @@
+package ie.atu.sw;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SimilarityKernel built on the incubating Java Vector API, using the widest
+ * lanes the CPU supports (AVX2, AVX-512, NEON) with fused multiply-adds.
+ *
+ * Requires the jdk.incubator.vector module at compile time and run time
+ * (--add-modules jdk.incubator.vector). SimilarityKernels only loads this
+ * class when the module is present.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+public class VectorSimilarityKernel implements SimilarityKernel {
+	/** Preferred vector shape for doubles on this CPU */
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	/**
+	 * Computes the dot product of a vector with a matrix row, a full lane width
+	 * at a time with a scalar tail.
+	 * Time Complexity: O(n)
+	 *
+	 * @param vector query vector
+	 * @param matrix row-major matrix
+	 * @param offset index of the first component of the row
+	 * @param length number of components
+	 * @return dot product
+	 */
+	@Override
+	public double dot(double[] vector, double[] matrix, int offset, int length) {
+		DoubleVector sum = DoubleVector.zero(SPECIES);
+		int i = 0;
+		int bound = SPECIES.loopBound(length);
+		for (; i < bound; i += SPECIES.length()) {
+			DoubleVector a = DoubleVector.fromArray(SPECIES, vector, i);
+			DoubleVector b = DoubleVector.fromArray(SPECIES, matrix, offset + i);
+			sum = a.fma(b, sum);
+		}
+		double dotProduct = sum.reduceLanes(VectorOperators.ADD);
+		for (; i < length; i++) {
+			dotProduct += vector[i] * matrix[offset + i];
+		}
+		return dotProduct;
+	}
+
+	/**
+	 * Computes the dot products of four vectors with two matrix rows, with one
+	 * vector accumulator per product and the same scalar tail as dot.
+	 * Time Complexity: O(n)
+	 *
+	 * @param v0      first vector
+	 * @param v1      second vector
+	 * @param v2      third vector
+	 * @param v3      fourth vector
+	 * @param matrix  row-major matrix
+	 * @param offset0 index of the first component of the first row
+	 * @param offset1 index of the first component of the second row
+	 * @param length  number of components
+	 * @param scores  receives the eight products
+	 */
+	@Override
+	public void dot4x2(double[] v0, double[] v1, double[] v2, double[] v3, double[] matrix, int offset0,
+			int offset1, int length, double[] scores) {
+		DoubleVector s00 = DoubleVector.zero(SPECIES), s01 = DoubleVector.zero(SPECIES);
+		DoubleVector s10 = DoubleVector.zero(SPECIES), s11 = DoubleVector.zero(SPECIES);
+		DoubleVector s20 = DoubleVector.zero(SPECIES), s21 = DoubleVector.zero(SPECIES);
+		DoubleVector s30 = DoubleVector.zero(SPECIES), s31 = DoubleVector.zero(SPECIES);
+		int i = 0;
+		int bound = SPECIES.loopBound(length);
+		for (; i < bound; i += SPECIES.length()) {
+			DoubleVector b0 = DoubleVector.fromArray(SPECIES, matrix, offset0 + i);
+			DoubleVector b1 = DoubleVector.fromArray(SPECIES, matrix, offset1 + i);
+			DoubleVector a = DoubleVector.fromArray(SPECIES, v0, i);
+			s00 = a.fma(b0, s00);
+			s01 = a.fma(b1, s01);
+			a = DoubleVector.fromArray(SPECIES, v1, i);
+			s10 = a.fma(b0, s10);
+			s11 = a.fma(b1, s11);
+			a = DoubleVector.fromArray(SPECIES, v2, i);
+			s20 = a.fma(b0, s20);
+			s21 = a.fma(b1, s21);
+			a = DoubleVector.fromArray(SPECIES, v3, i);
+			s30 = a.fma(b0, s30);
+			s31 = a.fma(b1, s31);
+		}
+		scores[0] = s00.reduceLanes(VectorOperators.ADD);
+		scores[1] = s01.reduceLanes(VectorOperators.ADD);
+		scores[2] = s10.reduceLanes(VectorOperators.ADD);
+		scores[3] = s11.reduceLanes(VectorOperators.ADD);
+		scores[4] = s20.reduceLanes(VectorOperators.ADD);
+		scores[5] = s21.reduceLanes(VectorOperators.ADD);
+		scores[6] = s30.reduceLanes(VectorOperators.ADD);
+		scores[7] = s31.reduceLanes(VectorOperators.ADD);
+		for (; i < length; i++) {
+			double b0 = matrix[offset0 + i];
+			double b1 = matrix[offset1 + i];
+			scores[0] += v0[i] * b0;
+			scores[1] += v0[i] * b1;
+			scores[2] += v1[i] * b0;
+			scores[3] += v1[i] * b1;
+			scores[4] += v2[i] * b0;
+			scores[5] += v2[i] * b1;
+			scores[6] += v3[i] * b0;
+			scores[7] += v3[i] * b1;
+		}
+	}
+
+	/**
+	 * Computes cosine similarity, accumulating the dot product and both norms in
+	 * the same vector loop.
+	 * Time Complexity: O(n)
+	 *
+	 * @param v1 first vector
+	 * @param v2 second vector
+	 * @return similarity score
+	 */
+	@Override
+	public double cosine(double[] v1, double[] v2) {
+		DoubleVector dot = DoubleVector.zero(SPECIES);
+		DoubleVector norm1 = DoubleVector.zero(SPECIES);
+		DoubleVector norm2 = DoubleVector.zero(SPECIES);
+		int i = 0;
+		int bound = SPECIES.loopBound(v1.length);
+		for (; i < bound; i += SPECIES.length()) {
+			DoubleVector a = DoubleVector.fromArray(SPECIES, v1, i);
+			DoubleVector b = DoubleVector.fromArray(SPECIES, v2, i);
+			dot = a.fma(b, dot);
+			norm1 = a.fma(a, norm1);
+			norm2 = b.fma(b, norm2);
+		}
+		double dotProduct = dot.reduceLanes(VectorOperators.ADD);
+		double n1 = norm1.reduceLanes(VectorOperators.ADD);
+		double n2 = norm2.reduceLanes(VectorOperators.ADD);
+		for (; i < v1.length; i++) {
+			dotProduct += v1[i] * v2[i];
+			n1 += v1[i] * v1[i];
+			n2 += v2[i] * v2[i];
+		}
+		return dotProduct / (Math.sqrt(n1) * Math.sqrt(n2));
+	}
+}
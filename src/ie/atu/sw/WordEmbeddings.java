@@ -1,5 +1,9 @@
 package ie.atu.sw;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
 /**
  * Interface defining operations for word embedding implementations. Provides
  * methods to load, retrieve, and query word vectors.
@@ -10,6 +14,66 @@ package ie.atu.sw;
 
 public interface WordEmbeddings {
 
+	/**
+	 * Opens an embeddings file, detecting its format. Binary snapshots are
+	 * memory-mapped, anything else is parsed as GloVe CSV.
+	 *
+	 * @param filePath path to embeddings file
+	 * @return loaded embeddings
+	 * @throws Exception if loading fails
+	 */
+
+	static WordEmbeddings open(String filePath) throws Exception {
+		return open(filePath, ProgressListener.NONE);
+	}
+
+	/**
+	 * Opens an embeddings file, detecting its format and reporting load progress.
+	 *
+	 * @param filePath path to embeddings file
+	 * @param listener listener receiving load progress
+	 * @return loaded embeddings
+	 * @throws Exception if loading fails
+	 */
+
+	static WordEmbeddings open(String filePath, ProgressListener listener) throws Exception {
+		WordEmbeddings embeddings = BinaryEmbeddings.isSnapshot(filePath) ? new BinaryEmbeddings()
+				: new GloVeEmbeddingsMap();
+		embeddings.load(filePath, listener);
+		return embeddings;
+	}
+
+	/**
+	 * Opens an embeddings file keeping only the vectors one job needs: those of
+	 * the words in the input file and in the Google-1000 file. The input is
+	 * scanned first to build its vocabulary, then a single pass over a CSV file
+	 * keeps the matching rows, which also covers every Google word. Binary
+	 * snapshots are memory-mapped rather than read onto the heap, so they are
+	 * opened whole.
+	 *
+	 * @param filePath   path to embeddings file
+	 * @param inputPath  text file the job will simplify
+	 * @param googlePath Google-1000 word list
+	 * @param listener   listener receiving load progress
+	 * @return loaded embeddings
+	 * @throws Exception if a file cannot be read
+	 */
+
+	static WordEmbeddings openSelective(String filePath, String inputPath, String googlePath,
+			ProgressListener listener) throws Exception {
+		if (BinaryEmbeddings.isSnapshot(filePath)) {
+			return open(filePath, listener);
+		}
+		SpanCache words = new SpanCache();
+		ConcurrentTextProcessor.collectVocabulary(inputPath, words);
+		for (String word : Files.readAllLines(Path.of(googlePath))) {
+			words.add(word);
+		}
+		GloVeEmbeddingsMap embeddings = new GloVeEmbeddingsMap();
+		embeddings.loadSelected(filePath, words, listener);
+		return embeddings;
+	}
+
 	/**
 	 * Loads word embeddings from a file.
 	 *
@@ -17,7 +81,19 @@ public interface WordEmbeddings {
 	 * @throws Exception if loading fails
 	 */
 
-	void load(String filePath) throws Exception;
+	default void load(String filePath) throws Exception {
+		load(filePath, ProgressListener.NONE);
+	}
+
+	/**
+	 * Loads word embeddings from a file, reporting progress in bytes read.
+	 *
+	 * @param filePath path to embeddings file
+	 * @param listener listener receiving load progress
+	 * @throws Exception if loading fails
+	 */
+
+	void load(String filePath, ProgressListener listener) throws Exception;
 
 	/**
 	 * Retrieves vector representation for a word.
@@ -37,6 +113,55 @@ public interface WordEmbeddings {
 
 	boolean containsWord(String word);
 
+	/**
+	 * Gets the dense id assigned to a word at load time. Ids run from 0 to
+	 * getSize() - 1 in load order.
+	 *
+	 * @param word word to look up
+	 * @return id of the word, or -1 if not found
+	 */
+
+	int indexOf(String word);
+
+	/**
+	 * Gets the word with a given id.
+	 *
+	 * @param index word id from indexOf
+	 * @return the word
+	 */
+
+	String wordAt(int index);
+
+	/**
+	 * Finds the k words most similar to a vector by cosine similarity, scanning
+	 * every embedding.
+	 *
+	 * @param vector query vector
+	 * @param k      number of results
+	 * @return up to k words, most similar first
+	 */
+
+	List<ScoredWord> topK(double[] vector, int k);
+
+	/**
+	 * Finds the k words most similar to a word, excluding the word itself. k is
+	 * capped at the number of embeddings, so k + 1 never overflows.
+	 *
+	 * @param word query word
+	 * @param k    number of results
+	 * @return up to k words, most similar first, or an empty list if the word is
+	 *         not found or k is not positive
+	 */
+
+	default List<ScoredWord> topK(String word, int k) {
+		double[] vector = getEmbedding(word);
+		if (vector == null || k <= 0) {
+			return List.of();
+		}
+		int limit = Math.min(k, getSize());
+		return topK(vector, limit + 1).stream().filter(scored -> !scored.word().equals(word)).limit(limit).toList();
+	}
+
 	/**
 	 * Gets total number of embeddings.
 	 *
@@ -44,4 +169,12 @@ public interface WordEmbeddings {
 	 */
 
 	int getSize();
+
+	/**
+	 * Gets the load and footprint metrics of this store, for publishing over JMX.
+	 *
+	 * @return metrics of this store
+	 */
+
+	EmbeddingsStats getStats();
 }
@@ -0,0 +1,248 @@
+package ie.atu.sw;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing index assigning each distinct word a dense integer id in
+ * insertion order. Ids can be used as row numbers into parallel arrays, so a
+ * word is resolved to its data with one probe sequence and no boxing.
+ * 
+ * Changes are not thread-safe; once filling is complete the index may be read
+ * from any number of threads. Indexes that change while being read are
+ * changed on a copy, which is then published in place of the original.
+ * 
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+final class WordIndex {
+	/** Marker for an unused slot */
+	private static final int EMPTY = -1;
+
+	/** Words by id */
+	private String[] words;
+
+	/** Whether each id's word was removed and the id not yet reassigned */
+	private boolean[] removed;
+
+	/** Hash slots holding word ids, EMPTY where unused. Length is a power of two */
+	private int[] slots;
+
+	/** Number of words in the index */
+	private int size;
+
+	/**
+	 * Constructs an empty index sized for the expected number of words.
+	 * 
+	 * @param expectedSize expected number of words
+	 */
+	WordIndex(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+		this.words = new String[Math.max(expectedSize, 8)];
+		this.removed = new boolean[words.length];
+		this.slots = new int[capacity];
+		Arrays.fill(slots, EMPTY);
+	}
+
+	/**
+	 * Constructs an index holding the given state.
+	 * 
+	 * @param words   words by id
+	 * @param removed whether each id's word was removed
+	 * @param slots   hash slots holding word ids
+	 * @param size    number of ids handed out
+	 */
+	private WordIndex(String[] words, boolean[] removed, int[] slots, int size) {
+		this.words = words;
+		this.removed = removed;
+		this.slots = slots;
+		this.size = size;
+	}
+
+	/**
+	 * Returns an independent copy of the index.
+	 * 
+	 * Time Complexity: O(n)
+	 * 
+	 * @return the copy
+	 */
+	WordIndex copy() {
+		return new WordIndex(words.clone(), removed.clone(), slots.clone(), size);
+	}
+
+	/**
+	 * Adds a word if absent and returns its id.
+	 * 
+	 * Time Complexity: O(1) amortized
+	 * 
+	 * @param word the word to add
+	 * @return the id of the word
+	 */
+	int add(String word) {
+		int slot = find(word);
+		if (slots[slot] != EMPTY) {
+			return slots[slot];
+		}
+		if (size == words.length) {
+			words = Arrays.copyOf(words, size * 2);
+			removed = Arrays.copyOf(removed, size * 2);
+		}
+		words[size] = word;
+		slots[slot] = size;
+		if (++size * 2 > slots.length) {
+			rehash(slots.length * 2);
+		}
+		return size - 1;
+	}
+
+	/**
+	 * Gives a word an id that was freed by remove, so that ids of removed words
+	 * can be reused without growing parallel arrays.
+	 * 
+	 * Time Complexity: O(1) average case
+	 * 
+	 * @param word the word to add, which must be absent
+	 * @param id   a freed id below size
+	 */
+	void assign(String word, int id) {
+		int slot = find(word);
+		words[id] = word;
+		removed[id] = false;
+		slots[slot] = id;
+	}
+
+	/**
+	 * Removes a word. Its id is not handed out again by add, and wordAt keeps
+	 * returning the removed word until the id is reassigned, but the word is
+	 * no longer found by indexOf, even after the table is rehashed. The probe
+	 * sequences of the following slots are closed up by shifting entries back,
+	 * so no tombstones are left behind.
+	 * 
+	 * Time Complexity: O(1) average case
+	 * 
+	 * @param word the word to remove
+	 * @return the id the word had, or -1 if absent
+	 */
+	int remove(String word) {
+		int i = find(word);
+		int id = slots[i];
+		if (id == EMPTY) {
+			return EMPTY;
+		}
+		int mask = slots.length - 1;
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (slots[j] == EMPTY) {
+				break;
+			}
+			int home = mix(words[slots[j]].hashCode()) & mask;
+			boolean reachable = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+			if (!reachable) {
+				slots[i] = slots[j];
+				i = j;
+			}
+		}
+		slots[i] = EMPTY;
+		removed[id] = true;
+		return id;
+	}
+
+	/**
+	 * Returns the id of a word.
+	 * 
+	 * Time Complexity: O(1) average case
+	 * 
+	 * @param word the word to look up
+	 * @return the id of the word, or -1 if absent
+	 */
+	int indexOf(String word) {
+		return slots[find(word)];
+	}
+
+	/**
+	 * Returns the word with a given id.
+	 * 
+	 * @param id word id
+	 * @return the word
+	 */
+	String wordAt(int id) {
+		return words[id];
+	}
+
+	/**
+	 * Returns the number of ids handed out, including those of removed words.
+	 * 
+	 * @return id count
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Estimates the heap held by the index, including the word strings, assuming
+	 * compressed references and compact Latin-1 strings. Removed words are
+	 * counted too, since wordAt keeps them until their ids are reassigned.
+	 * 
+	 * Time Complexity: O(n)
+	 * 
+	 * @return estimated footprint in bytes
+	 */
+	long memoryBytes() {
+		long bytes = (long) words.length * 5 + (long) slots.length * 4;
+		for (int id = 0; id < size; id++) {
+			bytes += 40 + words[id].length();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Finds the slot holding a word, or the empty slot where it would be placed.
+	 * 
+	 * @param word the word to look for
+	 * @return slot position
+	 */
+	private int find(String word) {
+		int mask = slots.length - 1;
+		int i = mix(word.hashCode()) & mask;
+		while (slots[i] != EMPTY && !words[slots[i]].equals(word)) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	/**
+	 * Rebuilds the slot table at a new capacity, leaving out removed words.
+	 * 
+	 * Time Complexity: O(n)
+	 * 
+	 * @param capacity new slot count, a power of two
+	 */
+	private void rehash(int capacity) {
+		slots = new int[capacity];
+		Arrays.fill(slots, EMPTY);
+		int mask = capacity - 1;
+		for (int id = 0; id < size; id++) {
+			if (removed[id]) {
+				continue;
+			}
+			int i = mix(words[id].hashCode()) & mask;
+			while (slots[i] != EMPTY) {
+				i = (i + 1) & mask;
+			}
+			slots[i] = id;
+		}
+	}
+
+	/**
+	 * Spreads hash bits so that linear probing over a power-of-two table works
+	 * well for String hash codes.
+	 * 
+	 * @param h hash code
+	 * @return mixed hash
+	 */
+	private static int mix(int h) {
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,124 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the blocked batch scan finds the same rows as scanning the
+ * targets once per query with dot, for both kernels, over batch sizes that
+ * are not a multiple of four, tiles with an odd number of rows, removed rows
+ * and tied rows.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+class BlockedArgmaxTest {
+	private final SimilarityKernel[] kernels = { new ScalarSimilarityKernel(), new VectorSimilarityKernel() };
+	private final Random random = new Random(13);
+
+	@Test
+	void matchesPerRowScan() {
+		// Dimension 100 gives 163-row tiles, so the 400 rows end in a short
+		// tile and every full tile ends in an unpaired row
+		int[][] shapes = { { 7, 9 }, { 100, 400 }, { 300, 111 }, { 50, 1 } };
+		for (SimilarityKernel kernel : kernels) {
+			for (int[] shape : shapes) {
+				int dim = shape[0];
+				int rows = shape[1];
+				double[] matrix = gaussian(rows * dim);
+				if (rows > 4) {
+					System.arraycopy(matrix, 0, matrix, 3 * dim, dim);
+				}
+				boolean[] live = new boolean[rows];
+				for (int row = 0; row < rows; row++) {
+					live[row] = random.nextInt(5) > 0;
+				}
+				for (int n : new int[] { 1, 2, 3, 5, 6, 7, 13 }) {
+					double[][] queries = new double[n][];
+					for (int q = 0; q < n; q++) {
+						queries[q] = q == 0 ? Arrays.copyOf(matrix, dim) : gaussian(dim);
+					}
+					String context = kernel.getClass().getSimpleName() + " dim " + dim + ", rows " + rows
+							+ ", queries " + n;
+					assertArrayEquals(scan(kernel, queries, matrix, live, dim),
+							blocked(kernel, queries, matrix, live, dim), context);
+				}
+			}
+		}
+	}
+
+	@Test
+	void returnsNoRowWhenAllRowsAreRemoved() {
+		for (SimilarityKernel kernel : kernels) {
+			int dim = 10;
+			double[][] queries = { gaussian(dim), gaussian(dim), gaussian(dim) };
+			int[] none = { -1, -1, -1 };
+			assertArrayEquals(none, blocked(kernel, queries, gaussian(5 * dim), new boolean[5], dim));
+			assertArrayEquals(none, blocked(kernel, queries, new double[0], new boolean[0], dim));
+		}
+	}
+
+	/**
+	 * Runs the blocked scan.
+	 *
+	 * @param kernel  kernel under test
+	 * @param queries query vectors
+	 * @param matrix  row-major target matrix
+	 * @param live    liveness per row
+	 * @param dim     components per vector
+	 * @return best row per query
+	 */
+	private static int[] blocked(SimilarityKernel kernel, double[][] queries, double[] matrix, boolean[] live,
+			int dim) {
+		int[] rows = new int[queries.length];
+		BlockedArgmax.run(kernel, queries, matrix, live, dim, rows);
+		return rows;
+	}
+
+	/**
+	 * Finds the best live row per query with one dot product per row, keeping
+	 * the lower row on ties, as GoogleEmbeddingsMap.findMostSimilarRow does.
+	 *
+	 * @param kernel  kernel under test
+	 * @param queries query vectors
+	 * @param matrix  row-major target matrix
+	 * @param live    liveness per row
+	 * @param dim     components per vector
+	 * @return best row per query
+	 */
+	private static int[] scan(SimilarityKernel kernel, double[][] queries, double[] matrix, boolean[] live,
+			int dim) {
+		int[] rows = new int[queries.length];
+		for (int q = 0; q < queries.length; q++) {
+			rows[q] = -1;
+			double best = Double.NEGATIVE_INFINITY;
+			for (int row = 0; row < live.length; row++) {
+				double score = kernel.dot(queries[q], matrix, row * dim, dim);
+				if (live[row] && score > best) {
+					best = score;
+					rows[q] = row;
+				}
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Creates a vector of standard normal components.
+	 *
+	 * @param length number of components
+	 * @return the vector
+	 */
+	private double[] gaussian(int length) {
+		double[] values = new double[length];
+		for (int i = 0; i < length; i++) {
+			values[i] = random.nextGaussian();
+		}
+		return values;
+	}
+}
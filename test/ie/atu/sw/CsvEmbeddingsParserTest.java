@@ -0,0 +1,86 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the byte-level number parser returns exactly the bits
+ * Double.parseDouble returns, for inputs on its fast path and for inputs it
+ * hands to the fallback.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+class CsvEmbeddingsParserTest {
+	private final Random random = new Random(19);
+
+	@Test
+	void parseDoubleMatchesEdgeCases() {
+		String[] inputs = { "0", "-0", "0.0", "-0.0", "+0.0", "1", "-1", "+1", "1.", ".5", "-.5", "00.50", "1e22",
+				"1e23", "1e-22", "1e-23", "-1E22", "1E+5", "1e-0", "1.5e3", "0e400", "123456789012345678",
+				"1234567890123456789", "12345678901234567890123", "0.1234567890123456789", "9007199254740991",
+				"9007199254740992", "9007199254740993", "900719925474099.3", "0.000000000000000000001",
+				"0.0000000000000000000000001", "1.000000000000000000000", "4.9e-324", "1.7976931348623157e308",
+				"2e308", "1e-400", "NaN", "-NaN", "Infinity", "-Infinity", "0.1", "0.2", "0.3", "-0.046168",
+				"0.41800", "1e1000", "1e-1000" };
+		for (String input : inputs) {
+			assertSameBits(input);
+		}
+	}
+
+	@Test
+	void parseDoubleMatchesRandomDecimals() {
+		for (int trial = 0; trial < 100_000; trial++) {
+			StringBuilder input = new StringBuilder();
+			if (random.nextBoolean()) {
+				input.append(random.nextBoolean() ? '-' : '+');
+			}
+			int digits = 1 + random.nextInt(22);
+			int point = random.nextInt(digits + 1);
+			for (int i = 0; i < digits; i++) {
+				if (i == point) {
+					input.append('.');
+				}
+				input.append((char) ('0' + random.nextInt(10)));
+			}
+			if (random.nextInt(3) == 0) {
+				input.append(random.nextBoolean() ? 'e' : 'E');
+				int exponent = random.nextInt(60) - 30;
+				input.append(exponent < 0 ? "-" : random.nextBoolean() ? "+" : "").append(Math.abs(exponent));
+			}
+			assertSameBits(input.toString());
+		}
+	}
+
+	@Test
+	void parseDoubleMatchesFormattedValues() {
+		for (int trial = 0; trial < 20_000; trial++) {
+			double value = random.nextGaussian() * Math.pow(10, random.nextInt(20) - 10);
+			assertSameBits(Double.toString(value));
+			assertSameBits(Float.toString((float) value));
+			assertSameBits(String.format(Locale.ROOT, "%.5f", value));
+			assertSameBits(String.format(Locale.ROOT, "%.17e", value));
+			assertSameBits(Double.toString(Double.longBitsToDouble(random.nextLong())));
+		}
+	}
+
+	/**
+	 * Asserts that the parser returns exactly the bits of Double.parseDouble
+	 * for a number surrounded by other bytes.
+	 *
+	 * @param input number to parse
+	 */
+	private static void assertSameBits(String input) {
+		byte[] bytes = ("x," + input + ",y").getBytes(StandardCharsets.US_ASCII);
+		double parsed = CsvEmbeddingsParser.parseDouble(ByteBuffer.wrap(bytes), 2, 2 + input.length());
+		assertEquals(Double.doubleToRawLongBits(Double.parseDouble(input)), Double.doubleToRawLongBits(parsed),
+				input);
+	}
+}
@@ -0,0 +1,114 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks incremental target updates: a removed word is gone from every
+ * lookup, stays gone after later updates grow the index, and can be added
+ * again.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+class GoogleEmbeddingsMapTest {
+	/** GloVe words written to the test file */
+	private static final int WORDS = 40;
+
+	@TempDir
+	Path dir;
+
+	/** GloVe embeddings the last targets were loaded from */
+	private WordEmbeddings glove;
+
+	@Test
+	void removedWordCanBeAddedAgainAfterTheIndexGrows() throws Exception {
+		GoogleEmbeddingsMap targets = load(8);
+		List<String> additions = new ArrayList<>();
+		for (int i = 8; i < WORDS; i++) {
+			additions.add("w" + i);
+		}
+		targets.update(additions, List.of("w3"));
+
+		assertFalse(targets.containsWord("w3"));
+		assertEquals(-1, targets.indexOf("w3"));
+		assertFalse(targets.getWords().contains("w3"));
+		assertTrue(targets.addWord("w3"));
+		assertTrue(targets.containsWord("w3"));
+		assertEquals("w3", targets.wordAt(targets.indexOf("w3")));
+		assertEquals(targets.indexOf("w3"), targets.findMostSimilarRow(targets.getEmbedding("w3")));
+	}
+
+	@Test
+	void replacementsNeverPointAtARemovedWord() throws Exception {
+		GoogleEmbeddingsMap targets = load(8);
+		ReplacementTable table = ReplacementTable.compute(glove, targets, ProgressListener.NONE);
+		targets.addTargetListener(table);
+		List<String> additions = new ArrayList<>();
+		for (int i = 8; i < 30; i++) {
+			additions.add("w" + i);
+		}
+		targets.update(additions, List.of("w3"));
+		targets.update(List.of("w30", "w31"), List.of());
+
+		for (int i = 0; i < WORDS; i++) {
+			String replacement = table.lookup("w" + i);
+			assertTrue(targets.containsWord(replacement), "w" + i + " -> " + replacement);
+		}
+	}
+
+	@Test
+	void sidecarWrittenBeforeAnEditIsNotReused() throws Exception {
+		GoogleEmbeddingsMap targets = load(8);
+		String glovePath = dir.resolve("glove.txt").toString();
+		ReplacementTable.loadOrCompute(glovePath, glove, targets, ProgressListener.NONE);
+		assertEquals("w3", ReplacementTable.loadOrCompute(glovePath, glove, targets, ProgressListener.NONE)
+				.lookup("w3"));
+
+		// Same row count, one row no longer live
+		targets.update(List.of(), List.of("w3"));
+		ReplacementTable edited = ReplacementTable.loadOrCompute(glovePath, glove, targets, ProgressListener.NONE);
+		assertTrue(targets.containsWord(edited.lookup("w3")), edited.lookup("w3"));
+	}
+
+	/**
+	 * Writes a GloVe file of WORDS nearly one-hot vectors and loads the leading
+	 * words as targets.
+	 *
+	 * @param count number of leading words loaded as targets
+	 * @return loaded targets
+	 * @throws Exception if the files cannot be written or loaded
+	 */
+	private GoogleEmbeddingsMap load(int count) throws Exception {
+		StringBuilder csv = new StringBuilder();
+		StringBuilder words = new StringBuilder();
+		for (int word = 0; word < WORDS; word++) {
+			csv.append('w').append(word);
+			for (int i = 0; i < WORDS; i++) {
+				csv.append(',').append(i == word ? 1.0f : 0.01f * ((word * 7 + i) % 5));
+			}
+			csv.append('\n');
+			if (word < count) {
+				words.append('w').append(word).append('\n');
+			}
+		}
+		Path glovePath = Files.writeString(dir.resolve("glove.txt"), csv);
+		Path wordsPath = Files.writeString(dir.resolve("google.txt"), words);
+		GloVeEmbeddingsMap gloveEmbeddings = new GloVeEmbeddingsMap();
+		gloveEmbeddings.load(glovePath.toString());
+		glove = gloveEmbeddings;
+		GoogleEmbeddingsMap targets = new GoogleEmbeddingsMap(gloveEmbeddings);
+		targets.load(wordsPath.toString());
+		return targets;
+	}
+}
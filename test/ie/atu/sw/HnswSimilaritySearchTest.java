@@ -0,0 +1,152 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a saved graph loads back only over the target rows it was built
+ * from, that a damaged file is rejected with a clear error, and that the graph
+ * keeps finding the exact row as targets are added and removed.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+class HnswSimilaritySearchTest {
+	/** GloVe words written to the test file */
+	private static final int WORDS = 300;
+	/** Leading GloVe words loaded as targets; the rest are added later */
+	private static final int TARGETS = 200;
+	/** Components per vector */
+	private static final int DIMENSION = 8;
+	/** File offset of node 0's first link: header, level count, link count */
+	private static final int FIRST_LINK = 4 * 4 + 32 + 4 * 5 + 4 + 4;
+
+	@TempDir
+	Path dir;
+
+	private final Random random = new Random(23);
+
+	@Test
+	void loadsOverTheSameTargets() throws Exception {
+		GoogleEmbeddingsMap targets = load();
+		HnswSimilaritySearch built = HnswSimilaritySearch.build(targets, 8, 50, ProgressListener.NONE);
+		Path file = dir.resolve("index.hnsw");
+		built.save(file.toString());
+
+		HnswSimilaritySearch loaded = HnswSimilaritySearch.load(file.toString(), targets);
+		for (double[] query : queries()) {
+			assertEquals(built.findMostSimilarRow(query), loaded.findMostSimilarRow(query));
+		}
+	}
+
+	@Test
+	void rejectsTargetsEditedAfterSaving() throws Exception {
+		GoogleEmbeddingsMap targets = load();
+		Path file = dir.resolve("index.hnsw");
+		HnswSimilaritySearch.build(targets, 8, 50, ProgressListener.NONE).save(file.toString());
+
+		// Same row count, one row no longer live
+		targets.update(List.of(), List.of("w5"));
+		Exception error = assertThrows(Exception.class, () -> HnswSimilaritySearch.load(file.toString(), targets));
+		assertTrue(error.getMessage().startsWith("[ERROR]"), error.getMessage());
+	}
+
+	@Test
+	void rejectsOutOfRangeNeighbours() throws Exception {
+		GoogleEmbeddingsMap targets = load();
+		Path file = dir.resolve("index.hnsw");
+		HnswSimilaritySearch.build(targets, 8, 50, ProgressListener.NONE).save(file.toString());
+		try (RandomAccessFile out = new RandomAccessFile(file.toFile(), "rw")) {
+			out.seek(FIRST_LINK);
+			out.writeInt(TARGETS + 1000);
+		}
+		Exception error = assertThrows(Exception.class, () -> HnswSimilaritySearch.load(file.toString(), targets));
+		assertTrue(error.getMessage().contains("links to " + (TARGETS + 1000)), error.getMessage());
+
+		try (RandomAccessFile out = new RandomAccessFile(file.toFile(), "rw")) {
+			out.setLength(FIRST_LINK);
+		}
+		error = assertThrows(Exception.class, () -> HnswSimilaritySearch.load(file.toString(), targets));
+		assertTrue(error.getMessage().startsWith("[ERROR]"), error.getMessage());
+	}
+
+	@Test
+	void followsTargetUpdates() throws Exception {
+		GoogleEmbeddingsMap targets = load();
+		HnswSimilaritySearch hnsw = HnswSimilaritySearch.build(targets, 8, 100, ProgressListener.NONE);
+		hnsw.setEfSearch(100);
+		targets.addTargetListener(hnsw);
+		List<String> additions = new ArrayList<>();
+		List<String> removals = new ArrayList<>();
+		for (int i = 0; i < 60; i++) {
+			additions.add("w" + (TARGETS + i));
+			removals.add("w" + (i * 3));
+		}
+		targets.update(additions, removals);
+		targets.update(List.of("w0", "w" + (TARGETS + 60)), List.of("w1"));
+
+		for (double[] query : queries()) {
+			int row = hnsw.findMostSimilarRow(query);
+			assertTrue(targets.isLive(row), "removed row " + row);
+		}
+		assertTrue(hnsw.measureRecall(queries()) >= 0.95, "recall " + hnsw.measureRecall(queries()));
+	}
+
+	/**
+	 * Creates queries at random.
+	 *
+	 * @return query vectors
+	 */
+	private double[][] queries() {
+		Random queries = new Random(29);
+		double[][] vectors = new double[100][DIMENSION];
+		for (double[] vector : vectors) {
+			for (int i = 0; i < DIMENSION; i++) {
+				vector[i] = queries.nextGaussian();
+			}
+		}
+		return vectors;
+	}
+
+	/**
+	 * Writes random GloVe vectors and the leading words as a target list, then
+	 * loads both.
+	 *
+	 * @return loaded targets
+	 * @throws Exception if the files cannot be written or loaded
+	 */
+	private GoogleEmbeddingsMap load() throws Exception {
+		StringBuilder glove = new StringBuilder();
+		StringBuilder words = new StringBuilder();
+		for (int word = 0; word < WORDS; word++) {
+			glove.append('w').append(word);
+			for (int i = 0; i < DIMENSION; i++) {
+				glove.append(',').append((float) random.nextGaussian());
+			}
+			glove.append('\n');
+			if (word < TARGETS) {
+				words.append('w').append(word).append('\n');
+			}
+		}
+		Path glovePath = Files.writeString(dir.resolve("glove.txt"), glove);
+		Path wordsPath = Files.writeString(dir.resolve("google.txt"), words);
+
+		GloVeEmbeddingsMap gloveEmbeddings = new GloVeEmbeddingsMap();
+		gloveEmbeddings.load(glovePath.toString());
+		GoogleEmbeddingsMap targets = new GoogleEmbeddingsMap(gloveEmbeddings);
+		targets.load(wordsPath.toString());
+		return targets;
+	}
+}
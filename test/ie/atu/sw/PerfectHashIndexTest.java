@@ -0,0 +1,198 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that the perfect hash maps every indexed word to its own id and
+ * every other word to -1, including words that share a String hash code,
+ * non-ASCII words and the smallest vocabularies, and that it survives being
+ * written and read back, directly and through a BinaryEmbeddings snapshot.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+class PerfectHashIndexTest {
+	/** Words whose String hash codes collide: every one of them hashes alike */
+	private static final String[] COLLIDING = { "AaAa", "AaBB", "BBAa", "BBBB" };
+	/** Words that need more than one UTF-8 byte per char */
+	private static final String[] NON_ASCII = { "café", "naïve", "über", "日本語", "привет", "😀", "é" };
+
+	@TempDir
+	Path dir;
+
+	private final Random random = new Random(17);
+
+	@Test
+	void mapsEveryWordToItsOwnId() {
+		String[] words = vocabulary(20_000);
+		PerfectHashIndex index = PerfectHashIndex.build(words);
+		assertEquals(words.length, index.size());
+		assertIds(words, index);
+	}
+
+	@Test
+	void returnsMinusOneForAbsentWords() {
+		String[] words = vocabulary(5_000);
+		PerfectHashIndex index = PerfectHashIndex.build(words);
+		Set<String> present = Set.of(words);
+		for (int i = 0; i < 5_000; i++) {
+			String word = randomWord();
+			if (!present.contains(word)) {
+				assertEquals(-1, index.indexOf(word), word);
+			}
+		}
+		for (String word : new String[] { "", "word", "caf", "cafe", "café!", "日本", "Aa" }) {
+			if (!present.contains(word)) {
+				assertEquals(-1, index.indexOf(word), word);
+			}
+		}
+	}
+
+	@Test
+	void resolvesWordsSharingAHashCode() {
+		assertEquals("Aa".hashCode(), "BB".hashCode());
+		PerfectHashIndex pair = PerfectHashIndex.build(new String[] { "Aa", "BB", "other" });
+		assertIds(new String[] { "Aa", "BB", "other" }, pair);
+
+		// Three of the four colliding words, so the fourth lands on their group
+		String[] words = { "x", COLLIDING[0], "y", COLLIDING[2], COLLIDING[3], "z" };
+		PerfectHashIndex index = PerfectHashIndex.build(words);
+		assertIds(words, index);
+		assertEquals(-1, index.indexOf(COLLIDING[1]));
+
+		// A lone word, so a colliding word lands on a plain id
+		PerfectHashIndex single = PerfectHashIndex.build(new String[] { "Aa", "q" });
+		assertEquals(0, single.indexOf("Aa"));
+		assertEquals(-1, single.indexOf("BB"));
+	}
+
+	@Test
+	void mapsNonAsciiWords() {
+		String[] words = vocabulary(1_000);
+		PerfectHashIndex index = PerfectHashIndex.build(words);
+		assertIds(words, index);
+		// Same char count as an indexed word, or same UTF-8 length, but different
+		for (String absent : new String[] { "cafe", "cafè", "naive", "uber", "日本人", "è", "😁" }) {
+			assertEquals(-1, index.indexOf(absent), absent);
+		}
+	}
+
+	@Test
+	void handlesEmptyAndSingleWordVocabularies() {
+		PerfectHashIndex empty = PerfectHashIndex.build(new String[0]);
+		assertEquals(0, empty.size());
+		assertEquals(-1, empty.indexOf("word"));
+		assertEquals(-1, empty.indexOf(""));
+
+		PerfectHashIndex one = PerfectHashIndex.build(new String[] { "word" });
+		assertEquals(1, one.size());
+		assertEquals(0, one.indexOf("word"));
+		assertEquals("word", one.wordAt(0));
+		assertEquals(-1, one.indexOf("other"));
+		assertEquals(-1, one.indexOf(""));
+	}
+
+	@Test
+	void readsBackWhatWasWritten() {
+		for (String[] words : new String[][] { new String[0], { "word" }, vocabulary(3_000) }) {
+			PerfectHashIndex built = PerfectHashIndex.build(words);
+			long bytes = PerfectHashIndex.sectionBytes(built.size(), built.getSlotCount(),
+					built.getCollisionLength(), built.getArenaLength());
+			ByteBuffer buffer = ByteBuffer.allocate(8 + (int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.position(8);
+			built.write(buffer);
+			assertEquals(buffer.capacity(), buffer.position(), "section size");
+
+			PerfectHashIndex read = PerfectHashIndex.read(buffer, 8, built.getSeed(), built.size(),
+					built.getSlotCount(), built.getCollisionLength(), built.getArenaLength());
+			assertIds(words, read);
+			assertEquals(-1, read.indexOf("absent word"));
+		}
+	}
+
+	@Test
+	void roundTripsThroughBinaryEmbeddings() throws Exception {
+		String[] words = vocabulary(2_000);
+		StringBuilder csv = new StringBuilder();
+		for (String word : words) {
+			csv.append(word);
+			for (int i = 0; i < 3; i++) {
+				csv.append(',').append((float) random.nextGaussian());
+			}
+			csv.append('\n');
+		}
+		Path csvPath = dir.resolve("glove.txt");
+		Files.write(csvPath, csv.toString().getBytes(StandardCharsets.UTF_8));
+		Path snapshotPath = dir.resolve("glove.bin");
+		BinaryEmbeddings.convert(csvPath.toString(), snapshotPath.toString());
+
+		BinaryEmbeddings snapshot = new BinaryEmbeddings();
+		snapshot.load(snapshotPath.toString());
+		assertEquals(words.length, snapshot.getSize());
+		for (int id = 0; id < words.length; id++) {
+			assertEquals(id, snapshot.indexOf(words[id]), words[id]);
+			assertEquals(words[id], snapshot.wordAt(id));
+		}
+		assertEquals(-1, snapshot.indexOf(COLLIDING[1]));
+		assertEquals(-1, snapshot.indexOf("absent"));
+	}
+
+	/**
+	 * Asserts that every word maps to its position and back.
+	 *
+	 * @param words indexed words, in id order
+	 * @param index index under test
+	 */
+	private static void assertIds(String[] words, PerfectHashIndex index) {
+		for (int id = 0; id < words.length; id++) {
+			assertEquals(id, index.indexOf(words[id]), words[id]);
+			assertEquals(words[id], index.wordAt(id));
+		}
+	}
+
+	/**
+	 * Creates three of the colliding words and every non-ASCII word, followed
+	 * by distinct random words.
+	 *
+	 * @param count number of words
+	 * @return words in id order
+	 */
+	private String[] vocabulary(int count) {
+		Set<String> words = new LinkedHashSet<>();
+		words.add(COLLIDING[0]);
+		words.add(COLLIDING[2]);
+		words.add(COLLIDING[3]);
+		words.addAll(List.of(NON_ASCII));
+		while (words.size() < count) {
+			words.add(randomWord());
+		}
+		return words.toArray(new String[0]);
+	}
+
+	/**
+	 * Creates a random lowercase word of one to ten letters.
+	 *
+	 * @return the word
+	 */
+	private String randomWord() {
+		char[] chars = new char[1 + random.nextInt(10)];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = (char) ('a' + random.nextInt(26));
+		}
+		return new String(chars);
+	}
+}
@@ -0,0 +1,173 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that the pruned search returns exactly the row of the brute-force
+ * scan, ties included, before and after incremental target updates, and that
+ * it abandons candidates before their dot product is complete.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+class PrunedSimilaritySearchTest {
+	/** GloVe words written to the test file */
+	private static final int WORDS = 400;
+	/** Leading GloVe words loaded as targets; the rest are added later */
+	private static final int TARGETS = 250;
+	/** Factor by which each component's spread shrinks, so variance is uneven */
+	private static final double DECAY = 0.85;
+
+	@TempDir
+	Path dir;
+
+	private final Random random = new Random(11);
+
+	@Test
+	void matchesBruteForceScan() throws Exception {
+		for (int dimension : new int[] { 1, 15, 37, 50 }) {
+			float[][] vectors = vectors(dimension);
+			GoogleEmbeddingsMap targets = load(vectors);
+			PrunedSimilaritySearch pruned = new PrunedSimilaritySearch(targets);
+			assertSameRows(targets, pruned, queries(vectors), "dimension " + dimension);
+		}
+	}
+
+	@Test
+	void matchesBruteForceScanAfterUpdates() throws Exception {
+		float[][] vectors = vectors(50);
+		GoogleEmbeddingsMap targets = load(vectors);
+		PrunedSimilaritySearch pruned = new PrunedSimilaritySearch(targets);
+		targets.addTargetListener(pruned);
+		double[][] queries = queries(vectors);
+
+		List<String> additions = new ArrayList<>();
+		List<String> removals = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			additions.add("w" + (TARGETS + i));
+			removals.add("w" + (4 + i * 5));
+		}
+		targets.update(additions, removals);
+		assertSameRows(targets, pruned, queries, "after first update");
+
+		targets.update(List.of("w" + (TARGETS + 40), "w9"), List.of("w0", "w" + TARGETS));
+		assertSameRows(targets, pruned, queries, "after second update");
+	}
+
+	@Test
+	void abandonsCandidatesEarly() throws Exception {
+		int dimension = 50;
+		float[][] vectors = vectors(dimension);
+		GoogleEmbeddingsMap targets = load(vectors);
+		PrunedSimilaritySearch pruned = new PrunedSimilaritySearch(targets);
+		for (double[] query : queries(vectors)) {
+			pruned.findMostSimilarRow(query);
+		}
+		assertTrue(pruned.getAverageDimensions() > 0, "no candidates visited");
+		assertTrue(pruned.getAverageDimensions() < dimension,
+				"average " + pruned.getAverageDimensions() + " of " + dimension + " components");
+	}
+
+	/**
+	 * Asserts that the pruned search and the brute-force scan pick the same row
+	 * for every query.
+	 *
+	 * @param targets loaded targets, whose scan is the reference
+	 * @param pruned  search under test
+	 * @param queries query vectors
+	 * @param context message prefix
+	 */
+	private static void assertSameRows(GoogleEmbeddingsMap targets, PrunedSimilaritySearch pruned,
+			double[][] queries, String context) {
+		for (int i = 0; i < queries.length; i++) {
+			assertEquals(targets.findMostSimilarRow(queries[i]), pruned.findMostSimilarRow(queries[i]),
+					context + ", query " + i);
+		}
+	}
+
+	/**
+	 * Creates GloVe vectors whose components have decreasing spread. Words 1
+	 * and 3 repeat words 0 and 2, so the targets hold tied rows.
+	 *
+	 * @param dimension components per vector
+	 * @return one vector per word
+	 */
+	private float[][] vectors(int dimension) {
+		float[][] vectors = new float[WORDS][dimension];
+		for (int word = 0; word < WORDS; word++) {
+			double spread = 1.0;
+			for (int i = 0; i < dimension; i++, spread *= DECAY) {
+				vectors[word][i] = (float) (random.nextGaussian() * spread);
+			}
+		}
+		vectors[1] = vectors[0].clone();
+		vectors[3] = vectors[2].clone();
+		return vectors;
+	}
+
+	/**
+	 * Creates queries near the words, exactly on the tied words, and at
+	 * random.
+	 *
+	 * @param vectors GloVe vectors
+	 * @return query vectors
+	 */
+	private double[][] queries(float[][] vectors) {
+		int dimension = vectors[0].length;
+		double[][] queries = new double[220][dimension];
+		for (int q = 0; q < 200; q++) {
+			float[] near = vectors[random.nextInt(WORDS)];
+			for (int i = 0; i < dimension; i++) {
+				queries[q][i] = near[i] + random.nextGaussian() * 0.05;
+			}
+		}
+		for (int q = 200; q < 220; q++) {
+			for (int i = 0; i < dimension; i++) {
+				queries[q][i] = q < 210 ? vectors[(q % 2) * 2][i] : random.nextGaussian();
+			}
+		}
+		return queries;
+	}
+
+	/**
+	 * Writes the vectors as a GloVe CSV file and the leading words as a target
+	 * list, then loads both.
+	 *
+	 * @param vectors GloVe vectors, word i named "w" + i
+	 * @return loaded targets
+	 * @throws Exception if the files cannot be written or loaded
+	 */
+	private GoogleEmbeddingsMap load(float[][] vectors) throws Exception {
+		StringBuilder glove = new StringBuilder();
+		StringBuilder words = new StringBuilder();
+		for (int word = 0; word < vectors.length; word++) {
+			glove.append('w').append(word);
+			for (float v : vectors[word]) {
+				glove.append(',').append(v);
+			}
+			glove.append('\n');
+			if (word < TARGETS) {
+				words.append('w').append(word).append('\n');
+			}
+		}
+		Path glovePath = Files.writeString(dir.resolve("glove-" + vectors[0].length + ".txt"), glove);
+		Path wordsPath = Files.writeString(dir.resolve("google-" + vectors[0].length + ".txt"), words);
+
+		GloVeEmbeddingsMap gloveEmbeddings = new GloVeEmbeddingsMap();
+		gloveEmbeddings.load(glovePath.toString());
+		GoogleEmbeddingsMap targets = new GoogleEmbeddingsMap(gloveEmbeddings);
+		targets.load(wordsPath.toString());
+		return targets;
+	}
+}
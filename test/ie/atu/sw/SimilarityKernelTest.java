@@ -0,0 +1,100 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import jdk.incubator.vector.DoubleVector;
+
+/**
+ * Checks that the vector API kernel gives the same results as the scalar
+ * kernel within SimilarityKernels.TOLERANCE, over lengths that exercise the
+ * lane loop, the scalar tail and rows shorter than one vector, and that each
+ * kernel's dot4x2 sums bit for bit as its own dot does.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+class SimilarityKernelTest {
+	/** Doubles per vector register on this machine */
+	private static final int LANES = DoubleVector.SPECIES_PREFERRED.length();
+
+	private final SimilarityKernel scalar = new ScalarSimilarityKernel();
+	private final SimilarityKernel vector = new VectorSimilarityKernel();
+	private final Random random = new Random(7);
+
+	@Test
+	void dotMatchesScalarForAllLengthsAndOffsets() {
+		int[] lengths = { 0, 1, LANES - 1, LANES, LANES + 1, 2 * LANES + 3, 7, 50, 101, 301 };
+		for (int length : lengths) {
+			for (int offset : new int[] { 0, 1, 3, 17 }) {
+				double[] query = gaussian(length);
+				double[] matrix = gaussian(offset + length + 5);
+				assertEquals(scalar.dot(query, matrix, offset, length), vector.dot(query, matrix, offset, length),
+						SimilarityKernels.TOLERANCE, "length " + length + ", offset " + offset);
+			}
+		}
+	}
+
+	@Test
+	void dotMatchesScalarOnRandomShapes() {
+		for (int trial = 0; trial < 1000; trial++) {
+			int length = random.nextInt(400);
+			int offset = random.nextInt(64);
+			double[] query = gaussian(length);
+			double[] matrix = gaussian(offset + length + random.nextInt(8));
+			assertEquals(scalar.dot(query, matrix, offset, length), vector.dot(query, matrix, offset, length),
+					SimilarityKernels.TOLERANCE, "length " + length + ", offset " + offset);
+		}
+	}
+
+	@Test
+	void dot4x2MatchesDotExactly() {
+		int[] lengths = { 0, 1, LANES - 1, LANES, LANES + 1, 2 * LANES + 3, 7, 50, 101, 301 };
+		double[] scores = new double[8];
+		for (SimilarityKernel kernel : new SimilarityKernel[] { scalar, vector }) {
+			for (int length : lengths) {
+				for (int offset : new int[] { 0, 1, 3, 17 }) {
+					double[][] queries = { gaussian(length), gaussian(length), gaussian(length), gaussian(length) };
+					double[] matrix = gaussian(offset + 2 * length + 5);
+					int[] offsets = { offset, offset + length + random.nextInt(5) };
+					kernel.dot4x2(queries[0], queries[1], queries[2], queries[3], matrix, offsets[0], offsets[1],
+							length, scores);
+					for (int q = 0; q < 4; q++) {
+						for (int t = 0; t < 2; t++) {
+							assertEquals(kernel.dot(queries[q], matrix, offsets[t], length), scores[2 * q + t],
+									kernel.getClass().getSimpleName() + " length " + length + ", offset " + offset
+											+ ", query " + q + ", row " + t);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void cosineMatchesScalar() {
+		for (int length : new int[] { 1, LANES - 1, LANES + 1, 50, 300 }) {
+			double[] a = gaussian(length);
+			double[] b = gaussian(length);
+			assertEquals(scalar.cosine(a, b), vector.cosine(a, b), SimilarityKernels.TOLERANCE, "length " + length);
+		}
+	}
+
+	/**
+	 * Creates a vector of standard normal components.
+	 *
+	 * @param length number of components
+	 * @return the vector
+	 */
+	private double[] gaussian(int length) {
+		double[] values = new double[length];
+		for (int i = 0; i < length; i++) {
+			values[i] = random.nextGaussian();
+		}
+		return values;
+	}
+}
@@ -0,0 +1,72 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that non-ASCII punctuation separates tokens like its ASCII
+ * counterpart, that a right single quote inside a word reads as an
+ * apostrophe, and that hashing and matching agree with the normalized form.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+class SpanTokenizerTest {
+
+	@Test
+	void splitsOnNonAsciiPunctuation() {
+		assertEquals(List.of("quoted", "words"), tokens("‘quoted’ words"));
+		assertEquals(List.of("he", "said", "hi"), tokens("“he said” — “hi”"));
+		assertEquals(List.of("pages", "3", "5"), tokens("pages 3–5"));
+		assertEquals(List.of("wait", "what"), tokens("wait…what"));
+		assertEquals(List.of("no", "break"), tokens("no\u00A0break"));
+		assertEquals(List.of("café", "naïve"), tokens("café—naïve"));
+	}
+
+	@Test
+	void readsRightQuoteInsideAWordAsAnApostrophe() {
+		assertEquals(List.of("don't", "it's"), tokens("Don’t ‘it’s’"));
+		assertEquals(List.of("don't"), tokens("don't"));
+		assertEquals(List.of("dogs"), tokens("dogs’ "));
+	}
+
+	@Test
+	void hashAndMatchFollowTheNormalizedForm() {
+		byte[] curly = "Don’t".getBytes(StandardCharsets.UTF_8);
+		byte[] straight = "don't".getBytes(StandardCharsets.UTF_8);
+		ByteBuffer text = ByteBuffer.wrap(curly);
+		assertEquals(SpanTokenizer.hash(ByteBuffer.wrap(straight), 0, straight.length),
+				SpanTokenizer.hash(text, 0, curly.length));
+		assertTrue(SpanTokenizer.matches(text, 0, curly.length, straight));
+		assertFalse(SpanTokenizer.matches(text, 0, curly.length, "don'".getBytes(StandardCharsets.UTF_8)));
+		assertFalse(SpanTokenizer.matches(text, 0, curly.length, "don’t".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Tokenizes a string and decodes the normalized form of every token.
+	 *
+	 * @param input text to tokenize
+	 * @return normalized tokens in order
+	 */
+	private static List<String> tokens(String input) {
+		byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer text = ByteBuffer.wrap(bytes);
+		List<String> tokens = new ArrayList<>();
+		int start = SpanTokenizer.tokenStart(text, 0, bytes.length);
+		while (start < bytes.length) {
+			int end = SpanTokenizer.tokenEnd(text, start, bytes.length);
+			tokens.add(SpanTokenizer.toWord(SpanTokenizer.normalize(text, start, end)));
+			start = SpanTokenizer.tokenStart(text, end, bytes.length);
+		}
+		return tokens;
+	}
+}
@@ -0,0 +1,57 @@
+package ie.atu.sw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that removed words stay removed when the slot table is rehashed,
+ * and that removed ids can be reassigned.
+ *
+ * @version 1.0.0
+ * @author [Joseph Shortt]
+ */
+
+class WordIndexTest {
+
+	@Test
+	void removedWordStaysRemovedAfterRehash() {
+		WordIndex index = new WordIndex(4);
+		for (int i = 0; i < 4; i++) {
+			index.add("w" + i);
+		}
+		assertEquals(2, index.remove("w2"));
+		for (int i = 4; i < 100; i++) {
+			index.add("w" + i);
+		}
+		assertEquals(-1, index.indexOf("w2"));
+		assertEquals("w2", index.wordAt(2));
+		assertEquals(100, index.add("w2"));
+		assertEquals(100, index.indexOf("w2"));
+		for (int i = 0; i < 100; i++) {
+			if (i != 2) {
+				assertEquals(i, index.indexOf("w" + i), "w" + i);
+			}
+		}
+	}
+
+	@Test
+	void reassignedIdSurvivesRehash() {
+		WordIndex index = new WordIndex(4);
+		for (int i = 0; i < 4; i++) {
+			index.add("w" + i);
+		}
+		index.remove("w1");
+		WordIndex copy = index.copy();
+		copy.assign("new", 1);
+		for (int i = 4; i < 100; i++) {
+			copy.add("w" + i);
+		}
+		assertEquals(1, copy.indexOf("new"));
+		assertEquals(-1, copy.indexOf("w1"));
+		assertEquals("new", copy.wordAt(1));
+		// The original is unchanged by changes to the copy
+		assertEquals(-1, index.indexOf("new"));
+		assertEquals("w1", index.wordAt(1));
+	}
+}